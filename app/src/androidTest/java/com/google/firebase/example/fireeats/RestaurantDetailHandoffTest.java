@@ -0,0 +1,140 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats;
+
+import android.content.Intent;
+import android.os.SystemClock;
+import android.util.Log;
+import android.widget.TextView;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.example.fireeats.model.Restaurant;
+import com.google.firebase.example.fireeats.model.RestaurantMapper;
+import com.google.firebase.example.fireeats.util.FirebaseUtil;
+import com.google.firebase.example.fireeats.util.SnapshotHandoff;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.Source;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the handoff of the restaurant snapshot of the list to the details, and measures the time
+ * to first content of the details with and without it. Reads a restaurant written to the Firestore
+ * and Auth emulators the debug builds connect to, which must be started with
+ * "firebase emulators:start". Run with "./gradlew :app:connectedDebugAndroidTest".
+ */
+@RunWith(AndroidJUnit4.class)
+public class RestaurantDetailHandoffTest {
+
+    private static final String TAG = "DetailHandoffTest";
+
+    private static final long TIMEOUT_SECONDS = 10;
+    // Interval at which the name shown is checked
+    private static final long POLL_MILLIS = 5;
+
+    // Snapshot of a new restaurant, as read by the list
+    private DocumentSnapshot mSnapshot;
+    private String mName;
+
+    @Before
+    public void setUp() throws Exception {
+        // The restaurants are read by signed in users only
+        await(FirebaseUtil.getAuth().signInAnonymously());
+
+        DocumentReference restaurantRef =
+                FirebaseUtil.getFirestore().collection(Restaurant.COLLECTION).document();
+        mName = "Handoff " + restaurantRef.getId();
+        await(restaurantRef.set(RestaurantMapper.toMap(
+                new Restaurant(mName, "Austin", "Pizza", null, 2, 0, 0))));
+        mSnapshot = await(restaurantRef.get(Source.SERVER));
+    }
+
+    @Test
+    public void handoff_rendersTheRestaurantInOnCreate() {
+        InstrumentationRegistry.getInstrumentation()
+                .runOnMainSync(() -> SnapshotHandoff.put(mSnapshot));
+
+        try (ActivityScenario<RestaurantDetailActivity> scenario =
+                     ActivityScenario.launch(newIntent())) {
+            // Shown as soon as the Activity is resumed, without waiting for the listener
+            scenario.onActivity(activity -> assertEquals(mName, getShownName(activity)));
+        }
+    }
+
+    @Test
+    public void timeToFirstContent_withoutAndWithHandoff() {
+        // Warm up the process and the cache with a first launch
+        measureTimeToFirstContent();
+
+        long listenerMillis = measureTimeToFirstContent();
+        InstrumentationRegistry.getInstrumentation()
+                .runOnMainSync(() -> SnapshotHandoff.put(mSnapshot));
+        long handoffMillis = measureTimeToFirstContent();
+
+        Log.i(TAG, "Time to first content: " + listenerMillis + "ms from the listener, "
+                + handoffMillis + "ms from the handoff");
+    }
+
+    /**
+     * Launches the details of the restaurant, and returns the time until its name is shown,
+     * in milliseconds.
+     */
+    private long measureTimeToFirstContent() {
+        long start = SystemClock.elapsedRealtime();
+        Intent intent = newIntent().putExtra(RestaurantDetailActivity.KEY_START_TIME, start);
+        try (ActivityScenario<RestaurantDetailActivity> scenario = ActivityScenario.launch(intent)) {
+            AtomicBoolean shown = new AtomicBoolean();
+            while (true) {
+                scenario.onActivity(activity -> shown.set(mName.equals(getShownName(activity))));
+                long elapsed = SystemClock.elapsedRealtime() - start;
+                if (shown.get()) {
+                    return elapsed;
+                } else if (elapsed > TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS)) {
+                    fail("Restaurant not shown within " + TIMEOUT_SECONDS + "s");
+                }
+                SystemClock.sleep(POLL_MILLIS);
+            }
+        }
+    }
+
+    private Intent newIntent() {
+        return new Intent(InstrumentationRegistry.getInstrumentation().getTargetContext(),
+                RestaurantDetailActivity.class)
+                .putExtra(RestaurantDetailActivity.KEY_RESTAURANT_ID, mSnapshot.getId());
+    }
+
+    private static String getShownName(RestaurantDetailActivity activity) {
+        return ((TextView) activity.findViewById(R.id.restaurant_name)).getText().toString();
+    }
+
+    private static <T> T await(Task<T> task) throws Exception {
+        return Tasks.await(task, TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.util;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.LinearGradient;
+import android.graphics.Paint;
+import android.graphics.Shader;
+import android.util.Log;
+
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.google.firebase.example.fireeats.R;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures the heap of the image of a restaurant row, as decoded by Glide before and after the
+ * list thumbnail options of {@link MyAppGlideExtension}, over a photo the size of the photos
+ * of the restaurants. Run with "./gradlew :app:connectedDebugAndroidTest".
+ */
+@RunWith(AndroidJUnit4.class)
+public class RowImageHeapTest {
+
+    private static final String TAG = "RowImageHeapTest";
+
+    // Size of the photo decoded, like the photos of the restaurants
+    private static final int PHOTO_WIDTH = 1280;
+    private static final int PHOTO_HEIGHT = 853;
+    private static final long DECODE_TIMEOUT_SECONDS = 10;
+
+    private Context mContext;
+    private File mPhoto;
+    // Size of the image of a row, and the number of rows visible on the screen, in pixels
+    private int mImageSize;
+    private int mVisibleRows;
+
+    @Before
+    public void setUp() throws IOException {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mImageSize = mContext.getResources()
+                .getDimensionPixelSize(R.dimen.restaurant_item_image_size);
+        int rowHeight = mContext.getResources().getDimensionPixelSize(R.dimen.restaurant_item_height);
+        int screenHeight = mContext.getResources().getDisplayMetrics().heightPixels;
+        mVisibleRows = (screenHeight + rowHeight - 1) / rowHeight;
+
+        // An opaque photo, with some detail for the JPEG to be of a realistic size
+        Bitmap photo = Bitmap.createBitmap(PHOTO_WIDTH, PHOTO_HEIGHT, Bitmap.Config.ARGB_8888);
+        Paint paint = new Paint();
+        paint.setShader(new LinearGradient(0, 0, PHOTO_WIDTH, PHOTO_HEIGHT,
+                Color.rgb(200, 80, 20), Color.rgb(40, 120, 60), Shader.TileMode.MIRROR));
+        new Canvas(photo).drawRect(0, 0, PHOTO_WIDTH, PHOTO_HEIGHT, paint);
+        mPhoto = new File(mContext.getCacheDir(), "row_image_heap_test.jpg");
+        try (OutputStream out = new FileOutputStream(mPhoto)) {
+            photo.compress(Bitmap.CompressFormat.JPEG, 90, out);
+        }
+        photo.recycle();
+    }
+
+    @After
+    public void tearDown() {
+        //noinspection ResultOfMethodCallIgnored
+        mPhoto.delete();
+    }
+
+    @Test
+    public void listThumbnail_halvesTheHeapPerRow() throws Exception {
+        // Before: the default ARGB_8888 decode, downsampled to the row image as by the ImageView
+        Bitmap before = decode(GlideApp.with(mContext).asBitmap().load(mPhoto)
+                .override(mImageSize).centerCrop());
+        // After: the list thumbnail, in RGB_565 at the exact size of the row image
+        Bitmap after = decode(GlideApp.with(mContext).asBitmap().load(mPhoto)
+                .listThumbnail(mImageSize));
+
+        Log.i(TAG, String.format(Locale.US,
+                "Heap per row: %d bytes before, %d bytes after; %d visible rows: %d to %d bytes",
+                before.getByteCount(), after.getByteCount(), mVisibleRows,
+                before.getByteCount() * mVisibleRows, after.getByteCount() * mVisibleRows));
+
+        assertEquals(Bitmap.Config.ARGB_8888, before.getConfig());
+        assertEquals(Bitmap.Config.RGB_565, after.getConfig());
+        assertEquals(mImageSize, after.getWidth());
+        assertEquals(mImageSize, after.getHeight());
+        assertEquals(mImageSize * mImageSize * 2, after.getByteCount());
+        assertTrue(after.getByteCount() * 2 <= before.getByteCount());
+    }
+
+    @Test
+    public void listThumbnail_isFarBelowTheFullResolutionDecode() throws Exception {
+        // The full resolution ARGB_8888 decode, when the target size is not known
+        Bitmap full = decode(GlideApp.with(mContext).asBitmap().load(mPhoto));
+        Bitmap after = decode(GlideApp.with(mContext).asBitmap().load(mPhoto)
+                .listThumbnail(mImageSize));
+
+        Log.i(TAG, String.format(Locale.US, "Heap per row: %d bytes at full resolution, %d bytes"
+                + " as a thumbnail", full.getByteCount(), after.getByteCount()));
+
+        assertEquals(PHOTO_WIDTH * PHOTO_HEIGHT * 4, full.getByteCount());
+        assertTrue(after.getByteCount() * 10 <= full.getByteCount());
+    }
+
+    @Test
+    public void fullQuality_keepsArgb8888() throws Exception {
+        Bitmap header = decode(GlideApp.with(mContext).asBitmap().load(mPhoto).fullQuality());
+
+        assertEquals(Bitmap.Config.ARGB_8888, header.getConfig());
+    }
+
+    /**
+     * Decodes the {@code request} from the photo, bypassing the caches, and in a heap bitmap
+     * for its bytes to be counted.
+     */
+    private static Bitmap decode(GlideRequest<Bitmap> request) throws Exception {
+        return request
+                .skipMemoryCache(true)
+                .diskCacheStrategy(DiskCacheStrategy.NONE)
+                .disallowHardwareConfig()
+                .submit()
+                .get(DECODE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+}
@@ -18,14 +18,20 @@ package com.google.firebase.example.fireeats;
 import android.content.Context;
 import android.text.TextUtils;
 
+import com.google.firebase.example.fireeats.core.FilterQueries;
+import com.google.firebase.example.fireeats.core.FilterSpec;
+import com.google.firebase.example.fireeats.core.QueryDescriber;
 import com.google.firebase.example.fireeats.model.Restaurant;
 import com.google.firebase.example.fireeats.util.RestaurantUtil;
 import com.google.firebase.firestore.Query;
 
+import java.util.Objects;
+
 /**
- * Object for passing filters around.
+ * Object for passing filters around. Two {@link Filters} are equal when all their
+ * filter and sort criteria are the same, so they can be used as a key of the results.
  */
-public class Filters {
+public class Filters implements FilterSpec {
 
     private String category = null;
     private String city = null;
@@ -36,6 +42,19 @@ public class Filters {
     public Filters() {
     }
 
+    /**
+     * Copy constructor of {@link Filters}
+     *
+     * @param filters The {@link Filters} to copy the criteria from.
+     */
+    public Filters(Filters filters) {
+        category = filters.category;
+        city = filters.city;
+        price = filters.price;
+        sortBy = filters.sortBy;
+        sortDirection = filters.sortDirection;
+    }
+
     public static Filters getDefault() {
         Filters filters = new Filters();
         filters.setSortBy(Restaurant.FIELD_AVG_RATING);
@@ -100,6 +119,11 @@ public class Filters {
         this.sortDirection = sortDirection;
     }
 
+    @Override
+    public boolean isSortDescending() {
+        return sortDirection == Query.Direction.DESCENDING;
+    }
+
     public String getSearchDescription(Context context) {
         StringBuilder desc = new StringBuilder();
 
@@ -144,4 +168,56 @@ public class Filters {
             return context.getString(R.string.sorted_by_rating);
         }
     }
+
+    /**
+     * Compares the canonical form of the criteria, where an unset criterion
+     * is the same regardless of how it was left unset.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Filters filters = (Filters) o;
+        return getCanonicalPrice() == filters.getCanonicalPrice()
+                && Objects.equals(getCanonicalCategory(), filters.getCanonicalCategory())
+                && Objects.equals(getCanonicalCity(), filters.getCanonicalCity())
+                && Objects.equals(getCanonicalSortBy(), filters.getCanonicalSortBy())
+                && getCanonicalSortDirection() == filters.getCanonicalSortDirection();
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getCanonicalCategory(), getCanonicalCity(), getCanonicalPrice(),
+                getCanonicalSortBy(), getCanonicalSortDirection());
+    }
+
+    /**
+     * Describes the {@link Query} of the criteria, such as
+     * {@code "restaurants category==Sushi orderBy avgRating desc"}.
+     */
+    @Override
+    public String toString() {
+        return FilterQueries.build(Restaurant.COLLECTION, this, QueryDescriber.INSTANCE);
+    }
+
+    private String getCanonicalCategory() {
+        return hasCategory() ? category : null;
+    }
+
+    private String getCanonicalCity() {
+        return hasCity() ? city : null;
+    }
+
+    private int getCanonicalPrice() {
+        return hasPrice() ? price : -1;
+    }
+
+    private String getCanonicalSortBy() {
+        return hasSortBy() ? sortBy : null;
+    }
+
+    private Query.Direction getCanonicalSortDirection() {
+        // Direction applies only along with the field to sort by
+        return hasSortBy() ? sortDirection : null;
+    }
 }
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats;
+
+import com.google.firebase.example.fireeats.metrics.ReadLedger;
+import com.google.firebase.example.fireeats.util.FirebaseUtil;
+import com.google.firebase.example.fireeats.util.StartupTimer;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import androidx.multidex.MultiDexApplication;
+
+/**
+ * {@link android.app.Application} of the App, which warms up the Firebase services
+ * off the main thread on startup.
+ */
+public class FireEatsApplication extends MultiDexApplication {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        StartupTimer.onApplicationCreate();
+
+        // Enable Firestore logging
+        FirebaseFirestore.setLoggingEnabled(true);
+        // Count the Firestore reads per screen and query in debug builds
+        ReadLedger.setEnabled(BuildConfig.DEBUG);
+
+        // Create and configure Firestore, Auth and AuthUI in background,
+        // ahead of the first screen
+        FirebaseUtil.warmUp();
+    }
+}
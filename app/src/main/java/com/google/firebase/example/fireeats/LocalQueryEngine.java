@@ -0,0 +1,160 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats;
+
+import com.google.firebase.example.fireeats.adapter.FirestoreAdapter;
+import com.google.firebase.example.fireeats.model.Restaurant;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.Query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Client-side evaluator of {@link Filters} over the restaurants already loaded for a
+ * broader {@link Filters}, to answer narrowing filters and changes in sort without
+ * going back to Firestore.
+ */
+public final class LocalQueryEngine {
+
+    private LocalQueryEngine() {
+    }
+
+    /**
+     * Checks if the results of the {@code target} filters can be derived locally from the
+     * results loaded for the {@code base} filters. This is possible only when the results
+     * of the {@code base} filters are complete, and the {@code target} filters keep every
+     * equality filter of the {@code base} filters, with any sort.
+     *
+     * @param base         The {@link Filters} of the results loaded.
+     * @param baseComplete Whether all the results of the {@code base} filters are loaded.
+     * @param target       The {@link Filters} of the results required.
+     * @return {@code true} when the results can be derived locally; {@code false} otherwise,
+     * in which case the results are to be read with a server query.
+     */
+    public static boolean canDerive(@Nullable Filters base, boolean baseComplete,
+                                    @NonNull Filters target) {
+        if (base == null || !baseComplete) {
+            return false;
+        }
+
+        // Every equality filter of the base must be present and the same in the target
+        if (base.hasCategory() && !base.getCategory().equals(target.getCategory())) {
+            return false;
+        }
+        if (base.hasCity() && !base.getCity().equals(target.getCity())) {
+            return false;
+        }
+        if (base.hasPrice() && base.getPrice() != target.getPrice()) {
+            return false;
+        }
+
+        // Only the known fields can be sorted by
+        return !target.hasSortBy()
+                || Restaurant.FIELD_AVG_RATING.equals(target.getSortBy())
+                || Restaurant.FIELD_PRICE.equals(target.getSortBy())
+                || Restaurant.FIELD_POPULARITY.equals(target.getSortBy());
+    }
+
+    /**
+     * Returns the {@link FirestoreAdapter.LocalView} that filters and sorts the restaurants
+     * in memory, as per the {@code target} filters.
+     *
+     * @param target The {@link Filters} of the results required.
+     */
+    @NonNull
+    public static FirestoreAdapter.LocalView getView(@NonNull Filters target) {
+        return new FiltersView(new Filters(target));
+    }
+
+    /**
+     * {@link FirestoreAdapter.LocalView} that evaluates the {@link Filters} like the server query
+     * built for them would, including the ordering by Document ID on ties.
+     */
+    private static final class FiltersView implements FirestoreAdapter.LocalView,
+            Comparator<DocumentSnapshot> {
+
+        private final Filters mFilters;
+
+        FiltersView(Filters filters) {
+            mFilters = filters;
+        }
+
+        @NonNull
+        @Override
+        public List<DocumentSnapshot> apply(@NonNull List<DocumentSnapshot> snapshots) {
+            ArrayList<DocumentSnapshot> rows = new ArrayList<>();
+            for (DocumentSnapshot snapshot : snapshots) {
+                if (matches(snapshot)) {
+                    rows.add(snapshot);
+                }
+            }
+
+            Collections.sort(rows, this);
+            return rows;
+        }
+
+        /**
+         * Checks if the restaurant {@code snapshot} satisfies the equality filters,
+         * and has the field to sort by, without which Firestore excludes the document.
+         */
+        private boolean matches(DocumentSnapshot snapshot) {
+            if (mFilters.hasSortBy() && snapshot.getDouble(mFilters.getSortBy()) == null) {
+                return false;
+            }
+            if (mFilters.hasCategory()
+                    && !mFilters.getCategory().equals(snapshot.getString(Restaurant.FIELD_CATEGORY))) {
+                return false;
+            }
+            if (mFilters.hasCity()
+                    && !mFilters.getCity().equals(snapshot.getString(Restaurant.FIELD_CITY))) {
+                return false;
+            }
+            if (mFilters.hasPrice()) {
+                Long price = snapshot.getLong(Restaurant.FIELD_PRICE);
+                return price != null && price == mFilters.getPrice();
+            }
+            return true;
+        }
+
+        @Override
+        public int compare(DocumentSnapshot o1, DocumentSnapshot o2) {
+            int result = 0;
+            if (mFilters.hasSortBy()) {
+                // Sort numerically by the field, as Firestore does for all number types
+                Double value1 = o1.getDouble(mFilters.getSortBy());
+                Double value2 = o2.getDouble(mFilters.getSortBy());
+                result = Double.compare(
+                        Objects.requireNonNull(value1), Objects.requireNonNull(value2));
+            }
+
+            if (result == 0) {
+                // Ties are ordered by the Document ID
+                result = o1.getId().compareTo(o2.getId());
+            }
+
+            // Ties follow the direction of the sort as well
+            return mFilters.hasSortBy() && mFilters.getSortDirection() == Query.Direction.DESCENDING
+                    ? -result : result;
+        }
+    }
+}
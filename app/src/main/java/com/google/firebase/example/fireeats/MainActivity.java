@@ -16,7 +16,9 @@
 package com.google.firebase.example.fireeats;
 
 import android.content.Intent;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
@@ -24,18 +26,31 @@ import android.view.View;
 
 import com.firebase.ui.auth.AuthUI;
 import com.google.android.material.snackbar.Snackbar;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.example.fireeats.adapter.PagingScrollListener;
 import com.google.firebase.example.fireeats.adapter.RestaurantAdapter;
+import com.google.firebase.example.fireeats.adapter.RestaurantPhotoPreloader;
 import com.google.firebase.example.fireeats.databinding.ActivityMainBinding;
+import com.google.firebase.example.fireeats.metrics.JsonLinesMetricsSink;
+import com.google.firebase.example.fireeats.metrics.Metrics;
+import com.google.firebase.example.fireeats.metrics.ReadLedgerOverlay;
 import com.google.firebase.example.fireeats.model.Restaurant;
+import com.google.firebase.example.fireeats.util.AppExecutors;
+import com.google.firebase.example.fireeats.util.BundleLoader;
 import com.google.firebase.example.fireeats.util.FirebaseUtil;
-import com.google.firebase.example.fireeats.util.RestaurantUtil;
+import com.google.firebase.example.fireeats.util.MapperBenchmark;
+import com.google.firebase.example.fireeats.util.RestaurantSeeder;
+import com.google.firebase.example.fireeats.util.RowHeapComparison;
+import com.google.firebase.example.fireeats.util.SnapshotHandoff;
+import com.google.firebase.example.fireeats.util.StartupTimer;
 import com.google.firebase.example.fireeats.viewmodel.MainActivityViewModel;
-import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.example.fireeats.viewmodel.RestaurantList;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.FirebaseFirestoreException;
-import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.Source;
 
+import java.io.File;
 import java.util.Collections;
 
 import androidx.appcompat.app.AppCompatActivity;
@@ -50,23 +65,56 @@ public class MainActivity extends AppCompatActivity implements
 
     private static final String TAG = "MainActivity";
 
+    // Name of the screen in the read ledger
+    public static final String SCREEN = "MainActivity";
+
     private static final int RC_SIGN_IN = 9001;
 
-    private static final int LIMIT = 50;
+    // Number of rows from the end of the list at which the next page is read
+    private static final int PREFETCH_DISTANCE = 5;
+
+    // Number of rows ahead of the scroll to preload the photos of
+    private static final int PRELOAD_PHOTO_ROWS = 10;
+
+    // Number of restaurant details prefetched at a time
+    private static final int PREFETCH_MAX_IN_FLIGHT = 2;
+    // Time for which the restaurant details prefetched are not read again
+    private static final long PREFETCH_FRESH_MILLIS = 30_000L;
+    // Time a row is to be visible for, while the list is idle, for its details to be prefetched
+    private static final long PREFETCH_DWELL_MILLIS = 1_500L;
+
+    // Time in background after which the listeners are detached, retaining the list shown
+    private static final long LISTENER_GRACE_PERIOD_MILLIS = 60_000L;
+
+    // File the metrics are recorded to, in the files directory of the App
+    private static final String METRICS_FILE = "metrics.jsonl";
+
+    // Number of random restaurants added, with up to as many ratings each
+    private static final int RANDOM_ITEM_COUNT = 10;
+    private static final int RANDOM_MAX_RATINGS = 10;
+
+    // Dataset seeded for load tests, reproducible with its fixed seed
+    private static final long LOAD_TEST_SEED = 42L;
+    private static final int LOAD_TEST_RESTAURANT_COUNT = 100_000;
+    private static final int LOAD_TEST_MAX_RATINGS = 20;
+    // Number of batches written at a time when seeding
+    private static final int SEED_BATCHES_IN_FLIGHT = 4;
 
     private ActivityMainBinding mBinding;
 
     private FirebaseFirestore mFirestore;
-    private Query mQuery;
 
     private FilterDialogFragment mFilterDialog;
     private RestaurantAdapter mAdapter;
+    private RestaurantPrefetcher mPrefetcher;
 
     private MainActivityViewModel mViewModel;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        // Measure the cold start up to the first row drawn
+        StartupTimer.onActivityCreate(savedInstanceState != null);
 
         // Inflate with ViewBinding
         mBinding = ActivityMainBinding.inflate(getLayoutInflater());
@@ -74,6 +122,8 @@ public class MainActivity extends AppCompatActivity implements
         setContentView(mBinding.getRoot());
 
         setSupportActionBar(mBinding.toolbar);
+        // Show the reads of the screen in debug builds
+        ReadLedgerOverlay.attach(this, SCREEN);
 
         mBinding.filterBar.setOnClickListener(this);
         mBinding.buttonClearFilter.setOnClickListener(this);
@@ -81,31 +131,23 @@ public class MainActivity extends AppCompatActivity implements
         // View model
         mViewModel = new ViewModelProvider(this).get(MainActivityViewModel.class);
 
-        // Enable Firestore logging
-        FirebaseFirestore.setLoggingEnabled(true);
-
-        // Initialize Firestore
+        // Initialize Firestore, warmed up by the Application
         mFirestore = FirebaseUtil.getFirestore();
-        // Initialize Query on "restaurants" Collection ordered by "avgRating" descending
-        // and take first 50 entries only
-        mQuery = mFirestore.collection(Restaurant.COLLECTION)
-                .orderBy(Restaurant.FIELD_AVG_RATING, Query.Direction.DESCENDING)
-                .limit(LIMIT);
         // Initialize the main RecyclerView
         initRecyclerView();
+        // Render the first page of the restaurants, listened to by the ViewModel, which
+        // retains it across configuration changes
+        mViewModel.getRestaurants().observe(this, this::onRestaurantsChanged);
+        // Serve the home list from the bundled top restaurants on first launch
+        loadBundle();
 
         // Filter Dialog
         mFilterDialog = new FilterDialogFragment();
     }
 
     private void initRecyclerView() {
-        if (mQuery == null) {
-            // When Query is not set, FirestoreAdapter's EventListener registration
-            // will not be done
-            Log.w(TAG, "No query, not initializing RecyclerView");
-        }
-
-        mAdapter = new RestaurantAdapter(mQuery, this) {
+        // The first page is fed by the ViewModel, which listens to its Query
+        mAdapter = new RestaurantAdapter(null, this) {
 
             @Override
             protected void onDataChanged() {
@@ -119,16 +161,98 @@ public class MainActivity extends AppCompatActivity implements
                 }
             }
 
+            @Override
+            protected void onRender(boolean fromCache, long elapsedMillis) {
+                // Report the latency of the renders by their source
+                Log.d(TAG, "Rendered " + getItemCount() + " restaurants from "
+                        + (fromCache ? "cache" : "server") + " in " + elapsedMillis + "ms");
+            }
+
             @Override
             protected void onError(FirebaseFirestoreException e) {
-                // Show a snackbar on errors
-                Snackbar.make(findViewById(android.R.id.content),
-                        "Error: check logs for info.", Snackbar.LENGTH_LONG).show();
+                showError();
             }
         };
 
+        // Read the Query in pages that fill the viewport twice over, unless the ViewModel
+        // retained a first page of another size
+        mAdapter.setPageSize(mViewModel.initPageSize(
+                PagingScrollListener.getPageSize(this, R.dimen.restaurant_item_height)));
+        // Keep every page live, as the restaurants are sorted by mutable fields such as
+        // "avgRating", which move them across the pages. Reading the pages after the first
+        // only once, or in compact form, would drop or duplicate the rows that move
+        mAdapter.setLiveFirstPageOnly(false);
+        // Retain the list and its listeners in background for the grace period
+        mAdapter.setRetainGracePeriod(LISTENER_GRACE_PERIOD_MILLIS);
+        // Keep the rows shown on changing filters, and apply only the differences in results
+        mAdapter.setDiffOnQueryChange(true);
+        mAdapter.setBackgroundExecutor(AppExecutors.background());
+        // Receive the next pages and deserialize them off the main thread
+        mAdapter.setListenerExecutor(AppExecutors.background());
+
         mBinding.recyclerRestaurants.setLayoutManager(new LinearLayoutManager(this));
         mBinding.recyclerRestaurants.setAdapter(mAdapter);
+        // Read the next page as the user nears the end of the list
+        mBinding.recyclerRestaurants.addOnScrollListener(
+                new PagingScrollListener(mAdapter, PREFETCH_DISTANCE));
+        // Preload the photos of the rows ahead of the scroll
+        mBinding.recyclerRestaurants.addOnScrollListener(
+                RestaurantPhotoPreloader.create(this, mAdapter, PRELOAD_PHOTO_ROWS));
+
+        // Prefetch the details of the restaurants touched, or visible long enough
+        mPrefetcher = new RestaurantPrefetcher(this, mFirestore, SCREEN,
+                PREFETCH_MAX_IN_FLIGHT, PREFETCH_FRESH_MILLIS);
+        mPrefetcher.attachToRecyclerView(mBinding.recyclerRestaurants, mAdapter,
+                PREFETCH_DWELL_MILLIS);
+
+        // Report the cold start once the first row is drawn
+        StartupTimer.reportFirstRow(mBinding.recyclerRestaurants, () -> {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+                reportFullyDrawn();
+            }
+        });
+    }
+
+    /**
+     * Loads the Firestore data bundle of the top restaurants into the cache, on first launch,
+     * and renders the restaurants from it while the default filters are shown and the listener
+     * has not delivered yet. The listener then refreshes the rows rendered.
+     */
+    private void loadBundle() {
+        BundleLoader.loadTopRestaurants(this, mFirestore)
+                .addOnSuccessListener(this, namedQuery -> {
+                    if (namedQuery == null) {
+                        // Loaded on an earlier launch, or not shipped
+                        return;
+                    }
+
+                    namedQuery.get(Source.CACHE).addOnSuccessListener(this, snapshot ->
+                            mViewModel.renderFromCache(Filters.getDefault(),
+                                    snapshot.getDocuments()));
+                })
+                .addOnFailureListener(this, e -> Log.w(TAG, "Bundle load failed", e));
+    }
+
+    /**
+     * Renders the first page of the restaurants delivered by the ViewModel, reconciling
+     * the rows held with it, and counts the reads of the next pages against its filters.
+     */
+    private void onRestaurantsChanged(RestaurantList restaurants) {
+        mAdapter.setReadLedger(SCREEN, restaurants.getFilters().toString());
+        mAdapter.submitFirstPage(restaurants.getQuery(), restaurants.getSnapshots(),
+                restaurants.getRestaurants(), restaurants.isFromCache());
+
+        if (restaurants.getError() != null) {
+            showError();
+        }
+    }
+
+    /**
+     * Shows a snackbar on errors.
+     */
+    private void showError() {
+        Snackbar.make(findViewById(android.R.id.content),
+                "Error: check logs for info.", Snackbar.LENGTH_LONG).show();
     }
 
     @Override
@@ -144,7 +268,7 @@ public class MainActivity extends AppCompatActivity implements
         // Apply filters
         onFilter(mViewModel.getFilters());
 
-        // Start listening for Firestore updates
+        // Resume reading the next pages, the first page being listened to by the ViewModel
         if (mAdapter != null) {
             mAdapter.startListening();
         }
@@ -153,57 +277,100 @@ public class MainActivity extends AppCompatActivity implements
     @Override
     public void onStop() {
         super.onStop();
+        if (mAdapter != null) {
+            // Retain the list shown, detaching the listeners only after the grace period
+            mAdapter.pauseListening();
+        }
+        if (mPrefetcher != null) {
+            mPrefetcher.cancelPending();
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
         if (mAdapter != null) {
             mAdapter.stopListening();
         }
     }
 
     private void onAddItemsClicked() {
-        // Get a reference to "restaurants" collection
-        CollectionReference restaurants = mFirestore.collection(Restaurant.COLLECTION);
+        // Add random restaurants with their ratings, from a new seed every time
+        seed(System.currentTimeMillis(), RANDOM_ITEM_COUNT, RANDOM_MAX_RATINGS);
+    }
 
-        // Add 10 random restaurants
-        for (int i = 0; i < 10; i++) {
-            // Get a random Restaurant POJO
-            Restaurant restaurant = RestaurantUtil.getRandom(this);
+    private void onSeedLoadTestClicked() {
+        // Add the reproducible dataset for load tests
+        seed(LOAD_TEST_SEED, LOAD_TEST_RESTAURANT_COUNT, LOAD_TEST_MAX_RATINGS);
+    }
 
-            // Add a new "restaurant" document to the "restaurants" collection
-            restaurants.add(restaurant);
-        }
+    private void onBenchmarkMappersClicked() {
+        // Compare the generated mapper with toObject on the restaurants loaded
+        MapperBenchmark.run(mAdapter.getFirstPageSnapshots())
+                .addOnSuccessListener(report -> Log.d(TAG, "Mapper benchmark: " + report))
+                .addOnFailureListener(e -> Log.w(TAG, "Mapper benchmark failed", e));
     }
 
-    @Override
-    public void onFilter(Filters filters) {
-        // Construct initial Query on "restaurants" collection
-        Query query = mFirestore.collection(Restaurant.COLLECTION);
+    private void onCompareRowHeapClicked() {
+        // Compare the heap of the rows held as snapshots and in compact form
+        RowHeapComparison.run(mFirestore.collection(Restaurant.COLLECTION))
+                .addOnSuccessListener(report -> Log.d(TAG, "Row heap: " + report))
+                .addOnFailureListener(e -> Log.w(TAG, "Row heap comparison failed", e));
+    }
 
-        // Add Category equality filter if set
-        if (filters.hasCategory()) {
-            query = query.whereEqualTo(Restaurant.FIELD_CATEGORY, filters.getCategory());
+    private void onRecordMetricsClicked(MenuItem item) {
+        if (Metrics.isEnabled()) {
+            Metrics.disable();
+        } else {
+            // Record the metrics of the hot paths as JSON lines, pulled with
+            // "adb shell run-as <package> cat files/metrics.jsonl"
+            File file = new File(getFilesDir(), METRICS_FILE);
+            Metrics.enable(new JsonLinesMetricsSink(file));
+            Log.d(TAG, "Recording metrics to " + file);
         }
+        item.setChecked(Metrics.isEnabled());
+    }
 
-        // Add City equality filter if set
-        if (filters.hasCity()) {
-            query = query.whereEqualTo(Restaurant.FIELD_CITY, filters.getCity());
+    /**
+     * Seeds the "restaurants" collection with random restaurants and their ratings,
+     * written in batches.
+     *
+     * @param seed            The seed of the random generator, logged to reproduce the dataset.
+     * @param restaurantCount The number of restaurants to add.
+     * @param maxRatings      The maximum number of ratings to add per restaurant.
+     */
+    private void seed(long seed, int restaurantCount, int maxRatings) {
+        FirebaseUser user = FirebaseUtil.getAuth().getCurrentUser();
+        if (user == null) {
+            // Ratings need an author
+            return;
         }
 
-        // Add Price equality filter if set
-        if (filters.hasPrice()) {
-            query = query.whereEqualTo(Restaurant.FIELD_PRICE, filters.getPrice());
-        }
+        // Seeding is owned by the ViewModel, to carry on across configuration changes
+        mViewModel.startSeeding(new RestaurantSeeder(this, mFirestore, user, seed,
+                restaurantCount, maxRatings, SEED_BATCHES_IN_FLIGHT));
+    }
 
-        // Add Sort by filters (orderBy with direction) if set
-        if (filters.hasSortBy()) {
-            query = query.orderBy(filters.getSortBy(), filters.getSortDirection());
+    @Override
+    public void onFilter(Filters filters) {
+        // Filters of the Query listened to, which may be broader than the filters shown
+        Filters serverFilters = mViewModel.getServerFilters();
+        // The results are complete when loaded in full, or when the first page retained
+        // by the ViewModel is all of them, as it is before the adapter renders it on recreation
+        boolean complete = mAdapter.isComplete() || mViewModel.hasCompleteResults();
+        if (!filters.equals(serverFilters)
+                && LocalQueryEngine.canDerive(serverFilters, complete, filters)) {
+            // Filter and sort the complete results loaded in memory, without a server query
+            mAdapter.setLocalView(LocalQueryEngine.getView(filters));
+        } else if (filters.equals(serverFilters)) {
+            // Show the results of the same query as is
+            mAdapter.setLocalView(null);
+        } else {
+            // Listen to the server query of the filters, rendering their recent results
+            // from memory if present, with the rows shown kept until its results arrive
+            mViewModel.setServerFilters(filters);
         }
 
-        // Limit to top 50 items
-        query = query.limit(LIMIT);
-
-        // Update query to Adapter
-        mQuery = query;
-        mAdapter.setQuery(mQuery);
-
         // Set header
         mBinding.textCurrentSearch.setText(HtmlCompat.fromHtml(filters.getSearchDescription(this), HtmlCompat.FROM_HTML_MODE_COMPACT));
         mBinding.textCurrentSortBy.setText(filters.getOrderDescription(this));
@@ -215,6 +382,12 @@ public class MainActivity extends AppCompatActivity implements
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.menu_main, menu);
+        // Seeding load test data is for debug builds only
+        menu.findItem(R.id.menu_seed_load_test).setVisible(BuildConfig.DEBUG);
+        menu.findItem(R.id.menu_benchmark_mappers).setVisible(BuildConfig.DEBUG);
+        menu.findItem(R.id.menu_compare_row_heap).setVisible(BuildConfig.DEBUG);
+        menu.findItem(R.id.menu_record_metrics).setVisible(BuildConfig.DEBUG)
+                .setChecked(Metrics.isEnabled());
         return super.onCreateOptionsMenu(menu);
     }
 
@@ -222,6 +395,14 @@ public class MainActivity extends AppCompatActivity implements
     public boolean onOptionsItemSelected(MenuItem item) {
         if (item.getItemId() == R.id.menu_add_items) {
             onAddItemsClicked();
+        } else if (item.getItemId() == R.id.menu_seed_load_test) {
+            onSeedLoadTestClicked();
+        } else if (item.getItemId() == R.id.menu_benchmark_mappers) {
+            onBenchmarkMappersClicked();
+        } else if (item.getItemId() == R.id.menu_compare_row_heap) {
+            onCompareRowHeapClicked();
+        } else if (item.getItemId() == R.id.menu_record_metrics) {
+            onRecordMetricsClicked(item);
         } else if (item.getItemId() == R.id.menu_sign_out) {
             FirebaseUtil.getAuthUI().signOut(this);
             startSignIn();
@@ -262,12 +443,27 @@ public class MainActivity extends AppCompatActivity implements
         onFilter(Filters.getDefault());
     }
 
+    @Override
+    public void onRestaurantPressed(String restaurantId) {
+        // Warm the cache for the details page, which is likely to be opened
+        mPrefetcher.prefetch(restaurantId);
+    }
+
     @Override
     public void onRestaurantSelected(DocumentSnapshot restaurant) {
-        // Go to the details page for the selected restaurant
-        Intent intent = new Intent(this, RestaurantDetailActivity.class);
-        intent.putExtra(RestaurantDetailActivity.KEY_RESTAURANT_ID, restaurant.getId());
+        // Hand off the restaurant loaded, for the details page to render at once
+        SnapshotHandoff.put(restaurant);
 
+        startDetails(restaurant.getId());
+    }
+
+    /**
+     * Goes to the details page of the restaurant of the {@code restaurantId}.
+     */
+    private void startDetails(String restaurantId) {
+        Intent intent = new Intent(this, RestaurantDetailActivity.class);
+        intent.putExtra(RestaurantDetailActivity.KEY_RESTAURANT_ID, restaurantId);
+        intent.putExtra(RestaurantDetailActivity.KEY_START_TIME, SystemClock.elapsedRealtime());
         startActivity(intent);
     }
 
@@ -16,20 +16,28 @@
 package com.google.firebase.example.fireeats;
 
 import android.content.Context;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.View;
 import android.view.inputmethod.InputMethodManager;
 
-import com.google.android.gms.tasks.Task;
 import com.google.android.material.snackbar.Snackbar;
+import com.google.firebase.example.fireeats.adapter.PagingScrollListener;
 import com.google.firebase.example.fireeats.adapter.RatingAdapter;
 import com.google.firebase.example.fireeats.databinding.ActivityRestaurantDetailBinding;
+import com.google.firebase.example.fireeats.metrics.Metrics;
+import com.google.firebase.example.fireeats.metrics.ReadLedger;
+import com.google.firebase.example.fireeats.metrics.ReadLedgerOverlay;
 import com.google.firebase.example.fireeats.model.Rating;
 import com.google.firebase.example.fireeats.model.Restaurant;
+import com.google.firebase.example.fireeats.model.RestaurantMapper;
 import com.google.firebase.example.fireeats.util.FirebaseUtil;
 import com.google.firebase.example.fireeats.util.GlideApp;
+import com.google.firebase.example.fireeats.util.RatingShardUtil;
 import com.google.firebase.example.fireeats.util.RestaurantUtil;
+import com.google.firebase.example.fireeats.util.SnapshotHandoff;
 import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.EventListener;
@@ -37,6 +45,7 @@ import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.FirebaseFirestoreException;
 import com.google.firebase.firestore.ListenerRegistration;
 import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
 
 import java.util.Objects;
 
@@ -50,8 +59,18 @@ public class RestaurantDetailActivity extends AppCompatActivity implements
         RatingDialogFragment.RatingListener {
 
     public static final String KEY_RESTAURANT_ID = "key_restaurant_id";
+    // Optional time of the tap that opened the details, in elapsed realtime milliseconds
+    public static final String KEY_START_TIME = "key_start_time";
     private static final String TAG = "RestaurantDetail";
-    private static final int LIMIT = 50;
+    // Name of the screen in the read ledger
+    private static final String SCREEN = "RestaurantDetailActivity";
+    // Number of rows from the end of the list at which the next page of ratings is read
+    private static final int PREFETCH_DISTANCE = 5;
+    // Number of ratings held by the shards, at which they are rolled up into the Restaurant
+    private static final int ROLL_UP_THRESHOLD = 20;
+    // Delay after which the ratings held by the shards are rolled up into the Restaurant,
+    // for the aggregate read by the list of restaurants to lag behind by this much at most
+    private static final long ROLL_UP_DELAY_MILLIS = 30_000;
     private ActivityRestaurantDetailBinding mBinding;
 
     private RatingDialogFragment mRatingDialog;
@@ -59,12 +78,29 @@ public class RestaurantDetailActivity extends AppCompatActivity implements
     private FirebaseFirestore mFirestore;
     private DocumentReference mRestaurantRef;
     private ListenerRegistration mRestaurantRegistration;
+    private ListenerRegistration mShardsRegistration;
+
+    // Restaurant with the aggregate rolled up last, and the snapshot of the shards
+    private Restaurant mRestaurant;
+    private QuerySnapshot mShardsSnapshot;
+    // Whether a roll up of the shards is in progress, or scheduled
+    private boolean mRollingUp;
+    private final Runnable mRollUpRunnable = this::rollUp;
+    private boolean mRollUpScheduled;
+    // Snapshot of the Restaurant shown, and the photo loaded
+    private DocumentSnapshot mRestaurantSnapshot;
+    private String mBoundPhoto;
+
+    // Time the details were requested at, to measure the time to first content
+    private long mStartTime;
+    private boolean mFirstContentShown;
 
     private RatingAdapter mRatingAdapter;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        mStartTime = getIntent().getLongExtra(KEY_START_TIME, SystemClock.elapsedRealtime());
         // Inflate with ViewBinding
         mBinding = ActivityRestaurantDetailBinding.inflate(getLayoutInflater());
         // Set the root view from ViewBinding instance
@@ -72,6 +108,8 @@ public class RestaurantDetailActivity extends AppCompatActivity implements
 
         mBinding.restaurantButtonBack.setOnClickListener(this);
         mBinding.fabShowRatingDialog.setOnClickListener(this);
+        // Show the reads of the screen in debug builds
+        ReadLedgerOverlay.attach(this, SCREEN);
 
         // Get restaurant ID from extras
         String restaurantId = getIntent().getExtras().getString(KEY_RESTAURANT_ID);
@@ -85,11 +123,15 @@ public class RestaurantDetailActivity extends AppCompatActivity implements
         // Get reference to the restaurant
         mRestaurantRef = mFirestore.collection(Restaurant.COLLECTION).document(restaurantId);
 
-        // Get ratings
-        Query ratingsQuery = mRestaurantRef
-                .collection(Rating.COLLECTION)
-                .orderBy(Rating.FIELD_TIMESTAMP, Query.Direction.DESCENDING)
-                .limit(LIMIT);
+        // Render the restaurant handed off by the list at once, if any,
+        // for the listener to apply only the later differences
+        DocumentSnapshot handoff = SnapshotHandoff.get(restaurantId);
+        if (handoff != null) {
+            onRestaurantSnapshot(handoff, "handoff");
+        }
+
+        // Get ratings, newest first, which are read in pages by the adapter
+        Query ratingsQuery = getRatingsQuery(mRestaurantRef);
 
         // RecyclerView
         mRatingAdapter = new RatingAdapter(ratingsQuery) {
@@ -105,18 +147,59 @@ public class RestaurantDetailActivity extends AppCompatActivity implements
             }
         };
 
+        // Read the ratings in pages as the user scrolls, where only the newest page
+        // is kept live, and the older pages are read once and held in compact form,
+        // as the ratings are sorted by their immutable timestamp and new ones come first
+        mRatingAdapter.setPageSize(getRatingsPageSize(this));
+        mRatingAdapter.setLiveFirstPageOnly(true);
+        mRatingAdapter.setCompactRows(true);
+        mRatingAdapter.setReadLedger(SCREEN, "ratings orderBy timestamp desc");
+
         mBinding.recyclerRatings.setLayoutManager(new LinearLayoutManager(this));
         mBinding.recyclerRatings.setAdapter(mRatingAdapter);
+        mBinding.recyclerRatings.addOnScrollListener(
+                new PagingScrollListener(mRatingAdapter, PREFETCH_DISTANCE));
 
         mRatingDialog = new RatingDialogFragment();
     }
 
+    /**
+     * Returns the {@link Query} of the ratings of the restaurant, newest first.
+     */
+    static Query getRatingsQuery(DocumentReference restaurantRef) {
+        return restaurantRef
+                .collection(Rating.COLLECTION)
+                .orderBy(Rating.FIELD_TIMESTAMP, Query.Direction.DESCENDING);
+    }
+
+    /**
+     * Returns the number of ratings read per page.
+     */
+    static int getRatingsPageSize(Context context) {
+        return PagingScrollListener.getPageSize(context, R.dimen.rating_item_height);
+    }
+
     @Override
     public void onStart() {
         super.onStart();
 
         mRatingAdapter.startListening();
         mRestaurantRegistration = mRestaurantRef.addSnapshotListener(this);
+
+        // Listen to the shards for the ratings not yet rolled up into the Restaurant
+        final ReadLedger.Listen shardsListen = new ReadLedger.Listen();
+        mShardsRegistration = RatingShardUtil.getShards(mRestaurantRef)
+                .addSnapshotListener(this, (snapshot, e) -> {
+                    if (e != null) {
+                        Log.w(TAG, "shards:onEvent", e);
+                        return;
+                    }
+
+                    ReadLedger.recordQuery(SCREEN, "ratingShards",
+                            Objects.requireNonNull(snapshot), shardsListen);
+
+                    onShardsLoaded(snapshot);
+                });
     }
 
     @Override
@@ -129,6 +212,20 @@ public class RestaurantDetailActivity extends AppCompatActivity implements
             mRestaurantRegistration.remove();
             mRestaurantRegistration = null;
         }
+
+        if (mShardsRegistration != null) {
+            mShardsRegistration.remove();
+            mShardsRegistration = null;
+        }
+
+        // Roll up the ratings left in the shards on leaving, rather than
+        // leaving the list of restaurants stale until the details are open again
+        mBinding.getRoot().removeCallbacks(mRollUpRunnable);
+        mRollUpScheduled = false;
+        RatingShardUtil.Aggregate aggregate = getShardsAggregate();
+        if (aggregate != null && aggregate.getNumRatings() > 0) {
+            rollUp();
+        }
     }
 
     @Override
@@ -140,52 +237,124 @@ public class RestaurantDetailActivity extends AppCompatActivity implements
         }
     }
 
-    private Task<Void> addRating(final DocumentReference restaurantRef, final Rating rating) {
-        // Create a reference to the new Rating document, for use inside the transaction
-        final DocumentReference ratingRef = restaurantRef.collection(Rating.COLLECTION).document();
+    /**
+     * Listener for the Restaurant document ({@link #mRestaurantRef}).
+     */
+    @Override
+    public void onEvent(DocumentSnapshot snapshot, FirebaseFirestoreException e) {
+        if (e != null) {
+            Log.w(TAG, "restaurant:onEvent", e);
+            return;
+        }
+
+        ReadLedger.recordDocument(SCREEN, "restaurant", snapshot);
+
+        onRestaurantSnapshot(snapshot, "listener");
+    }
+
+    /**
+     * Shows the Restaurant from the {@code snapshot}, unless its content is the same
+     * as the Restaurant shown.
+     *
+     * @param snapshot The snapshot of the Restaurant document.
+     * @param source   The source of the snapshot, logged with the time to first content.
+     */
+    private void onRestaurantSnapshot(DocumentSnapshot snapshot, String source) {
+        boolean isSameContent = mRestaurantSnapshot != null
+                && Objects.equals(mRestaurantSnapshot.getData(), snapshot.getData());
+        mRestaurantSnapshot = snapshot;
+        if (isSameContent) {
+            // Already shown
+            return;
+        }
+
+        mRestaurant = Objects.requireNonNull(RestaurantMapper.fromSnapshot(snapshot));
+        bindRestaurant();
 
-        // In a transaction, add the new rating and update aggregate totals
-        return mFirestore.runTransaction(transaction -> {
+        if (!mFirstContentShown) {
+            mFirstContentShown = true;
+            Log.d(TAG, "Time to first content: " + (SystemClock.elapsedRealtime() - mStartTime)
+                    + "ms from " + source);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+                reportFullyDrawn();
+            }
+        }
+    }
 
-            // Read current restaurant document reference and convert to Restaurant POJO
-            Restaurant restaurant = Objects.requireNonNull(
-                    transaction.get(restaurantRef).toObject(Restaurant.class)
-            );
+    /**
+     * Called when the shards are read, to show the current aggregate, and to roll up the shards
+     * when they hold enough ratings, or else after {@link #ROLL_UP_DELAY_MILLIS}.
+     */
+    private void onShardsLoaded(QuerySnapshot snapshot) {
+        mShardsSnapshot = snapshot;
+        bindRestaurant();
 
-            // Compute new number of ratings
-            int newNumRatings = restaurant.getNumRatings() + 1;
+        RatingShardUtil.Aggregate aggregate = getShardsAggregate();
+        if (aggregate == null || aggregate.getNumRatings() == 0) {
+            return;
+        }
 
-            // Compute new average rating
-            double oldRatingTotal = restaurant.getAvgRating() * restaurant.getNumRatings();
-            double newAvgRating = (rating.getRating() + oldRatingTotal) / newNumRatings;
+        if (aggregate.getNumRatings() >= ROLL_UP_THRESHOLD) {
+            rollUp();
+        } else if (!mRollUpScheduled) {
+            mRollUpScheduled = true;
+            mBinding.getRoot().postDelayed(mRollUpRunnable, ROLL_UP_DELAY_MILLIS);
+        }
+    }
 
-            // Set new aggregate on Restaurant POJO
-            restaurant.setNumRatings(newNumRatings);
-            restaurant.setAvgRating(newAvgRating);
+    /**
+     * Rolls up the ratings held by the shards into the Restaurant, unless already in progress.
+     * The roll up completes even if the screen is left meanwhile.
+     */
+    private void rollUp() {
+        mBinding.getRoot().removeCallbacks(mRollUpRunnable);
+        mRollUpScheduled = false;
+        if (mRollingUp) {
+            return;
+        }
 
-            // Commit Restaurant update and its Rating to Firestore
-            transaction.set(restaurantRef, restaurant);
-            transaction.set(ratingRef, rating);
+        mRollingUp = true;
+        RatingShardUtil.rollUp(mFirestore, mRestaurantRef, SCREEN)
+                .addOnCompleteListener(task -> {
+                    mRollingUp = false;
+                    if (!task.isSuccessful()) {
+                        Log.w(TAG, "Roll up of rating shards failed", task.getException());
+                    }
+                });
+    }
 
+    /**
+     * Returns the aggregate of the ratings held by the shards and not yet in the Restaurant
+     * shown, or null if either is not read yet.
+     */
+    @Nullable
+    private RatingShardUtil.Aggregate getShardsAggregate() {
+        if (mShardsSnapshot == null || mRestaurantSnapshot == null) {
             return null;
-        });
+        }
+
+        // Only the shards of the same roll up as the Restaurant read, as they are read
+        // by separate listeners
+        return RatingShardUtil.sum(mShardsSnapshot,
+                RatingShardUtil.getRollUps(mRestaurantSnapshot));
     }
 
     /**
-     * Listener for the Restaurant document ({@link #mRestaurantRef}).
+     * Shows the Restaurant with the ratings held by the shards, if any, applied on its aggregate.
      */
-    @Override
-    public void onEvent(DocumentSnapshot snapshot, FirebaseFirestoreException e) {
-        if (e != null) {
-            Log.w(TAG, "restaurant:onEvent", e);
+    private void bindRestaurant() {
+        if (mRestaurant == null) {
             return;
         }
 
-        onRestaurantLoaded(snapshot.toObject(Restaurant.class));
+        RatingShardUtil.Aggregate aggregate = getShardsAggregate();
+        onRestaurantLoaded(aggregate != null
+                ? RatingShardUtil.applyTo(mRestaurant, aggregate) : mRestaurant);
     }
 
     private void onRestaurantLoaded(@Nullable Restaurant restaurant) {
         Objects.requireNonNull(restaurant);
+        long sectionStart = Metrics.beginSection(Metrics.SECTION_RESTAURANT_LOADED);
 
         mBinding.restaurantName.setText(restaurant.getName());
         mBinding.restaurantRating.setRating((float) restaurant.getAvgRating());
@@ -194,10 +363,15 @@ public class RestaurantDetailActivity extends AppCompatActivity implements
         mBinding.restaurantCategory.setText(restaurant.getCategory());
         mBinding.restaurantPrice.setText(RestaurantUtil.getPriceString(restaurant));
 
-        // Background image
-        GlideApp.with(mBinding.restaurantImage.getContext())
-                .load(restaurant.getPhoto())
-                .into(mBinding.restaurantImage);
+        if (!Objects.equals(mBoundPhoto, restaurant.getPhoto())) {
+            // Background image, in full quality, loaded only when changed
+            mBoundPhoto = restaurant.getPhoto();
+            GlideApp.with(mBinding.restaurantImage.getContext())
+                    .load(restaurant.getPhoto())
+                    .fullQuality()
+                    .into(mBinding.restaurantImage);
+        }
+        Metrics.endSection(sectionStart, Metrics.RESTAURANT_LOADED_US);
     }
 
     public void onBackArrowClicked(View view) {
@@ -210,8 +384,9 @@ public class RestaurantDetailActivity extends AppCompatActivity implements
 
     @Override
     public void onRating(Rating rating) {
-        // In a transaction, add the new rating and update the aggregate totals
-        addRating(mRestaurantRef, rating)
+        // Add the new rating and increment a random shard, without contending
+        // on the Restaurant document
+        RatingShardUtil.addRating(mFirestore, mRestaurantRef, rating)
                 .addOnSuccessListener(this, aVoid -> {
                     Log.d(TAG, "Rating added");
 
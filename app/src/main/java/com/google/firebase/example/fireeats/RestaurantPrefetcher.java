@@ -0,0 +1,206 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.example.fireeats.adapter.RestaurantAdapter;
+import com.google.firebase.example.fireeats.metrics.ReadLedger;
+import com.google.firebase.example.fireeats.model.Restaurant;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Speculatively reads the restaurant document and the first page of its ratings, as read by
+ * {@link RestaurantDetailActivity}, to warm the Firestore cache before the details are opened.
+ * <p>
+ * Prefetches are triggered on touch-down of a row with {@link #prefetch(String)}, and optionally
+ * for the rows that stay visible long enough while the list is idle, with
+ * {@link #attachToRecyclerView(RecyclerView, RestaurantAdapter, long)}. Only a few prefetches run
+ * at a time, the most recent requests first, and the pending requests are dropped when the list
+ * scrolls, so that fast scrolling does not flood the network. Restaurants prefetched recently
+ * are not read again.
+ */
+@MainThread
+public class RestaurantPrefetcher {
+
+    private static final String TAG = "RestaurantPrefetcher";
+
+    // Maximum number of requests pending, beyond which the oldest are dropped
+    private static final int MAX_PENDING = 6;
+
+    private final FirebaseFirestore mFirestore;
+    // Screen the reads of the prefetches are counted against in the read ledger
+    private final String mScreen;
+    // Number of ratings read by the first page of the details
+    private final int mRatingsPageSize;
+    // Maximum number of prefetches running at a time
+    private final int mMaxInFlight;
+    // Time for which a prefetch is considered fresh
+    private final long mFreshMillis;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    // Restaurant IDs of the requests pending, the most recent last
+    private final ArrayDeque<String> mPending = new ArrayDeque<>();
+    // Restaurant IDs being prefetched
+    private final HashSet<String> mInFlight = new HashSet<>();
+    // Time of the last prefetch of the Restaurant IDs
+    private final HashMap<String, Long> mPrefetchedAt = new HashMap<>();
+    // Requests for the visible rows, posted after the dwell time
+    private final ArrayDeque<Runnable> mDwellRequests = new ArrayDeque<>();
+
+    /**
+     * Constructor of {@link RestaurantPrefetcher}
+     *
+     * @param context     The {@link Context} to compute the page size of ratings with.
+     * @param firestore   The {@link FirebaseFirestore} instance to read with.
+     * @param screen      The screen to count the reads against in the {@link ReadLedger}.
+     * @param maxInFlight The maximum number of prefetches running at a time.
+     * @param freshMillis The time for which a prefetch is not repeated, in milliseconds.
+     */
+    public RestaurantPrefetcher(@NonNull Context context, @NonNull FirebaseFirestore firestore,
+                                @NonNull String screen, int maxInFlight, long freshMillis) {
+        mFirestore = firestore;
+        mScreen = screen;
+        mRatingsPageSize = RestaurantDetailActivity.getRatingsPageSize(context);
+        mMaxInFlight = maxInFlight;
+        mFreshMillis = freshMillis;
+    }
+
+    /**
+     * Requests to prefetch the details of the restaurant, unless prefetched recently
+     * or being prefetched.
+     *
+     * @param restaurantId The Document ID of the restaurant.
+     */
+    public void prefetch(@NonNull String restaurantId) {
+        if (mInFlight.contains(restaurantId) || isFresh(restaurantId)) {
+            return;
+        }
+
+        // Move the request to the front of the pending, dropping the oldest requests
+        mPending.remove(restaurantId);
+        mPending.addLast(restaurantId);
+        while (mPending.size() > MAX_PENDING) {
+            mPending.removeFirst();
+        }
+
+        startPending();
+    }
+
+    /**
+     * Drops all the requests pending, including the requests of the visible rows yet to be made.
+     * Prefetches already running are left to complete.
+     */
+    public void cancelPending() {
+        mPending.clear();
+        for (Runnable dwellRequest : mDwellRequests) {
+            mHandler.removeCallbacks(dwellRequest);
+        }
+        mDwellRequests.clear();
+    }
+
+    /**
+     * Prefetches the details of the restaurants whose rows stay visible for the {@code dwellMillis}
+     * while the list is idle. The requests are cancelled as soon as the list scrolls again.
+     *
+     * @param recyclerView The {@link RecyclerView} of the restaurants.
+     * @param adapter      The {@link RestaurantAdapter} of the restaurants.
+     * @param dwellMillis  The time a row is to be visible for, in milliseconds.
+     */
+    public void attachToRecyclerView(@NonNull RecyclerView recyclerView,
+                                     @NonNull RestaurantAdapter adapter,
+                                     final long dwellMillis) {
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+                // Drop the requests of the rows that scroll by
+                cancelPending();
+                if (newState != RecyclerView.SCROLL_STATE_IDLE
+                        || !(recyclerView.getLayoutManager() instanceof LinearLayoutManager)) {
+                    return;
+                }
+
+                // Request the visible rows after the dwell time
+                LinearLayoutManager layoutManager =
+                        (LinearLayoutManager) recyclerView.getLayoutManager();
+                int first = layoutManager.findFirstCompletelyVisibleItemPosition();
+                int last = layoutManager.findLastCompletelyVisibleItemPosition();
+                for (int position = first; position >= 0 && position <= last
+                        && position < adapter.getItemCount(); position++) {
+                    final String restaurantId = adapter.getRestaurantId(position);
+                    Runnable dwellRequest = () -> prefetch(restaurantId);
+                    mDwellRequests.add(dwellRequest);
+                    mHandler.postDelayed(dwellRequest, dwellMillis);
+                }
+            }
+        });
+    }
+
+    /**
+     * Starts the most recent requests pending, up to the maximum number of prefetches at a time.
+     */
+    private void startPending() {
+        while (mInFlight.size() < mMaxInFlight && !mPending.isEmpty()) {
+            start(mPending.removeLast());
+        }
+    }
+
+    /**
+     * Reads the restaurant document and the first page of its ratings, into the Firestore cache.
+     */
+    private void start(final String restaurantId) {
+        mInFlight.add(restaurantId);
+
+        DocumentReference restaurantRef =
+                mFirestore.collection(Restaurant.COLLECTION).document(restaurantId);
+        Tasks.whenAllComplete(
+                restaurantRef.get().addOnSuccessListener(snapshot ->
+                        ReadLedger.recordDocument(mScreen, "prefetch restaurant", snapshot)),
+                RestaurantDetailActivity.getRatingsQuery(restaurantRef).limit(mRatingsPageSize).get()
+                        .addOnSuccessListener(snapshot ->
+                                ReadLedger.recordQuery(mScreen, "prefetch ratings", snapshot, null))
+        ).addOnCompleteListener(task -> {
+            mInFlight.remove(restaurantId);
+            mPrefetchedAt.put(restaurantId, SystemClock.elapsedRealtime());
+            Log.d(TAG, "Prefetched restaurant " + restaurantId);
+
+            startPending();
+        });
+    }
+
+    /**
+     * Checks if the restaurant was prefetched within the fresh time.
+     */
+    private boolean isFresh(String restaurantId) {
+        Long prefetchedAt = mPrefetchedAt.get(restaurantId);
+        return prefetchedAt != null && SystemClock.elapsedRealtime() - prefetchedAt < mFreshMillis;
+    }
+}
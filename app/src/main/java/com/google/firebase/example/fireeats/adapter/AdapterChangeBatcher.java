@@ -0,0 +1,100 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.adapter;
+
+import com.google.firebase.example.fireeats.core.ChangeBatcher;
+import com.google.firebase.example.fireeats.core.ListUpdateSink;
+
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+/**
+ * {@link ChangeBatcher} of the item change events of the adapter, which also records
+ * the events dispatched by {@link androidx.recyclerview.widget.DiffUtil}.
+ */
+class AdapterChangeBatcher extends ChangeBatcher implements ListUpdateCallback {
+
+    /**
+     * Constructor of {@link AdapterChangeBatcher}
+     *
+     * @param rangeCallback          The {@link ListUpdateCallback} to dispatch the range events to.
+     * @param dataSetChangedCallback The {@link Runnable} to dispatch the single data set change to.
+     * @param threshold              The number of range events beyond which the burst is
+     *                               dispatched as a single data set change.
+     */
+    AdapterChangeBatcher(ListUpdateCallback rangeCallback, Runnable dataSetChangedCallback,
+                         int threshold) {
+        super(toSink(rangeCallback), dataSetChangedCallback, threshold);
+    }
+
+    /**
+     * Returns a {@link ListUpdateSink} that forwards the events to the {@code callback}.
+     */
+    private static ListUpdateSink toSink(final ListUpdateCallback callback) {
+        return new ListUpdateSink() {
+            @Override
+            public void onInserted(int position, int count) {
+                callback.onInserted(position, count);
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                callback.onRemoved(position, count);
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                callback.onMoved(fromPosition, toPosition);
+            }
+
+            @Override
+            public void onChanged(int position, int count, @Nullable Object payload) {
+                callback.onChanged(position, count, payload);
+            }
+        };
+    }
+
+    /**
+     * Returns a {@link ListUpdateCallback} that records the events into this batcher after
+     * shifting their positions by the {@code offset}.
+     *
+     * @param offset The position in the adapter of the first item of the list
+     *               the events are relative to.
+     */
+    ListUpdateCallback offsetBy(final int offset) {
+        return new ListUpdateCallback() {
+            @Override
+            public void onInserted(int position, int count) {
+                AdapterChangeBatcher.this.onInserted(offset + position, count);
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                AdapterChangeBatcher.this.onRemoved(offset + position, count);
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                AdapterChangeBatcher.this.onMoved(offset + fromPosition, offset + toPosition);
+            }
+
+            @Override
+            public void onChanged(int position, int count, @Nullable Object payload) {
+                AdapterChangeBatcher.this.onChanged(offset + position, count, payload);
+            }
+        };
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.adapter;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Payload of an item change event of {@link FirestoreAdapter}, holding the names of the
+ * top-level fields that changed between the old and new versions of a Document, so that
+ * the ViewHolder can update only the views of those fields.
+ */
+public final class ChangePayload {
+
+    // Names of the top-level fields changed
+    private final Set<String> mFields;
+
+    private ChangePayload(Set<String> fields) {
+        mFields = fields;
+    }
+
+    /**
+     * Creates the {@link ChangePayload} of the fields that differ between the
+     * two versions of a Document.
+     *
+     * @param oldSnapshot The old version of the Document.
+     * @param newSnapshot The new version of the Document.
+     */
+    @NonNull
+    static ChangePayload of(@NonNull DocumentSnapshot oldSnapshot,
+                            @NonNull DocumentSnapshot newSnapshot) {
+        Map<String, Object> oldData = oldSnapshot.getData();
+        Map<String, Object> newData = newSnapshot.getData();
+        if (oldData == null || newData == null) {
+            // Document no longer exists in one of the versions, hence everything changed
+            HashSet<String> fields = new HashSet<>();
+            if (oldData != null) {
+                fields.addAll(oldData.keySet());
+            }
+            if (newData != null) {
+                fields.addAll(newData.keySet());
+            }
+            return new ChangePayload(fields);
+        }
+
+        HashSet<String> fields = new HashSet<>();
+        for (Map.Entry<String, Object> oldEntry : oldData.entrySet()) {
+            if (!Objects.equals(oldEntry.getValue(), newData.get(oldEntry.getKey()))) {
+                fields.add(oldEntry.getKey());
+            }
+        }
+        for (String newField : newData.keySet()) {
+            if (!oldData.containsKey(newField)) {
+                fields.add(newField);
+            }
+        }
+        return new ChangePayload(fields);
+    }
+
+    /**
+     * Merges the payloads of the item change events delivered to a ViewHolder since
+     * it was last bound, into a single {@link ChangePayload}.
+     *
+     * @param payloads The payloads delivered to {@code onBindViewHolder}.
+     * @return The merged {@link ChangePayload}, or {@code null} when the ViewHolder is to be
+     * bound in full, i.e., when there are no payloads or any of them is not a {@link ChangePayload}.
+     */
+    @Nullable
+    public static ChangePayload merge(@NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            return null;
+        }
+
+        HashSet<String> fields = new HashSet<>();
+        for (Object payload : payloads) {
+            if (!(payload instanceof ChangePayload)) {
+                return null;
+            }
+            fields.addAll(((ChangePayload) payload).mFields);
+        }
+        return new ChangePayload(fields);
+    }
+
+    /**
+     * Checks if the {@code field} has changed.
+     */
+    public boolean contains(@NonNull String field) {
+        return mFields.contains(field);
+    }
+
+    /**
+     * Returns the names of the top-level fields changed.
+     */
+    @NonNull
+    public Set<String> getFields() {
+        return Collections.unmodifiableSet(mFields);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return mFields.equals(((ChangePayload) o).mFields);
+    }
+
+    @Override
+    public int hashCode() {
+        return mFields.hashCode();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "ChangePayload" + mFields;
+    }
+}
@@ -15,8 +15,15 @@
  */
 package com.google.firebase.example.fireeats.adapter;
 
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
+import com.google.firebase.example.fireeats.core.SnapshotListEngine;
+import com.google.firebase.example.fireeats.metrics.Metrics;
+import com.google.firebase.example.fireeats.metrics.ReadLedger;
+import com.google.firebase.example.fireeats.util.AppExecutors;
 import com.google.firebase.firestore.DocumentChange;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.EventListener;
@@ -24,51 +31,223 @@ import com.google.firebase.firestore.FirebaseFirestoreException;
 import com.google.firebase.firestore.ListenerRegistration;
 import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 /**
  * RecyclerView adapter for displaying the results of a Firestore {@link Query}.
  * <p>
- * Note that this class forgoes some efficiency to gain simplicity. For example, the result of
- * {@link DocumentSnapshot#toObject(Class)} is not cached so the same object may be deserialized
- * many times as the user scrolls.
+ * The models deserialized from the snapshots are cached by their Document ID and the snapshot
+ * version they were read from, so that {@link #getItem(int)} never deserializes on the bind path
+ * as the user scrolls.
+ * <p>
+ * Items have stable IDs derived from their Document IDs, and the item change events of a modified
+ * Document carry a {@link ChangePayload} of the fields changed, so that the rows can be partially
+ * rebound.
+ * <p>
+ * The item change events of all the {@link DocumentChange}s of a snapshot are merged into
+ * range events on adjacent positions before they are dispatched, and dispatched as a single
+ * data set change when there are too many of them. See {@link #setBatchThreshold(int)}.
+ * <p>
+ * When a grace period is set with {@link #setRetainGracePeriod(long)}, {@link #pauseListening()}
+ * keeps the snapshots on screen and detaches the listeners only after the grace period. When
+ * listening is resumed after the listeners were detached, the first snapshot of each page is
+ * reconciled with the snapshots retained, so that only the changes in between are applied.
+ * <p>
+ * When enabled with {@link #setDiffOnQueryChange(boolean)}, {@link #setQuery(Query)} keeps the
+ * rows of the previous {@link Query} on screen until the first snapshot of the new {@link Query}
+ * arrives, and applies only the differences between them, so that the rows present in both keep
+ * their ViewHolders. The differences are computed on the {@link Executor} set with
+ * {@link #setBackgroundExecutor(Executor)}, if any. The results of a {@link Query} cached
+ * earlier can also be rendered at once with {@link #setQuery(Query, List)}, until its first
+ * snapshot arrives.
+ * <p>
+ * When an {@link Executor} is set with {@link #setListenerExecutor(Executor)}, the snapshots are
+ * received on it, and the models of the Documents added or modified are deserialized there,
+ * before the snapshot is posted to the main thread to be applied as a single batch.
+ * <p>
+ * When enabled with {@link #setCacheFirst(boolean)}, the first page of a {@link Query} started with
+ * no rows held is read from the local cache at once, and rendered until the first snapshot of its
+ * listener arrives, which is then reconciled with the rows rendered. Every render is reported to
+ * {@link #onRender(boolean, long)}, tagged with whether it came from the cache.
+ * <p>
+ * A {@link LocalView} set with {@link #setLocalView(LocalView)} filters and sorts the rows of the
+ * {@link Query} set in memory, so that a narrower criteria can be answered from the rows already
+ * loaded. The listeners stay on the {@link Query} set, and the rows shown are derived again
+ * on every snapshot, applying only the differences.
+ * <p>
+ * When a page size is set with {@link #setPageSize(int)}, the {@link Query} is read in pages
+ * using {@code startAfter} cursors, and each page keeps its own listener. The next page is read
+ * only when requested with {@link #loadNextPage()}, as the user nears the end of the list.
+ * With {@link #setLiveFirstPageOnly(boolean)}, only the first page keeps a listener, and the
+ * next pages are read once, so that the reads scale with how far the user scrolls. The first page
+ * is then anchored at its last document when the next page is read, so that new documents grow the
+ * first page, instead of pushing its documents out of it.
+ * <p>
+ * The first page can instead be fed with {@link #submitFirstPage(Query, List, List, boolean)} by
+ * a source that listens to its {@link Query} in place of the adapter, such as a LiveData retained
+ * across configuration changes, so that a new adapter renders the first page with no new reads.
+ * The rows of the first page are then reconciled with every result submitted, and the source
+ * is told of the anchoring of the first page with {@link #onFirstPageAnchored(Query)}.
+ * <p>
+ * A {@link RowCompactor} set with {@link #setRowCompactor(RowCompactor)} holds the rows of the
+ * pages read once in a compact form, in place of their snapshots, which then form the rows after
+ * the rows of the first page. Their positions are mapped into the {@link RowCompactor} with
+ * {@link #getCompactIndex(int)}, and they are dropped on changing the {@link Query}.
+ * <p>
+ * Note that a Document whose position changes across a page boundary is reconciled
+ * independently by each page, hence it may briefly be held by both pages until both receive
+ * their snapshots. It is then shown once, at its position in the first page holding it, and the
+ * pages read once skip the Documents held already. The rows compacted are never updated, hence
+ * a Document compacted that moves into the first page afterwards is shown in both.
  * <p>
  * See the adapter classes in FirebaseUI (https://github.com/firebase/FirebaseUI-Android/tree/master/firestore) for a
  * more efficient implementation of a Firestore RecyclerView Adapter.
  */
-public abstract class FirestoreAdapter<VH extends RecyclerView.ViewHolder>
-        extends RecyclerView.Adapter<VH> implements EventListener<QuerySnapshot> {
+public abstract class FirestoreAdapter<T, VH extends RecyclerView.ViewHolder>
+        extends RecyclerView.Adapter<VH> {
 
     // Constant used for logs
     private static final String TAG = "FirestoreAdapter";
+    // Default number of range events of a snapshot beyond which a single data set change is dispatched
+    private static final int DEFAULT_BATCH_THRESHOLD = 32;
     // List to store the snapshots retrieved from the Query for the changes
     private final ArrayList<DocumentSnapshot> mSnapshots = new ArrayList<>();
+    // Cache of the models deserialized from the snapshots, keyed by their Document ID
+    private final HashMap<String, CachedModel<T>> mModelCache = new HashMap<>();
+    // The Class of the model to deserialize the snapshots into
+    private final Class<T> mModelClass;
     // The Query to read the snapshots from
     private Query mQuery;
-    // The Listener to be registered on the Query set
-    private ListenerRegistration mRegistration;
+    // The Pages of the Query listened to, in the order of their cursors
+    private final ArrayList<Page> mPages = new ArrayList<>();
+    // The number of documents to read per Page, or 0 when paging is disabled
+    private int mPageSize;
+    // Whether only the first Page keeps a listener, while the next Pages are read once
+    private boolean mLiveFirstPageOnly;
+    // Whether the first Page is fed by the source of its results, in place of a listener
+    private boolean mFirstPageFed;
+    // Holds the rows of the Pages read once in place of their snapshots, or null to hold snapshots
+    private RowCompactor mRowCompactor;
+    // Screen and label of the Query the reads are counted against, or null to not count them
+    private String mLedgerScreen;
+    private String mLedgerQuery;
+    // Grace period after which the listeners are detached on pause, or -1 when retention is disabled
+    private long mRetainGracePeriodMillis = -1;
+    // Handler to detach the listeners after the grace period
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    // Runnable that detaches the listeners of all Pages, retaining their snapshots
+    private final Runnable mDetachRunnable = this::detachPages;
+    // Whether the rows are to be reconciled with the first snapshot of a new Query
+    private boolean mDiffOnQueryChange;
+    // Executor to compute the differences on, or null to compute on the main thread
+    private Executor mBackgroundExecutor;
+    // Serial Executor to receive the snapshots on, or null to receive on the main thread
+    private Executor mListenerExecutor;
+    // Whether the first page is read from the cache before its listener delivers
+    private boolean mCacheFirst;
+    // Time the Query set started listening at, in elapsed realtime milliseconds
+    private long mListenStartTime;
+    // Whether the last render was from the cache
+    private boolean mLastRenderFromCache;
+    // The view that derives the rows shown from the rows of the Query, or null to show them as is
+    private LocalView mLocalView;
+    // The rows shown when a LocalView is set, or null
+    private ArrayList<DocumentSnapshot> mViewSnapshots;
+    // Batches the item change events of the DocumentChanges of a snapshot
+    private final AdapterChangeBatcher mChangeBatcher = new AdapterChangeBatcher(
+            new AdapterListUpdateCallback(this), this::notifyDataSetChanged, DEFAULT_BATCH_THRESHOLD);
+    // Applies the DocumentChanges to the snapshots, recording their item change events
+    private final SnapshotListEngine<DocumentSnapshot> mListEngine =
+            new SnapshotListEngine<>(mSnapshots, mChangeBatcher, ChangePayload::of);
 
     /**
      * Constructor of {@link FirestoreAdapter}
      *
-     * @param query The {@link Query} to listen for changes and read the snapshots from.
+     * @param query      The {@link Query} to listen for changes and read the snapshots from.
+     * @param modelClass The Class of the model to deserialize the snapshots into.
      */
-    public FirestoreAdapter(Query query) {
+    public FirestoreAdapter(Query query, Class<T> modelClass) {
         mQuery = query;
+        mModelClass = modelClass;
+        // Keep the ViewHolders of the Documents across data set changes
+        setHasStableIds(true);
     }
 
     /**
      * Starts listening to the {@link Query} set.
      */
     public void startListening() {
-        if (mQuery != null && mRegistration == null) {
+        // Cancel any pending detach of the listeners
+        mHandler.removeCallbacks(mDetachRunnable);
+
+        if (mQuery != null && mPages.isEmpty() && !mFirstPageFed) {
             // If Query is set and listener is not yet registered,
-            // then register the listener on the Query
-            mRegistration = mQuery.addSnapshotListener(this);
+            // then register the listener on the Query, for its first page when paging
+            mListenStartTime = SystemClock.elapsedRealtime();
+            Page firstPage = new Page(getFirstPageQuery(), -1);
+            mPages.add(firstPage);
+
+            if (mCacheFirst && mSnapshots.isEmpty()) {
+                // Render from the cache until the listener delivers
+                readFromCache(firstPage);
+            }
+        } else {
+            // Re-register the listeners of the Pages retained, if detached
+            for (Page page : mPages) {
+                page.attach();
+            }
+        }
+    }
+
+    /**
+     * Pauses listening to the {@link Query} set, retaining the snapshots held. The listeners are
+     * detached only after the grace period set with {@link #setRetainGracePeriod(long)}, unless
+     * listening is resumed with {@link #startListening()} within that period.
+     * <p>
+     * Stops listening with {@link #stopListening()} right away when the retention is disabled.
+     */
+    public void pauseListening() {
+        if (mRetainGracePeriodMillis < 0) {
+            stopListening();
+            return;
+        }
+
+        // Detach the listeners after the grace period
+        mHandler.removeCallbacks(mDetachRunnable);
+        mHandler.postDelayed(mDetachRunnable, mRetainGracePeriodMillis);
+    }
+
+    /**
+     * Sets the grace period after which the listeners are detached when listening is paused
+     * with {@link #pauseListening()}.
+     *
+     * @param gracePeriodMillis The grace period in milliseconds, or -1 to disable the retention.
+     */
+    public void setRetainGracePeriod(long gracePeriodMillis) {
+        mRetainGracePeriodMillis = gracePeriodMillis;
+    }
+
+    /**
+     * Detaches the listeners of all Pages, retaining their snapshots to be reconciled
+     * when listening is resumed.
+     */
+    private void detachPages() {
+        for (Page page : mPages) {
+            page.remove();
         }
     }
 
@@ -76,14 +255,23 @@ public abstract class FirestoreAdapter<VH extends RecyclerView.ViewHolder>
      * Stops listening to the {@link Query} set.
      */
     public void stopListening() {
-        // If listener was previously registered, then detach the listener from the Query
-        if (mRegistration != null) {
-            mRegistration.remove();
-            mRegistration = null;
+        // Cancel any pending detach of the listeners
+        mHandler.removeCallbacks(mDetachRunnable);
+
+        // If listeners were previously registered, then detach them from their Pages
+        for (Page page : mPages) {
+            page.remove();
         }
+        mPages.clear();
 
         // Clear existing data
         mSnapshots.clear();
+        mModelCache.clear();
+        if (mRowCompactor != null) {
+            mRowCompactor.clear();
+        }
+        mLocalView = null;
+        mViewSnapshots = null;
         notifyDataSetChanged();
     }
 
@@ -93,18 +281,381 @@ public abstract class FirestoreAdapter<VH extends RecyclerView.ViewHolder>
      * @param query The new {@link Query} to listen for changes and read the snapshots from.
      */
     public void setQuery(Query query) {
-        // Stop listening
-        stopListening();
+        if (query.equals(mQuery) && !mPages.isEmpty()) {
+            // Resume listening when the same Query is set again, retaining the snapshots held
+            startListening();
+            return;
+        }
 
-        // Clear existing data
-        mSnapshots.clear();
-        notifyDataSetChanged();
+        // Keep the rows shown by the LocalView, if any, as the rows of the previous Query
+        releaseLocalView();
+
+        if (mDiffOnQueryChange && !mSnapshots.isEmpty()) {
+            // Keep the rows of the previous Query on screen, to be reconciled with
+            // the first snapshot of the new Query
+            swapQuery(query);
+            return;
+        }
+
+        // Stop listening, clearing the rows held
+        stopListening();
 
         // Listen to new query
         mQuery = query;
         startListening();
     }
 
+    /**
+     * Method to change the {@link Query} previously set, rendering the results of the new
+     * {@link Query} cached earlier at once. The cached results are reconciled with the rows held,
+     * and later with the first snapshot of the new {@link Query}, applying only the differences.
+     *
+     * @param query            The new {@link Query} to listen for changes and read the snapshots from.
+     * @param cachedSnapshots  The results of the first page of the new {@link Query}, cached earlier.
+     */
+    public void setQuery(Query query, List<DocumentSnapshot> cachedSnapshots) {
+        // Keep the rows shown by the LocalView, if any, as the rows of the previous Query
+        releaseLocalView();
+        // Keep only the rows held as snapshots, which are the rows reconciled
+        dropCompactRows();
+
+        // Render the cached results at once, applying only the differences with the rows held
+        DiffUtil.DiffResult diffResult = DiffUtil.calculateDiff(
+                new SnapshotDiffCallback(new ArrayList<>(mSnapshots), cachedSnapshots));
+        onDocumentsReplaced(0, mSnapshots.size(), cachedSnapshots, diffResult);
+        mChangeBatcher.dispatch();
+        onDataChanged();
+
+        // Listen to new query, to be reconciled with the cached results
+        swapQuery(query);
+    }
+
+    /**
+     * Detaches the listeners of the previous {@link Query}, retaining the rows held, and listens
+     * to the new {@link Query}, replacing all the rows held on its first snapshot.
+     *
+     * @param query The new {@link Query} to listen for changes and read the snapshots from.
+     */
+    private void swapQuery(Query query) {
+        mHandler.removeCallbacks(mDetachRunnable);
+        detachPages();
+        mPages.clear();
+        dropCompactRows();
+
+        mQuery = query;
+        mListenStartTime = SystemClock.elapsedRealtime();
+        mPages.add(new Page(getFirstPageQuery(), mSnapshots.size()));
+    }
+
+    /**
+     * Feeds the first page of the {@code query} with the {@code documents} delivered by a source
+     * that listens to it in place of the adapter, such as a LiveData retained across configuration
+     * changes. The rows of the first page are reconciled with the {@code documents}, applying only
+     * the differences, hence the source may skip the results in between. The next pages are read
+     * by the adapter. Submitting another {@code query} changes the {@link Query} as
+     * {@link #setQuery(Query)} does. Not to be mixed with {@link #setQuery(Query)}.
+     *
+     * @param query     The {@link Query} of the {@code documents}, with no page limit.
+     * @param documents The documents of the first page, in their order.
+     * @param models    The models deserialized from the {@code documents}, in the same order.
+     * @param fromCache Whether the {@code documents} came from the cache.
+     */
+    public void submitFirstPage(@NonNull Query query, @NonNull List<DocumentSnapshot> documents,
+                                @NonNull List<T> models, boolean fromCache) {
+        if (!mFirstPageFed || mPages.isEmpty() || !query.equals(mQuery)) {
+            feedQuery(query);
+        }
+
+        // Cache the models deserialized by the source, to be picked up when the rows are replaced
+        for (int i = 0; i < documents.size(); i++) {
+            DocumentSnapshot document = documents.get(i);
+            mModelCache.put(document.getId(), new CachedModel<>(document, models.get(i)));
+        }
+        mPages.get(0).submit(documents, fromCache);
+    }
+
+    /**
+     * Changes the {@link Query} to the {@code query} whose first page is fed with
+     * {@link #submitFirstPage(Query, List, List, boolean)}, keeping the rows held to be
+     * reconciled with its first result when enabled with {@link #setDiffOnQueryChange(boolean)}.
+     * A {@link LocalView} set before the first {@link Query} is kept, to derive its rows.
+     */
+    private void feedQuery(Query query) {
+        mFirstPageFed = true;
+        if (mQuery != null && !query.equals(mQuery)) {
+            // Keep the rows shown by the LocalView, if any, as the rows of the previous Query
+            releaseLocalView();
+            if (!mDiffOnQueryChange) {
+                // Clear the rows of the previous Query
+                stopListening();
+            }
+        }
+        swapQuery(query);
+    }
+
+    /**
+     * Sets the screen and the label of the {@link Query} that the reads of the next pages created
+     * are counted against in the {@link ReadLedger}. To be set along with the {@link Query}.
+     *
+     * @param screen The name of the screen, or {@code null} to not count the reads.
+     * @param query  The label of the {@link Query}.
+     */
+    public void setReadLedger(@Nullable String screen, @Nullable String query) {
+        mLedgerScreen = screen;
+        mLedgerQuery = query;
+    }
+
+    /**
+     * Sets whether the first page of a {@link Query} started with no rows held is read from
+     * the local cache and rendered at once, to be reconciled later with the first snapshot
+     * of its listener.
+     *
+     * @param cacheFirst {@code true} to render from the cache first.
+     */
+    public void setCacheFirst(boolean cacheFirst) {
+        mCacheFirst = cacheFirst;
+    }
+
+    /**
+     * Returns whether the rows were last rendered from the cache, rather than
+     * from a snapshot up to date with the server.
+     */
+    public boolean isFromCache() {
+        return mLastRenderFromCache;
+    }
+
+    /**
+     * Reads the {@link Query} of the {@code page} from the local cache, and renders the result,
+     * unless its listener delivered meanwhile. The rows rendered are then reconciled with the
+     * first snapshot of the listener.
+     *
+     * @param page The first page of the {@link Query}, with no rows held.
+     */
+    private void readFromCache(final Page page) {
+        final int generation = page.mGeneration;
+        page.mPageQuery.get(Source.CACHE).addOnSuccessListener(snapshot -> {
+            if (generation != page.mGeneration) {
+                // Discard when the Query changed
+                return;
+            }
+
+            renderCached(page, snapshot.getDocuments());
+        });
+    }
+
+    /**
+     * Renders the results of the {@link Query} set, read from the local cache by the caller,
+     * unless its listener delivered already or rows are held. Useful when the cache is populated
+     * after listening started, such as by loading a Firestore data bundle. The rows rendered are
+     * then reconciled with the first snapshot of the listener.
+     *
+     * @param cachedSnapshots The results of the {@link Query} set, in its order, which are
+     *                        truncated to the page size when paging.
+     */
+    public void renderFromCache(@NonNull List<DocumentSnapshot> cachedSnapshots) {
+        if (mPages.isEmpty()) {
+            // Not listening
+            return;
+        }
+
+        if (isPagingEnabled() && cachedSnapshots.size() > mPageSize) {
+            // Hold only as many rows as the first page would deliver
+            cachedSnapshots = cachedSnapshots.subList(0, mPageSize);
+        }
+        renderCached(mPages.get(0), cachedSnapshots);
+    }
+
+    /**
+     * Holds and renders the {@code documents} read from the local cache as the rows of the first
+     * {@code page}, to be replaced by the first snapshot of its listener, unless the listener
+     * delivered already, the {@code page} is no longer the first, rows are held,
+     * or nothing is cached.
+     */
+    private void renderCached(Page page, List<DocumentSnapshot> documents) {
+        if (page.mLoaded || page.mReplaceCount >= 0 || mPages.isEmpty() || mPages.get(0) != page
+                || !mSnapshots.isEmpty() || documents.isEmpty()) {
+            return;
+        }
+
+        // Hold the cached rows, to be replaced by the first snapshot of the listener
+        for (DocumentSnapshot document : documents) {
+            cacheModel(document);
+        }
+        mSnapshots.addAll(documents);
+        page.mSize = documents.size();
+        page.mReplaceCount = documents.size();
+
+        if (mLocalView != null) {
+            refreshShownRows();
+        } else {
+            mChangeBatcher.onInserted(0, documents.size());
+            mChangeBatcher.dispatch();
+            onDataChanged();
+        }
+        notifyRendered(true);
+    }
+
+    /**
+     * Reports a render to {@link #onRender(boolean, long)}.
+     *
+     * @param fromCache Whether the rows rendered came from the cache.
+     */
+    private void notifyRendered(boolean fromCache) {
+        mLastRenderFromCache = fromCache;
+        onRender(fromCache, SystemClock.elapsedRealtime() - mListenStartTime);
+    }
+
+    /**
+     * Sets the {@link LocalView} that derives the rows shown from the rows of the {@link Query}
+     * set, applying only the differences with the rows shown.
+     *
+     * @param localView The {@link LocalView} to derive the rows shown, or {@code null}
+     *                  to show the rows of the {@link Query} as is.
+     */
+    public void setLocalView(@Nullable LocalView localView) {
+        mLocalView = localView;
+        refreshShownRows();
+    }
+
+    /**
+     * Returns whether the rows of the {@link Query} set are all loaded, such that a {@link LocalView}
+     * over them is complete. That is, when all the pages are loaded and there are no more pages.
+     */
+    public boolean isComplete() {
+        if (mPages.isEmpty()) {
+            return false;
+        }
+
+        for (Page page : mPages) {
+            if (!page.mLoaded || page.mReplaceCount >= 0) {
+                // Not complete while a page is loading or reconciling
+                return false;
+            }
+        }
+        // Not complete with rows compacted, which have no snapshot to derive from
+        return !hasMorePages() && getCompactCount() == 0;
+    }
+
+    /**
+     * Derives the rows shown from the rows of the {@link Query} with the {@link LocalView} set,
+     * showing once the rows of a Document held by two pages, and dispatches only the differences
+     * with the rows shown.
+     */
+    private void refreshShownRows() {
+        List<DocumentSnapshot> oldRows = getShownSnapshots();
+        List<DocumentSnapshot> newRows = mLocalView != null ? mLocalView.apply(mSnapshots) : mSnapshots;
+        if (mPages.size() > 1) {
+            // Only the rows of distinct pages can share a Document
+            newRows = removeDuplicates(newRows);
+        }
+
+        if (newRows != oldRows) {
+            DiffUtil.DiffResult diffResult = DiffUtil.calculateDiff(
+                    new SnapshotDiffCallback(new ArrayList<>(oldRows), newRows));
+
+            // Update the rows shown before dispatching the differences
+            mViewSnapshots = newRows != mSnapshots ? new ArrayList<>(newRows) : null;
+            diffResult.dispatchUpdatesTo(mChangeBatcher);
+            mChangeBatcher.dispatch();
+        }
+
+        onDataChanged();
+    }
+
+    /**
+     * Returns the {@code rows} without the rows of a Document shown earlier, which is a Document
+     * held by two pages as its position changed across their boundary. Returns the {@code rows}
+     * as is when there are none.
+     */
+    private static List<DocumentSnapshot> removeDuplicates(List<DocumentSnapshot> rows) {
+        HashSet<String> ids = new HashSet<>();
+        ArrayList<DocumentSnapshot> uniqueRows = null;
+        for (int i = 0; i < rows.size(); i++) {
+            DocumentSnapshot row = rows.get(i);
+            if (!ids.add(row.getId())) {
+                if (uniqueRows == null) {
+                    // Copy the rows before the first duplicate
+                    uniqueRows = new ArrayList<>(rows.subList(0, i));
+                }
+            } else if (uniqueRows != null) {
+                uniqueRows.add(row);
+            }
+        }
+        return uniqueRows != null ? uniqueRows : rows;
+    }
+
+    /**
+     * Removes the {@link LocalView} set, if any, keeping the rows shown by it, or the rows shown
+     * without duplicates, as the rows held in place of the rows of the {@link Query}.
+     */
+    private void releaseLocalView() {
+        if (mViewSnapshots == null) {
+            return;
+        }
+
+        // Drop the models of the rows not shown
+        HashSet<String> shownIds = new HashSet<>();
+        for (DocumentSnapshot snapshot : mViewSnapshots) {
+            shownIds.add(snapshot.getId());
+        }
+        for (DocumentSnapshot snapshot : mSnapshots) {
+            if (!shownIds.contains(snapshot.getId())) {
+                mModelCache.remove(snapshot.getId());
+            }
+        }
+
+        // Hold the rows shown, which need no change events as they are already shown
+        mSnapshots.clear();
+        mSnapshots.addAll(mViewSnapshots);
+        mLocalView = null;
+        mViewSnapshots = null;
+    }
+
+    /**
+     * Returns the rows shown, which are the rows of the {@link Query} unless a
+     * {@link LocalView} is set.
+     */
+    private List<DocumentSnapshot> getShownSnapshots() {
+        return mViewSnapshots != null ? mViewSnapshots : mSnapshots;
+    }
+
+    /**
+     * Sets whether {@link #setQuery(Query)} keeps the rows of the previous {@link Query} on screen
+     * and reconciles them with the first snapshot of the new {@link Query}, instead of clearing.
+     *
+     * @param diffOnQueryChange {@code true} to reconcile the rows on changing the {@link Query}.
+     */
+    public void setDiffOnQueryChange(boolean diffOnQueryChange) {
+        mDiffOnQueryChange = diffOnQueryChange;
+    }
+
+    /**
+     * Sets the {@link Executor} to compute the differences between the rows held and
+     * the snapshots they are reconciled with.
+     *
+     * @param executor The background {@link Executor}, or {@code null} to compute on
+     *                 the main thread.
+     */
+    public void setBackgroundExecutor(@Nullable Executor executor) {
+        mBackgroundExecutor = executor;
+    }
+
+    /**
+     * Sets the {@link Executor} to receive the snapshots on, and deserialize the Documents
+     * added or modified, before the snapshots are applied on the main thread. Takes effect
+     * from the next time a listener is registered.
+     * <p>
+     * {@link #parseSnapshot(DocumentSnapshot)} is called on this {@link Executor} when set,
+     * hence it must not touch the state of the adapter.
+     *
+     * @param executor The background {@link Executor}, or {@code null} to receive the snapshots
+     *                 on the main thread. The snapshots are received one at a time, in order,
+     *                 even when the {@link Executor} runs its tasks concurrently.
+     */
+    public void setListenerExecutor(@Nullable Executor executor) {
+        mListenerExecutor = executor != null ? AppExecutors.newSerialExecutor(executor) : null;
+    }
+
     /**
      * Returns the total number of items in the data set held by the adapter.
      *
@@ -112,102 +663,374 @@ public abstract class FirestoreAdapter<VH extends RecyclerView.ViewHolder>
      */
     @Override
     public int getItemCount() {
-        // Return the number of snapshots present as the Item count of the Adapter
-        return mSnapshots.size();
+        // Return the number of snapshots shown, followed by the rows compacted,
+        // as the Item count of the Adapter
+        return getShownSnapshots().size() + getCompactCount();
     }
 
     /**
-     * {@code onEvent} will be called with the new value or the error if an error occurred. It's
-     * guaranteed that exactly one of value or error will be non-{@code null}.
-     *
-     * @param snapshot The value of the event. {@code null} if there was an error.
-     * @param error    The error if there was error. {@code null} otherwise.
+     * Returns the stable ID of the item at the {@code position}, derived from its Document ID.
      */
     @Override
-    public void onEvent(@Nullable QuerySnapshot snapshot,
-                        @Nullable FirebaseFirestoreException error) {
-        // Handle listen error
-        if (error != null) {
-            Log.e(TAG, "onEvent: Listen error", error);
-            // Propagate this error to onError
-            onError(error);
+    public long getItemId(int position) {
+        return getStableId(getDocumentId(position));
+    }
+
+    /**
+     * Returns the Document ID of the row at the {@code position}, whether it is held
+     * as a snapshot or compacted.
+     */
+    @NonNull
+    public final String getDocumentId(int position) {
+        int compactIndex = getCompactIndex(position);
+        return compactIndex < 0 ? getSnapshot(position).getId() : mRowCompactor.getId(compactIndex);
+    }
+
+    /**
+     * Hashes the Document ID into a 64-bit ID, with the FNV-1a hash. Collisions are
+     * negligible for the number of Documents an adapter can hold.
+     *
+     * @param documentId The Document ID to hash.
+     * @return The 64-bit hash of the {@code documentId}.
+     */
+    static long getStableId(String documentId) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < documentId.length(); i++) {
+            hash ^= documentId.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Sets the number of range events of a snapshot beyond which a single data set change
+     * is dispatched to the adapter instead of the range events.
+     *
+     * @param threshold The number of range events of a snapshot to dispatch at the most.
+     */
+    public void setBatchThreshold(int threshold) {
+        mChangeBatcher.setThreshold(threshold);
+    }
+
+    /**
+     * Sets the number of documents to be read per page of the {@link Query}. Takes effect
+     * from the next time the adapter starts listening to a {@link Query}.
+     *
+     * @param pageSize The number of documents to read per page, or 0 to disable paging.
+     */
+    public void setPageSize(int pageSize) {
+        mPageSize = Math.max(0, pageSize);
+    }
+
+    /**
+     * Sets whether only the first page keeps a listener on its {@link Query}, while the next pages
+     * are read once, with no further updates. Suits the {@link Query}s where the new documents come
+     * first, and the older documents rarely change. Takes effect from the next page created.
+     *
+     * @param liveFirstPageOnly {@code true} to read the pages after the first only once.
+     */
+    public void setLiveFirstPageOnly(boolean liveFirstPageOnly) {
+        mLiveFirstPageOnly = liveFirstPageOnly;
+    }
+
+    /**
+     * Sets the {@link RowCompactor} to hold the rows of the pages read once, in place of their
+     * snapshots. Takes effect with {@link #setLiveFirstPageOnly(boolean)} only, from the next
+     * page created, hence it is to be set before listening.
+     * <p>
+     * The rows compacted have no snapshot nor model, hence {@link #getSnapshot(int)} and
+     * {@link #getItem(int)} are only for the positions where {@link #getCompactIndex(int)}
+     * returns -1. The rows compacted are never modified, as their pages are read once.
+     *
+     * @param rowCompactor The {@link RowCompactor}, or {@code null} to hold the snapshots.
+     */
+    public void setRowCompactor(@Nullable RowCompactor rowCompactor) {
+        mRowCompactor = rowCompactor;
+    }
+
+    /**
+     * Returns the number of rows held by the {@link RowCompactor} set, if any, which are shown
+     * after the rows held as snapshots. There are none while a {@link LocalView} is set,
+     * as it is set only over complete results.
+     */
+    private int getCompactCount() {
+        return mRowCompactor != null && mLocalView == null ? mRowCompactor.size() : 0;
+    }
+
+    /**
+     * Returns the index in the {@link RowCompactor} of the row at the {@code position},
+     * or -1 when the row is held as a snapshot.
+     */
+    protected final int getCompactIndex(int position) {
+        int snapshotCount = getShownSnapshots().size();
+        return position < snapshotCount || getCompactCount() == 0 ? -1 : position - snapshotCount;
+    }
+
+    /**
+     * Drops the rows held by the {@link RowCompactor}, if any, dispatching their removal. Called
+     * before the rows held as snapshots are reconciled with the results of a new {@link Query}.
+     */
+    private void dropCompactRows() {
+        int compactCount = getCompactCount();
+        if (compactCount == 0) {
             return;
         }
 
-        // Lookup for changes since the last snapshot
-        for (DocumentChange change : snapshot.getDocumentChanges()) {
-            // Dispatch item change events to Adapter based on DocumentChange type
-            switch (change.getType()) {
-                case ADDED:
-                    onDocumentAdded(change);
-                    break;
-                case MODIFIED:
-                    onDocumentModified(change);
-                    break;
-                case REMOVED:
-                    onDocumentRemoved(change);
-                    break;
+        mChangeBatcher.onRemoved(getShownSnapshots().size(), compactCount);
+        mRowCompactor.clear();
+        mChangeBatcher.dispatch();
+    }
+
+    /**
+     * Returns whether the {@link Query} is being read in pages.
+     */
+    public boolean isPagingEnabled() {
+        return mPageSize > 0;
+    }
+
+    /**
+     * Returns whether there are more documents to be read after the last page loaded.
+     */
+    public boolean hasMorePages() {
+        if (!isPagingEnabled() || mPages.isEmpty()) {
+            return false;
+        }
+
+        // There could be more when the last page read a full page of documents
+        Page lastPage = mPages.get(mPages.size() - 1);
+        return lastPage.mLoaded && lastPage.mLastSnapshot != null
+                && lastPage.mQuerySize >= mPageSize;
+    }
+
+    /**
+     * Reads the next page of the {@link Query} after the last page loaded, if there are
+     * more documents to be read. Does nothing while the last page is still being loaded.
+     */
+    public void loadNextPage() {
+        if (hasMorePages()) {
+            // Start the next page after the last document of the last page loaded
+            Page lastPage = mPages.get(mPages.size() - 1);
+            mPages.add(new Page(mQuery.startAfter(lastPage.mLastSnapshot).limit(mPageSize), -1));
+
+            if (mLiveFirstPageOnly && mPages.size() == 2) {
+                // Anchor the live first page at its last document, for the new documents
+                // to grow it instead of pushing its documents into the page read once
+                lastPage.reanchor(mQuery.endAt(lastPage.mLastSnapshot));
+                if (lastPage.mFed) {
+                    // Let the source of the first page listen to the Query anchored
+                    onFirstPageAnchored(lastPage.mPageQuery);
+                }
             }
         }
+    }
 
-        // Propagate this event to onDataChanged
-        onDataChanged();
+    /**
+     * Returns the {@link Query} of the first page, which is the {@link Query} set
+     * when paging is disabled.
+     */
+    @Nullable
+    public Query getFirstPageQuery() {
+        if (mQuery == null) {
+            return null;
+        }
+        return isPagingEnabled() ? mQuery.limit(mPageSize) : mQuery;
+    }
+
+    /**
+     * Returns the snapshots of the first page held, which are all the snapshots held
+     * when paging is disabled. Returns an empty list until the first page is loaded.
+     */
+    @NonNull
+    public List<DocumentSnapshot> getFirstPageSnapshots() {
+        if (mPages.isEmpty() || !mPages.get(0).mLoaded) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(mSnapshots.subList(0, mPages.get(0).mSize));
+    }
+
+    /**
+     * Returns the position in the adapter of the first document of the {@code page}.
+     */
+    private int getPageOffset(Page page) {
+        int offset = 0;
+        for (Page previousPage : mPages) {
+            if (previousPage == page) {
+                break;
+            }
+            offset += previousPage.mSize;
+        }
+        return offset;
     }
 
     /**
      * Called when a new Document is added.
      * Adds the new snapshot to the list (maintained by the adapter) at its corresponding index
-     * and triggers an item insertion event to the adapter at the position index added.
+     * and records an item insertion event at the position index added.
      *
      * @param change {@link DocumentChange} instance representing a change in the Document.
+     * @param offset The position in the adapter of the first document of the Page
+     *               that reported the {@code change}.
      */
-    private void onDocumentAdded(DocumentChange change) {
-        mSnapshots.add(change.getNewIndex(), change.getDocument());
-        notifyItemInserted(change.getNewIndex());
+    private void onDocumentAdded(DocumentChange change, int offset) {
+        recacheModel(change.getDocument());
+        mListEngine.onAdded(change.getDocument(), offset + change.getNewIndex());
     }
 
     /**
      * Called when an existing Document is modified.
      * 1. When only the Document content has changed, then the corresponding snapshot in the snapshot
      * list (maintained by the adapter) is updated to the new snapshot and an item change event
-     * for the position index is triggered to the adapter.
+     * for the position index is recorded.
      * 2. When both the Document content and position is changed, then the old snapshot saved in the
      * snapshot list is removed and the new snapshot of the Document is added to this snapshot list
-     * at its new index and an item moved event for the change in position index is triggered
-     * to the adapter.
+     * at its new index and an item moved event for the change in position index is recorded,
+     * followed by an item change event at the new position index.
+     * <p>
+     * The item change events carry the {@link ChangePayload} of the fields changed.
      *
      * @param change {@link DocumentChange} instance representing a change in the Document.
+     * @param offset The position in the adapter of the first document of the Page
+     *               that reported the {@code change}.
      */
-    private void onDocumentModified(DocumentChange change) {
-        if (change.getOldIndex() == change.getNewIndex()) {
-            // When there is a change in content only
-            mSnapshots.set(change.getOldIndex(), change.getDocument());
-            notifyItemChanged(change.getOldIndex());
-        } else {
-            // When there is a change in content and position
-            mSnapshots.remove(change.getOldIndex());
-            mSnapshots.add(change.getNewIndex(), change.getDocument());
-            notifyItemMoved(change.getOldIndex(), change.getNewIndex());
-        }
+    private void onDocumentModified(DocumentChange change, int offset) {
+        // Refresh the cached model with the new version of the Document,
+        // unless deserialized already in background
+        recacheModel(change.getDocument());
+        mListEngine.onModified(change.getDocument(), offset + change.getOldIndex(),
+                offset + change.getNewIndex());
     }
 
     /**
      * Called when an existing Document is removed.
      * Removes the existing snapshot from the list (maintained by the adapter)
-     * and triggers an item removed event to the adapter at the position index removed.
+     * and records an item removed event at the position index removed.
      *
      * @param change {@link DocumentChange} instance representing a change in the Document.
+     * @param offset The position in the adapter of the first document of the Page
+     *               that reported the {@code change}.
      */
-    private void onDocumentRemoved(DocumentChange change) {
-        mSnapshots.remove(change.getOldIndex());
-        notifyItemRemoved(change.getOldIndex());
+    private void onDocumentRemoved(DocumentChange change, int offset) {
+        mModelCache.remove(change.getDocument().getId());
+        mListEngine.onRemoved(offset + change.getOldIndex());
     }
 
     /**
-     * Returns the {@link DocumentSnapshot} present at the position {@code index}.
+     * Called when a Page delivered its first snapshot to be reconciled with the rows held, either
+     * on re-registering its listener or on changing the {@link Query}. Replaces the rows held with
+     * the new {@code documents}, and records the item change events for only the differences
+     * between them.
+     *
+     * @param offset     The position in the adapter of the first row to be replaced.
+     * @param count      The number of rows to be replaced.
+     * @param documents  The documents of the Page, from its new snapshot.
+     * @param diffResult The differences between the rows replaced and the new {@code documents}.
+     */
+    private void onDocumentsReplaced(int offset, int count, List<DocumentSnapshot> documents,
+                                     DiffUtil.DiffResult diffResult) {
+        List<DocumentSnapshot> oldSnapshots = mSnapshots.subList(offset, offset + count);
+
+        // Drop the models of the documents no longer present
+        HashSet<String> newIds = new HashSet<>();
+        for (DocumentSnapshot document : documents) {
+            newIds.add(document.getId());
+        }
+        for (DocumentSnapshot oldSnapshot : oldSnapshots) {
+            if (!newIds.contains(oldSnapshot.getId())) {
+                mModelCache.remove(oldSnapshot.getId());
+            }
+        }
+
+        // Replace the snapshots and refresh their models
+        oldSnapshots.clear();
+        mSnapshots.addAll(offset, documents);
+        for (DocumentSnapshot document : documents) {
+            recacheModel(document);
+        }
+
+        // Record the item change events for the differences
+        diffResult.dispatchUpdatesTo(mChangeBatcher.offsetBy(offset));
+    }
+
+    /**
+     * Returns the {@link DocumentSnapshot} present at the position {@code index}, which is
+     * not compacted. See {@link #getCompactIndex(int)}.
      */
     protected final DocumentSnapshot getSnapshot(int index) {
-        return mSnapshots.get(index);
+        return getShownSnapshots().get(index);
+    }
+
+    /**
+     * Returns the model deserialized from the {@link DocumentSnapshot} present at the
+     * position {@code index}. The model is served from the cache when it was deserialized
+     * from the same version of the snapshot, which is always the case for the snapshots
+     * delivered through the {@link Query} listener. Not for the rows compacted.
+     */
+    @NonNull
+    protected final T getItem(int index) {
+        DocumentSnapshot snapshot = getShownSnapshots().get(index);
+        CachedModel<T> cachedModel = mModelCache.get(snapshot.getId());
+        if (cachedModel != null && cachedModel.isFrom(snapshot)) {
+            // Return the cached model when it is from the same snapshot version
+            return cachedModel.mModel;
+        }
+
+        // Deserialize and cache when not found or stale
+        return cacheModel(snapshot);
+    }
+
+    /**
+     * Returns the model cached for the {@link DocumentSnapshot} present at the position
+     * {@code index}, or {@code null} when there is none for its version. Never deserializes,
+     * unlike {@link #getItem(int)}, hence suits the lookups off the bind path. Not for the rows
+     * compacted.
+     */
+    @Nullable
+    protected final T getCachedItem(int index) {
+        DocumentSnapshot snapshot = getShownSnapshots().get(index);
+        CachedModel<T> cachedModel = mModelCache.get(snapshot.getId());
+        return cachedModel != null && cachedModel.isFrom(snapshot) ? cachedModel.mModel : null;
+    }
+
+    /**
+     * Deserializes the {@link DocumentSnapshot} into its model and saves it to the cache
+     * against its Document ID, replacing any model cached for an older version of the Document.
+     *
+     * @param snapshot The {@link DocumentSnapshot} to be deserialized.
+     * @return The model deserialized from the {@code snapshot}.
+     */
+    private T cacheModel(DocumentSnapshot snapshot) {
+        T model = parseSnapshot(snapshot);
+        mModelCache.put(snapshot.getId(), new CachedModel<>(snapshot, model));
+        return model;
+    }
+
+    /**
+     * Saves the model cached for the {@link DocumentSnapshot} against its new version when
+     * its content is unchanged, or deserializes it into its model otherwise. A model cached for
+     * the same version, when deserialized in background, is kept as is.
+     *
+     * @param snapshot The new version of the {@link DocumentSnapshot}.
+     */
+    private void recacheModel(DocumentSnapshot snapshot) {
+        CachedModel<T> cachedModel = mModelCache.get(snapshot.getId());
+        if (cachedModel != null && SnapshotDiffCallback.isSameContent(cachedModel.mSnapshot, snapshot)) {
+            // Reuse the model when the content is unchanged
+            mModelCache.put(snapshot.getId(), new CachedModel<>(snapshot, cachedModel.mModel));
+        } else {
+            cacheModel(snapshot);
+        }
+    }
+
+    /**
+     * Deserializes the {@link DocumentSnapshot} into its model. Can be overridden by subclasses
+     * to use a custom mapping in place of {@link DocumentSnapshot#toObject(Class)}.
+     *
+     * @param snapshot The {@link DocumentSnapshot} to be deserialized.
+     * @return The model deserialized from the {@code snapshot}.
+     */
+    @NonNull
+    protected T parseSnapshot(@NonNull DocumentSnapshot snapshot) {
+        return Objects.requireNonNull(snapshot.toObject(mModelClass));
     }
 
     /**
@@ -219,6 +1042,27 @@ public abstract class FirestoreAdapter<VH extends RecyclerView.ViewHolder>
     protected void onError(FirebaseFirestoreException error) {
     }
 
+    /**
+     * Called after the rows were rendered from a snapshot or a cache read. Can be overridden by
+     * subclasses to report the latency of the renders from the cache and the server separately.
+     *
+     * @param fromCache     Whether the rows rendered came from the cache.
+     * @param elapsedMillis The time since the {@link Query} set started listening.
+     */
+    protected void onRender(boolean fromCache, long elapsedMillis) {
+    }
+
+    /**
+     * Called when the first page fed with {@link #submitFirstPage(Query, List, List, boolean)}
+     * is anchored at its last document, as the next page is read. Can be overridden by subclasses
+     * for the source of the first page to listen to the {@code query} from then on, so that new
+     * documents grow the first page instead of pushing its documents out of it.
+     *
+     * @param query The {@link Query} of the first page, ending at its last document.
+     */
+    protected void onFirstPageAnchored(@NonNull Query query) {
+    }
+
     /**
      * Called after the new snapshot of the Event was processed successfully.
      * Can be overridden by subclasses to perform some action or show/hide appropriate views
@@ -226,4 +1070,559 @@ public abstract class FirestoreAdapter<VH extends RecyclerView.ViewHolder>
      */
     protected void onDataChanged() {
     }
-}
\ No newline at end of file
+
+    /**
+     * Holder for a model in the cache, along with the {@link DocumentSnapshot}
+     * it was deserialized from, that identifies the version of the model.
+     *
+     * @param <T> The type of the model.
+     */
+    private static final class CachedModel<T> {
+        // The snapshot the model was deserialized from
+        private final DocumentSnapshot mSnapshot;
+        // The deserialized model
+        private final T mModel;
+
+        CachedModel(DocumentSnapshot snapshot, T model) {
+            mSnapshot = snapshot;
+            mModel = model;
+        }
+
+        /**
+         * Checks if the model was deserialized from the same version of the {@code snapshot}.
+         */
+        boolean isFrom(DocumentSnapshot snapshot) {
+            return mSnapshot == snapshot || mSnapshot.equals(snapshot);
+        }
+    }
+
+    /**
+     * A page of the {@link Query} set, that listens to its own {@link Query} and dispatches
+     * the changes to the adapter, relative to the position of its first document in the adapter.
+     */
+    private final class Page implements EventListener<QuerySnapshot> {
+        // The Query of this Page
+        private Query mPageQuery;
+        // Whether this Page listens to its Query, or reads it only once
+        private final boolean mLive;
+        // Whether the rows of this Page, read once, are held by the RowCompactor
+        private final boolean mCompacted;
+        // Whether this Page is fed by the source of its results, in place of a listener
+        private final boolean mFed;
+        // Screen and label of the Query the reads of this Page are counted against, or null
+        private final String mLedgerScreen;
+        private final String mLedgerQuery;
+        // Whether the one-time read of this Page is in progress
+        private boolean mFetching;
+        // The Listener registered on the Query of this Page, or null when detached
+        private ListenerRegistration mRegistration;
+        // Incremented on every change in registration, to discard the results of a stale listener
+        private int mGeneration;
+        // The number of snapshots of this Page, held by the adapter
+        private int mSize;
+        // The number of documents in the last snapshot of the Query of this Page
+        private int mQuerySize;
+        // The last document of this Page, used as the cursor for the next Page
+        private DocumentSnapshot mLastSnapshot;
+        // Whether the first snapshot of this Page was received
+        private boolean mLoaded;
+        // The number of rows to be replaced by the next snapshot, or -1 to apply its changes
+        private int mReplaceCount;
+        // Snapshots received while the differences of a replacement are computed, or null
+        private ArrayList<QuerySnapshot> mPendingSnapshots;
+        // Last documents fed while the differences of a replacement are computed, or null
+        private List<DocumentSnapshot> mPendingDocuments;
+        private boolean mPendingFromCache;
+        // Time the snapshot being applied was received at, in nanoseconds, or -1 when not measured
+        private long mReceivedNanos = -1;
+        // The reads state of the listener registered for the ReadLedger, or null when read once
+        private ReadLedger.Listen mLedgerListen;
+
+        /**
+         * Constructor of Page
+         *
+         * @param query        The {@link Query} of this Page.
+         * @param replaceCount The number of rows held from the first position of this Page,
+         *                     to be reconciled with its first snapshot, or -1 when there are none.
+         */
+        Page(Query query, int replaceCount) {
+            mPageQuery = query;
+            mReplaceCount = replaceCount;
+            // Only the first Page is live, when the next Pages are read once
+            mLive = !mLiveFirstPageOnly || mPages.isEmpty();
+            mCompacted = !mLive && mRowCompactor != null;
+            mFed = mFirstPageFed && mPages.isEmpty();
+            // The reads of a Page fed are counted by its source
+            mLedgerScreen = mFed ? null : FirestoreAdapter.this.mLedgerScreen;
+            mLedgerQuery = FirestoreAdapter.this.mLedgerQuery;
+            attach();
+        }
+
+        /**
+         * Changes the {@link Query} of this Page, reconciling the snapshots held
+         * with the first snapshot of the new {@link Query}.
+         */
+        void reanchor(Query query) {
+            remove();
+            mPageQuery = query;
+            attach();
+        }
+
+        /**
+         * Reads the {@link Query} of this Page once, applying the result like a snapshot
+         * received by a listener.
+         */
+        private void fetch() {
+            mFetching = true;
+            final int generation = ++mGeneration;
+            if (mListenerExecutor != null) {
+                // Deserialize the result in background, and apply it on the main thread
+                mPageQuery.get().addOnCompleteListener(mListenerExecutor, task ->
+                        onBackgroundEvent(task.isSuccessful() ? task.getResult() : null,
+                                toFirestoreException(task.getException()), generation));
+            } else {
+                mPageQuery.get().addOnCompleteListener(task -> {
+                    if (generation == mGeneration) {
+                        onEvent(task.isSuccessful() ? task.getResult() : null,
+                                toFirestoreException(task.getException()));
+                    }
+                });
+            }
+        }
+
+        /**
+         * Registers the listener on the {@link Query} of this Page, if detached.
+         */
+        void attach() {
+            if (mFed) {
+                // Fed by the source of its results
+                return;
+            }
+
+            if (!mLive) {
+                // Read once, unless loaded or being read
+                if (!mLoaded && !mFetching) {
+                    fetch();
+                }
+                return;
+            }
+
+            if (mRegistration == null) {
+                if (mLoaded) {
+                    // Reconcile the first snapshot with the snapshots retained
+                    mReplaceCount = mSize;
+                }
+                mGeneration++;
+                mLedgerListen = new ReadLedger.Listen();
+                if (mListenerExecutor != null) {
+                    // Receive the snapshots in background, and apply them on the main thread
+                    final int generation = mGeneration;
+                    mRegistration = mPageQuery.addSnapshotListener(mListenerExecutor,
+                            (snapshot, error) -> onBackgroundEvent(snapshot, error, generation));
+                } else {
+                    mRegistration = mPageQuery.addSnapshotListener(this);
+                }
+            }
+        }
+
+        /**
+         * Called on the listener {@link Executor} with the snapshot of this Page. Deserializes the
+         * Documents added or modified, and posts the snapshot with the models prepared to the main
+         * thread, to be applied as a single batch with {@link #onEvent}.
+         *
+         * @param snapshot   The value of the event. {@code null} if there was an error.
+         * @param error      The error if there was error. {@code null} otherwise.
+         * @param generation The generation of the listener that received the snapshot.
+         */
+        private void onBackgroundEvent(@Nullable QuerySnapshot snapshot,
+                                       @Nullable FirebaseFirestoreException error,
+                                       int generation) {
+            final long receivedNanos = Metrics.now();
+
+            // Deserialize the models of the Documents added or modified, off the main thread
+            final HashMap<String, CachedModel<T>> models = new HashMap<>();
+            if (snapshot != null && !mCompacted) {
+                for (DocumentChange change : snapshot.getDocumentChanges()) {
+                    if (change.getType() != DocumentChange.Type.REMOVED) {
+                        DocumentSnapshot document = change.getDocument();
+                        models.put(document.getId(),
+                                new CachedModel<>(document, parseSnapshot(document)));
+                    }
+                }
+            }
+
+            mHandler.post(() -> {
+                if (generation != mGeneration) {
+                    // Discard when the listener was detached meanwhile
+                    return;
+                }
+
+                // Cache the models prepared, to be picked up when the changes are applied
+                mModelCache.putAll(models);
+                if (mReceivedNanos < 0) {
+                    // Measure the latency from the receipt in background
+                    mReceivedNanos = receivedNanos;
+                }
+                onEvent(snapshot, error);
+            });
+        }
+
+        /**
+         * Detaches the listener from the {@link Query} of this Page, if registered.
+         */
+        void remove() {
+            if (mRegistration != null) {
+                mRegistration.remove();
+                mRegistration = null;
+                mGeneration++;
+                // Discard any replacement being computed
+                mPendingSnapshots = null;
+            } else if (mFetching) {
+                // Discard the one-time read in progress
+                mFetching = false;
+                mGeneration++;
+            }
+        }
+
+        /**
+         * {@code onEvent} will be called with the new value or the error if an error occurred. It's
+         * guaranteed that exactly one of value or error will be non-{@code null}.
+         *
+         * @param snapshot The value of the event. {@code null} if there was an error.
+         * @param error    The error if there was error. {@code null} otherwise.
+         */
+        @Override
+        public void onEvent(@Nullable QuerySnapshot snapshot,
+                            @Nullable FirebaseFirestoreException error) {
+            long sectionStart = Metrics.beginSection(Metrics.SECTION_ON_EVENT);
+            applyEvent(snapshot, error);
+            Metrics.endSection(sectionStart, Metrics.ON_EVENT_US);
+        }
+
+        /**
+         * Applies the new snapshot of this Page, or handles the error, for {@link #onEvent}.
+         *
+         * @param snapshot The value of the event. {@code null} if there was an error.
+         * @param error    The error if there was error. {@code null} otherwise.
+         */
+        private void applyEvent(@Nullable QuerySnapshot snapshot,
+                                @Nullable FirebaseFirestoreException error) {
+            // One-time read, if any, is complete
+            mFetching = false;
+
+            // Handle listen error
+            if (error != null) {
+                Log.e(TAG, "onEvent: Listen error", error);
+                mReceivedNanos = -1;
+                // Propagate this error to onError
+                onError(error);
+                return;
+            }
+
+            if (Metrics.isEnabled()) {
+                // Record the size and the origin of the snapshot, and when it was received
+                // unless received in background
+                Metrics.record(Metrics.CHANGES_PER_EVENT,
+                        Objects.requireNonNull(snapshot).getDocumentChanges().size());
+                Metrics.increment(snapshot.getMetadata().isFromCache()
+                        ? Metrics.EVENTS_FROM_CACHE : Metrics.EVENTS_FROM_SERVER);
+                if (mReceivedNanos < 0) {
+                    mReceivedNanos = System.nanoTime();
+                }
+            }
+
+            if (mLedgerScreen != null && mLedgerQuery != null) {
+                // Count the documents delivered by the snapshot against the Query
+                ReadLedger.recordQuery(mLedgerScreen, mLedgerQuery,
+                        Objects.requireNonNull(snapshot), mLedgerListen);
+            }
+
+            if (mPendingSnapshots != null) {
+                // Apply after the replacement being computed
+                mPendingSnapshots.add(Objects.requireNonNull(snapshot));
+            } else if (mReplaceCount >= 0) {
+                // Reconcile the rows held with this snapshot
+                replaceDocuments(Objects.requireNonNull(snapshot));
+            } else if (mCompacted) {
+                // Hold the rows read once in compact form
+                compactDocuments(Objects.requireNonNull(snapshot), getPageOffset(this));
+                onSnapshotApplied(snapshot);
+            } else {
+                dispatchChanges(Objects.requireNonNull(snapshot), getPageOffset(this));
+                onSnapshotApplied(snapshot);
+            }
+        }
+
+        /**
+         * Reconciles the rows of this Page, fed by the source of its results, with the
+         * {@code documents}, after the replacement being computed if any.
+         *
+         * @param documents The documents of this Page, in their order.
+         * @param fromCache Whether the {@code documents} came from the cache.
+         */
+        void submit(List<DocumentSnapshot> documents, boolean fromCache) {
+            if (mPendingSnapshots != null) {
+                // Apply the last documents only, after the replacement being computed
+                mPendingDocuments = documents;
+                mPendingFromCache = fromCache;
+                return;
+            }
+
+            if (mReplaceCount < 0) {
+                // Reconcile all the rows of this Page
+                mReplaceCount = mSize;
+            }
+            replaceDocuments(documents, fromCache);
+        }
+
+        /**
+         * Computes the differences between the rows held and the documents of the {@code snapshot},
+         * on the background {@link Executor} if set, and replaces the rows with the documents.
+         *
+         * @param snapshot The snapshot to reconcile the rows held with.
+         */
+        private void replaceDocuments(final QuerySnapshot snapshot) {
+            replaceDocuments(snapshot.getDocuments(), snapshot.getMetadata().isFromCache());
+        }
+
+        /**
+         * Computes the differences between the rows held and the {@code documents}, on the
+         * background {@link Executor} if set, and replaces the rows with the {@code documents}.
+         *
+         * @param documents The documents to reconcile the rows held with.
+         * @param fromCache Whether the {@code documents} came from the cache.
+         */
+        private void replaceDocuments(final List<DocumentSnapshot> documents,
+                                      final boolean fromCache) {
+            final int offset = getPageOffset(this);
+            final List<DocumentSnapshot> oldSnapshots =
+                    new ArrayList<>(mSnapshots.subList(offset, offset + mReplaceCount));
+
+            if (mBackgroundExecutor == null) {
+                // Compute the differences on the main thread
+                applyReplacement(documents, fromCache, oldSnapshots.size(), DiffUtil.calculateDiff(
+                        new SnapshotDiffCallback(oldSnapshots, documents)));
+                return;
+            }
+
+            // Hold the snapshots received meanwhile, to be applied after the replacement
+            mPendingSnapshots = new ArrayList<>();
+            final int generation = mGeneration;
+            mBackgroundExecutor.execute(() -> {
+                // Compute the differences in background
+                DiffUtil.DiffResult diffResult = DiffUtil.calculateDiff(
+                        new SnapshotDiffCallback(oldSnapshots, documents));
+
+                mHandler.post(() -> {
+                    if (generation != mGeneration || !mPages.contains(this)) {
+                        // Discard when the listener was detached, or the Page dropped, meanwhile
+                        return;
+                    }
+
+                    applyReplacement(documents, fromCache, oldSnapshots.size(), diffResult);
+
+                    // Apply the snapshots received meanwhile
+                    ArrayList<QuerySnapshot> pendingSnapshots = mPendingSnapshots;
+                    mPendingSnapshots = null;
+                    for (QuerySnapshot pendingSnapshot : pendingSnapshots) {
+                        dispatchChanges(pendingSnapshot, getPageOffset(this));
+                        onSnapshotApplied(pendingSnapshot);
+                    }
+
+                    // Reconcile with the last documents fed meanwhile
+                    if (mPendingDocuments != null) {
+                        List<DocumentSnapshot> pendingDocuments = mPendingDocuments;
+                        mPendingDocuments = null;
+                        submit(pendingDocuments, mPendingFromCache);
+                    }
+                });
+            });
+        }
+
+        /**
+         * Replaces the rows held with the {@code documents},
+         * dispatching only the differences between them.
+         *
+         * @param documents  The documents to replace the rows held with.
+         * @param fromCache  Whether the {@code documents} came from the cache.
+         * @param count      The number of rows to be replaced.
+         * @param diffResult The differences between the rows held and the documents.
+         */
+        private void applyReplacement(List<DocumentSnapshot> documents, boolean fromCache,
+                                      int count, DiffUtil.DiffResult diffResult) {
+            onDocumentsReplaced(getPageOffset(this), count, documents, diffResult);
+            mReplaceCount = -1;
+            mSize = documents.size();
+            onSnapshotApplied(documents, fromCache);
+        }
+
+        /**
+         * Called after the changes of the {@code snapshot} were applied to the rows held.
+         * Dispatches the item change events recorded and saves the cursor for the next Page.
+         *
+         * @param snapshot The snapshot applied.
+         */
+        private void onSnapshotApplied(QuerySnapshot snapshot) {
+            onSnapshotApplied(snapshot.getDocuments(), snapshot.getMetadata().isFromCache());
+        }
+
+        /**
+         * Called after the rows held were updated to the {@code documents} of this Page.
+         * Dispatches the item change events recorded and saves the cursor for the next Page.
+         *
+         * @param documents The documents of this Page, in their order.
+         * @param fromCache Whether the {@code documents} came from the cache.
+         */
+        private void onSnapshotApplied(List<DocumentSnapshot> documents, boolean fromCache) {
+            // Save the cursor for the next Page
+            mQuerySize = documents.size();
+            mLastSnapshot = documents.isEmpty() ? null : documents.get(mQuerySize - 1);
+            mLoaded = true;
+
+            if (mViewSnapshots != null || mLocalView != null) {
+                // Derive the rows shown again, discarding the events of the rows of the Query
+                mChangeBatcher.clear();
+                refreshShownRows();
+            } else {
+                // Dispatch the item change events recorded for this snapshot, in batches
+                mChangeBatcher.dispatch();
+
+                if (mPages.size() > 1) {
+                    // Show once a Document the snapshot moved across a page boundary, if any,
+                    // which propagates this event to onDataChanged
+                    refreshShownRows();
+                } else {
+                    // Propagate this event to onDataChanged
+                    onDataChanged();
+                }
+            }
+
+            // Report the render, tagged with the source of the snapshot
+            notifyRendered(fromCache);
+
+            // Record the latency from the receipt of the snapshot to the frame that renders it
+            if (mReceivedNanos >= 0) {
+                Metrics.recordUntilNextFrame(fromCache
+                        ? Metrics.SNAPSHOT_TO_RENDER_CACHE_MS : Metrics.SNAPSHOT_TO_RENDER_SERVER_MS,
+                        mReceivedNanos);
+                mReceivedNanos = -1;
+            }
+        }
+
+        /**
+         * Appends the documents of the one-time read of this Page to the {@link RowCompactor},
+         * in place of holding their snapshots, and records their insertion. Skips the documents
+         * held already, which moved across the page boundary since the previous pages were read.
+         *
+         * @param snapshot The result of the one-time read of this Page.
+         * @param offset   The position in the adapter of the first document of this Page.
+         */
+        private void compactDocuments(QuerySnapshot snapshot, int offset) {
+            HashSet<String> heldIds = new HashSet<>();
+            for (DocumentSnapshot heldSnapshot : mSnapshots) {
+                heldIds.add(heldSnapshot.getId());
+            }
+            for (int i = 0; i < mRowCompactor.size(); i++) {
+                heldIds.add(mRowCompactor.getId(i));
+            }
+
+            int count = 0;
+            for (DocumentSnapshot document : snapshot.getDocuments()) {
+                if (heldIds.add(document.getId())) {
+                    mRowCompactor.append(document);
+                    count++;
+                }
+            }
+            if (count > 0) {
+                mChangeBatcher.onInserted(offset, count);
+            }
+            mSize += count;
+        }
+
+        /**
+         * Dispatches the {@link DocumentChange}s since the last snapshot of this Page
+         * to the adapter, based on their type.
+         *
+         * @param snapshot The new snapshot of this Page.
+         * @param offset   The position in the adapter of the first document of this Page.
+         */
+        private void dispatchChanges(QuerySnapshot snapshot, int offset) {
+            // Lookup for changes since the last snapshot
+            for (DocumentChange change : snapshot.getDocumentChanges()) {
+                // Dispatch item change events to Adapter based on DocumentChange type
+                switch (change.getType()) {
+                    case ADDED:
+                        onDocumentAdded(change, offset);
+                        mSize++;
+                        break;
+                    case MODIFIED:
+                        onDocumentModified(change, offset);
+                        break;
+                    case REMOVED:
+                        onDocumentRemoved(change, offset);
+                        mSize--;
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the {@code exception} of a failed read as a {@link FirebaseFirestoreException},
+     * wrapping it when it is of another type.
+     */
+    @Nullable
+    private static FirebaseFirestoreException toFirestoreException(@Nullable Exception exception) {
+        if (exception == null || exception instanceof FirebaseFirestoreException) {
+            return (FirebaseFirestoreException) exception;
+        }
+        return new FirebaseFirestoreException(String.valueOf(exception.getMessage()),
+                FirebaseFirestoreException.Code.UNKNOWN, exception);
+    }
+
+    /**
+     * A view that derives the rows to be shown from the rows of the {@link Query}, by filtering
+     * and sorting them in memory.
+     */
+    public interface LocalView {
+
+        /**
+         * Derives the rows to be shown from the {@code snapshots} of the {@link Query}.
+         *
+         * @param snapshots The rows of the {@link Query}, in their order.
+         * @return A new list of the rows to be shown, in their order.
+         */
+        @NonNull
+        List<DocumentSnapshot> apply(@NonNull List<DocumentSnapshot> snapshots);
+
+    }
+
+    /**
+     * A compact store of the rows of the pages read once, that keeps only the fields shown from
+     * their snapshots, so that the rows take a fraction of the memory of their snapshots.
+     */
+    public interface RowCompactor {
+
+        /**
+         * Appends the row of the {@code snapshot}, without retaining the {@code snapshot}.
+         */
+        void append(@NonNull DocumentSnapshot snapshot);
+
+        /**
+         * Returns the Document ID of the row at the {@code index}.
+         */
+        @NonNull
+        String getId(int index);
+
+        /**
+         * Returns the number of rows held.
+         */
+        int size();
+
+        /**
+         * Removes all the rows held.
+         */
+        void clear();
+
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.adapter;
+
+import android.content.Context;
+
+import androidx.annotation.DimenRes;
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * {@link RecyclerView.OnScrollListener} that reads the next page of a paged
+ * {@link FirestoreAdapter} as the user nears the end of the list.
+ */
+public class PagingScrollListener extends RecyclerView.OnScrollListener {
+
+    // Minimum number of documents to read per page
+    private static final int MIN_PAGE_SIZE = 10;
+
+    // The paged adapter to read the next page of
+    private final FirestoreAdapter<?, ?> mAdapter;
+    // The number of rows from the end of the list at which the next page is read
+    private final int mPrefetchDistance;
+
+    /**
+     * Constructor of {@link PagingScrollListener}
+     *
+     * @param adapter          The paged {@link FirestoreAdapter} to read the next page of.
+     * @param prefetchDistance The number of rows from the end of the list at which
+     *                         the next page is to be read.
+     */
+    public PagingScrollListener(FirestoreAdapter<?, ?> adapter, int prefetchDistance) {
+        mAdapter = adapter;
+        mPrefetchDistance = prefetchDistance;
+    }
+
+    /**
+     * Computes the number of documents to read per page, such that a page fills
+     * the viewport twice over, i.e., the rows on screen and the rows of the next screen.
+     *
+     * @param context      The {@link Context} to read the display metrics from.
+     * @param rowHeightRes The dimension resource of the estimated height of a row.
+     * @return The number of documents to read per page.
+     */
+    public static int getPageSize(@NonNull Context context, @DimenRes int rowHeightRes) {
+        int viewportHeight = context.getResources().getDisplayMetrics().heightPixels;
+        int rowHeight = context.getResources().getDimensionPixelSize(rowHeightRes);
+
+        // Rows that fit in the viewport, rounded up
+        int rowsPerViewport = (viewportHeight + rowHeight - 1) / rowHeight;
+        return Math.max(MIN_PAGE_SIZE, rowsPerViewport * 2);
+    }
+
+    /**
+     * Callback method to be invoked when the RecyclerView has been scrolled. This will be
+     * called after the scroll has completed.
+     *
+     * @param recyclerView The RecyclerView which scrolled.
+     * @param dx           The amount of horizontal scroll.
+     * @param dy           The amount of vertical scroll.
+     */
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        if (dy <= 0 || !mAdapter.hasMorePages()) {
+            // Ignore when not scrolling towards the end or when there are no more pages
+            return;
+        }
+
+        RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+        if (layoutManager instanceof LinearLayoutManager) {
+            int lastVisiblePosition = ((LinearLayoutManager) layoutManager).findLastVisibleItemPosition();
+            if (lastVisiblePosition >= mAdapter.getItemCount() - 1 - mPrefetchDistance) {
+                // Read the next page when the last visible row is within the prefetch distance
+                mAdapter.loadNextPage();
+            }
+        }
+    }
+}
@@ -20,23 +20,48 @@ import android.view.View;
 import android.view.ViewGroup;
 
 import com.google.firebase.example.fireeats.R;
+import com.google.firebase.example.fireeats.core.RatingRowStore;
 import com.google.firebase.example.fireeats.databinding.ItemRatingBinding;
+import com.google.firebase.example.fireeats.metrics.Metrics;
 import com.google.firebase.example.fireeats.model.Rating;
+import com.google.firebase.example.fireeats.model.RatingMapper;
+import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.Query;
 
+import java.util.List;
 import java.util.Objects;
 
 import androidx.annotation.NonNull;
-import androidx.annotation.Nullable;
 import androidx.recyclerview.widget.RecyclerView;
 
 /**
  * RecyclerView adapter for a bunch of Ratings.
  */
-public class RatingAdapter extends FirestoreAdapter<RatingAdapter.ViewHolder> {
+public class RatingAdapter extends FirestoreAdapter<Rating, RatingAdapter.ViewHolder> {
+
+    // Holds the rows of the pages read once, when compacted
+    private final RatingRowStore mRowStore = new RatingRowStore();
 
     public RatingAdapter(Query query) {
-        super(query);
+        super(query, Rating.class);
+    }
+
+    /**
+     * Sets whether the rows of the pages read once are held in a {@link RatingRowStore}
+     * in place of their snapshots. Takes effect with {@link #setLiveFirstPageOnly(boolean)}
+     * only, and is to be set before listening.
+     *
+     * @param compactRows {@code true} to hold the rows read once in compact form.
+     */
+    public void setCompactRows(boolean compactRows) {
+        setRowCompactor(compactRows ? new StoreCompactor(mRowStore) : null);
+    }
+
+    @NonNull
+    @Override
+    protected Rating parseSnapshot(@NonNull DocumentSnapshot snapshot) {
+        // Map with the generated mapper, without reflection
+        return Objects.requireNonNull(RatingMapper.fromSnapshot(snapshot));
     }
 
     @NonNull
@@ -48,7 +73,64 @@ public class RatingAdapter extends FirestoreAdapter<RatingAdapter.ViewHolder> {
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        holder.bind(getSnapshot(position).toObject(Rating.class));
+        int compactIndex = getCompactIndex(position);
+        if (compactIndex >= 0) {
+            // Bind the row compacted straight from the store
+            holder.bindRow(mRowStore, compactIndex);
+        } else {
+            holder.bind(getItem(position));
+        }
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position,
+                                 @NonNull List<Object> payloads) {
+        long sectionStart = Metrics.beginSection(Metrics.SECTION_RATING_BIND);
+        ChangePayload changes = ChangePayload.merge(payloads);
+        if (changes == null || getCompactIndex(position) >= 0) {
+            // Bind in full when there are no fields changed to bind
+            onBindViewHolder(holder, position);
+        } else {
+            holder.bindChanges(getItem(position), changes);
+        }
+        Metrics.endSection(sectionStart, Metrics.RATING_BIND_US);
+    }
+
+    /**
+     * {@link RowCompactor} that keeps the fields shown by a row in a {@link RatingRowStore}.
+     */
+    private static final class StoreCompactor implements RowCompactor {
+
+        private final RatingRowStore mStore;
+
+        StoreCompactor(RatingRowStore store) {
+            mStore = store;
+        }
+
+        @Override
+        public void append(@NonNull DocumentSnapshot snapshot) {
+            Double rating = snapshot.getDouble(Rating.FIELD_RATING);
+            mStore.append(snapshot.getId(),
+                    snapshot.getString(Rating.FIELD_USER_NAME),
+                    rating != null ? rating : 0,
+                    snapshot.getString(Rating.FIELD_TEXT));
+        }
+
+        @NonNull
+        @Override
+        public String getId(int index) {
+            return mStore.getId(index);
+        }
+
+        @Override
+        public int size() {
+            return mStore.size();
+        }
+
+        @Override
+        public void clear() {
+            mStore.clear();
+        }
     }
 
     static class ViewHolder extends RecyclerView.ViewHolder {
@@ -62,13 +144,35 @@ public class RatingAdapter extends FirestoreAdapter<RatingAdapter.ViewHolder> {
             mItemBinding = ItemRatingBinding.bind(itemView);
         }
 
-        public void bind(@Nullable Rating rating) {
-            Objects.requireNonNull(rating);
-
+        public void bind(Rating rating) {
             mItemBinding.ratingItemName.setText(rating.getUserName());
             mItemBinding.ratingItemRating.setRating((float) rating.getRating());
             mItemBinding.ratingItemText.setText(rating.getText());
         }
+
+        /**
+         * Binds the row at the {@code index} of the {@code store}, which has no snapshot.
+         */
+        public void bindRow(RatingRowStore store, int index) {
+            mItemBinding.ratingItemName.setText(store.getUserName(index));
+            mItemBinding.ratingItemRating.setRating((float) store.getRating(index));
+            mItemBinding.ratingItemText.setText(store.getText(index));
+        }
+
+        /**
+         * Updates only the views of the fields {@code changes}.
+         */
+        public void bindChanges(Rating rating, ChangePayload changes) {
+            if (changes.contains(Rating.FIELD_USER_NAME)) {
+                mItemBinding.ratingItemName.setText(rating.getUserName());
+            }
+            if (changes.contains(Rating.FIELD_RATING)) {
+                mItemBinding.ratingItemRating.setRating((float) rating.getRating());
+            }
+            if (changes.contains(Rating.FIELD_TEXT)) {
+                mItemBinding.ratingItemText.setText(rating.getText());
+            }
+        }
     }
 
 }
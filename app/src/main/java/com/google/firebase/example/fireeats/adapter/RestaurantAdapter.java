@@ -15,36 +15,50 @@
  */
 package com.google.firebase.example.fireeats.adapter;
 
+import android.content.Context;
 import android.content.res.Resources;
 import android.view.LayoutInflater;
+import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.accessibility.AccessibilityManager;
 
 import com.google.firebase.example.fireeats.R;
 import com.google.firebase.example.fireeats.databinding.ItemRestaurantBinding;
+import com.google.firebase.example.fireeats.metrics.Metrics;
 import com.google.firebase.example.fireeats.model.Restaurant;
+import com.google.firebase.example.fireeats.model.RestaurantMapper;
 import com.google.firebase.example.fireeats.util.GlideApp;
 import com.google.firebase.example.fireeats.util.RestaurantUtil;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.Query;
 
+import java.util.List;
 import java.util.Objects;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.recyclerview.widget.RecyclerView;
 
 /**
  * RecyclerView adapter for a list of Restaurants.
  */
-public class RestaurantAdapter extends FirestoreAdapter<RestaurantAdapter.ViewHolder> {
+public class RestaurantAdapter extends FirestoreAdapter<Restaurant, RestaurantAdapter.ViewHolder> {
 
     private final OnRestaurantSelectedListener mListener;
 
     public RestaurantAdapter(Query query, OnRestaurantSelectedListener listener) {
-        super(query);
+        super(query, Restaurant.class);
         mListener = listener;
     }
 
+    @NonNull
+    @Override
+    protected Restaurant parseSnapshot(@NonNull DocumentSnapshot snapshot) {
+        // Map with the generated mapper, without reflection
+        return Objects.requireNonNull(RestaurantMapper.fromSnapshot(snapshot));
+    }
+
     @NonNull
     @Override
     public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -54,13 +68,52 @@ public class RestaurantAdapter extends FirestoreAdapter<RestaurantAdapter.ViewHo
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        holder.bind(getSnapshot(position), mListener);
+        holder.bind(getSnapshot(position), getItem(position), mListener);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position,
+                                 @NonNull List<Object> payloads) {
+        long sectionStart = Metrics.beginSection(Metrics.SECTION_BIND);
+        ChangePayload changes = ChangePayload.merge(payloads);
+        if (changes == null) {
+            // Bind in full when there are no fields changed to bind
+            onBindViewHolder(holder, position);
+        } else {
+            holder.bindChanges(getSnapshot(position), getItem(position), changes, mListener);
+        }
+        Metrics.endSection(sectionStart, Metrics.BIND_US);
+    }
+
+    /**
+     * Returns the Document ID of the restaurant at the {@code position}.
+     */
+    @NonNull
+    public String getRestaurantId(int position) {
+        return getDocumentId(position);
+    }
+
+    /**
+     * Returns the photo URL of the restaurant at the {@code position}, from the model cached,
+     * or else the field of the snapshot, without deserializing the snapshot.
+     */
+    @Nullable
+    public String getRestaurantPhoto(int position) {
+        Restaurant restaurant = getCachedItem(position);
+        return restaurant != null ? restaurant.getPhoto()
+                : getSnapshot(position).getString(Restaurant.FIELD_PHOTO);
     }
 
     public interface OnRestaurantSelectedListener {
 
         void onRestaurantSelected(DocumentSnapshot restaurant);
 
+        /**
+         * Called on touch-down of a restaurant row, ahead of its selection if any.
+         */
+        default void onRestaurantPressed(String restaurantId) {
+        }
+
     }
 
     static class ViewHolder extends RecyclerView.ViewHolder {
@@ -75,15 +128,12 @@ public class RestaurantAdapter extends FirestoreAdapter<RestaurantAdapter.ViewHo
         }
 
         public void bind(final DocumentSnapshot snapshot,
+                         final Restaurant restaurant,
                          final OnRestaurantSelectedListener listener) {
 
-            Restaurant restaurant = Objects.requireNonNull(snapshot.toObject(Restaurant.class));
             Resources resources = itemView.getResources();
 
-            // Load image
-            GlideApp.with(mItemBinding.restaurantItemImage.getContext())
-                    .load(restaurant.getPhoto())
-                    .into(mItemBinding.restaurantItemImage);
+            bindPhoto(restaurant.getPhoto());
 
             mItemBinding.restaurantItemName.setText(restaurant.getName());
             mItemBinding.restaurantItemRating.setRating((float) restaurant.getAvgRating());
@@ -93,12 +143,91 @@ public class RestaurantAdapter extends FirestoreAdapter<RestaurantAdapter.ViewHo
                     restaurant.getNumRatings()));
             mItemBinding.restaurantItemPrice.setText(RestaurantUtil.getPriceString(restaurant));
 
+            bindListener(snapshot, listener);
+        }
+
+        /**
+         * Updates only the views of the fields {@code changes}, leaving the image
+         * as is unless the photo changed.
+         */
+        public void bindChanges(final DocumentSnapshot snapshot,
+                                final Restaurant restaurant,
+                                final ChangePayload changes,
+                                final OnRestaurantSelectedListener listener) {
+
+            Resources resources = itemView.getResources();
+
+            if (changes.contains(Restaurant.FIELD_PHOTO)) {
+                bindPhoto(restaurant.getPhoto());
+            }
+            if (changes.contains(Restaurant.FIELD_NAME)) {
+                mItemBinding.restaurantItemName.setText(restaurant.getName());
+            }
+            if (changes.contains(Restaurant.FIELD_AVG_RATING)) {
+                mItemBinding.restaurantItemRating.setRating((float) restaurant.getAvgRating());
+            }
+            if (changes.contains(Restaurant.FIELD_CITY)) {
+                mItemBinding.restaurantItemCity.setText(restaurant.getCity());
+            }
+            if (changes.contains(Restaurant.FIELD_CATEGORY)) {
+                mItemBinding.restaurantItemCategory.setText(restaurant.getCategory());
+            }
+            if (changes.contains(Restaurant.FIELD_POPULARITY)) {
+                mItemBinding.restaurantItemNumRatings.setText(resources.getString(R.string.fmt_num_ratings,
+                        restaurant.getNumRatings()));
+            }
+            if (changes.contains(Restaurant.FIELD_PRICE)) {
+                mItemBinding.restaurantItemPrice.setText(RestaurantUtil.getPriceString(restaurant));
+            }
+
+            // Keep the listener on the latest snapshot
+            bindListener(snapshot, listener);
+        }
+
+        private void bindPhoto(String photo) {
+            // Load image, decoded as a thumbnail of the exact size of the row image
+            GlideApp.with(mItemBinding.restaurantItemImage.getContext())
+                    .load(photo)
+                    .listThumbnail(itemView.getResources()
+                            .getDimensionPixelSize(R.dimen.restaurant_item_image_size))
+                    .into(mItemBinding.restaurantItemImage);
+        }
+
+        private void bindListener(final DocumentSnapshot snapshot,
+                                  final OnRestaurantSelectedListener listener) {
             // Click listener
             itemView.setOnClickListener(view -> {
                 if (listener != null) {
                     listener.onRestaurantSelected(snapshot);
                 }
             });
+
+            // Touch-down listener, that does not consume the touch for the click to follow,
+            // but under touch exploration performs the click itself on touch-up
+            itemView.setOnTouchListener((view, event) -> {
+                switch (event.getActionMasked()) {
+                    case MotionEvent.ACTION_DOWN:
+                        if (listener != null) {
+                            listener.onRestaurantPressed(snapshot.getId());
+                        }
+                        break;
+                    case MotionEvent.ACTION_UP:
+                        if (isTouchExplorationEnabled(view)) {
+                            view.performClick();
+                            return true;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+                return false;
+            });
+        }
+
+        private static boolean isTouchExplorationEnabled(View view) {
+            AccessibilityManager manager = (AccessibilityManager) view.getContext()
+                    .getSystemService(Context.ACCESSIBILITY_SERVICE);
+            return manager != null && manager.isTouchExplorationEnabled();
         }
 
     }
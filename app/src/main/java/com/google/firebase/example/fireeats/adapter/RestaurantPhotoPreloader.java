@@ -0,0 +1,99 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.adapter;
+
+import android.text.TextUtils;
+
+import com.bumptech.glide.ListPreloader;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.integration.recyclerview.RecyclerViewPreloader;
+import com.bumptech.glide.util.FixedPreloadSizeProvider;
+import com.google.firebase.example.fireeats.R;
+import com.google.firebase.example.fireeats.util.GlideApp;
+import com.google.firebase.example.fireeats.util.GlideRequests;
+
+import java.util.Collections;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.fragment.app.FragmentActivity;
+
+/**
+ * {@link ListPreloader.PreloadModelProvider} of the photos of the restaurants
+ * in a {@link RestaurantAdapter}, to fetch and decode the photos of the rows
+ * ahead of the scroll, at the size they are shown in the rows.
+ */
+public class RestaurantPhotoPreloader implements ListPreloader.PreloadModelProvider<String> {
+
+    // The adapter of the restaurant rows
+    private final RestaurantAdapter mAdapter;
+    // The requests of the Activity showing the rows
+    private final GlideRequests mRequests;
+    // Size of the image of a row in pixels
+    private final int mImageSize;
+
+    private RestaurantPhotoPreloader(GlideRequests requests, RestaurantAdapter adapter,
+                                     int imageSize) {
+        mRequests = requests;
+        mAdapter = adapter;
+        mImageSize = imageSize;
+    }
+
+    /**
+     * Creates a {@link RecyclerViewPreloader} that loads the photos of the next {@code maxPreload}
+     * rows in the direction of scroll. The preloads pending are cancelled when the direction of
+     * scroll changes.
+     *
+     * @param activity   The {@link FragmentActivity} showing the rows.
+     * @param adapter    The {@link RestaurantAdapter} of the rows.
+     * @param maxPreload The number of rows to preload the photos of.
+     * @return The {@link RecyclerViewPreloader} to be added as a scroll listener of the rows.
+     */
+    @NonNull
+    public static RecyclerViewPreloader<String> create(@NonNull FragmentActivity activity,
+                                                       @NonNull RestaurantAdapter adapter,
+                                                       int maxPreload) {
+        GlideRequests requests = GlideApp.with(activity);
+        int imageSize = activity.getResources()
+                .getDimensionPixelSize(R.dimen.restaurant_item_image_size);
+
+        return new RecyclerViewPreloader<>(requests,
+                new RestaurantPhotoPreloader(requests, adapter, imageSize),
+                new FixedPreloadSizeProvider<>(imageSize, imageSize),
+                maxPreload);
+    }
+
+    @NonNull
+    @Override
+    public List<String> getPreloadItems(int position) {
+        if (position < 0 || position >= mAdapter.getItemCount()) {
+            // Rows may be gone by the time the preload is requested
+            return Collections.emptyList();
+        }
+
+        String photo = mAdapter.getRestaurantPhoto(position);
+        return TextUtils.isEmpty(photo)
+                ? Collections.emptyList() : Collections.singletonList(photo);
+    }
+
+    @Nullable
+    @Override
+    public RequestBuilder<?> getPreloadRequestBuilder(@NonNull String photo) {
+        // Same request as the row, so that the row is served from the memory cache
+        return mRequests.load(photo).listThumbnail(mImageSize);
+    }
+}
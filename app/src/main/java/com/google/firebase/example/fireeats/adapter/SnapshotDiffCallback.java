@@ -0,0 +1,85 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.adapter;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.List;
+import java.util.Objects;
+
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.DiffUtil;
+
+/**
+ * {@link DiffUtil.Callback} for computing the difference between two lists of
+ * {@link DocumentSnapshot}s, matched by their Document ID.
+ */
+class SnapshotDiffCallback extends DiffUtil.Callback {
+
+    // The list of snapshots currently held
+    private final List<DocumentSnapshot> mOldSnapshots;
+    // The list of snapshots to be held
+    private final List<DocumentSnapshot> mNewSnapshots;
+
+    /**
+     * Constructor of {@link SnapshotDiffCallback}
+     *
+     * @param oldSnapshots The list of {@link DocumentSnapshot}s currently held.
+     * @param newSnapshots The list of {@link DocumentSnapshot}s to be held.
+     */
+    SnapshotDiffCallback(List<DocumentSnapshot> oldSnapshots, List<DocumentSnapshot> newSnapshots) {
+        mOldSnapshots = oldSnapshots;
+        mNewSnapshots = newSnapshots;
+    }
+
+    /**
+     * Checks if the two snapshots hold the same content, regardless of their metadata.
+     */
+    static boolean isSameContent(DocumentSnapshot oldSnapshot, DocumentSnapshot newSnapshot) {
+        return oldSnapshot == newSnapshot
+                || Objects.equals(oldSnapshot.getData(), newSnapshot.getData());
+    }
+
+    @Override
+    public int getOldListSize() {
+        return mOldSnapshots.size();
+    }
+
+    @Override
+    public int getNewListSize() {
+        return mNewSnapshots.size();
+    }
+
+    @Override
+    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+        return mOldSnapshots.get(oldItemPosition).getId()
+                .equals(mNewSnapshots.get(newItemPosition).getId());
+    }
+
+    @Override
+    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+        return isSameContent(mOldSnapshots.get(oldItemPosition), mNewSnapshots.get(newItemPosition));
+    }
+
+    /**
+     * Returns the {@link ChangePayload} of the fields changed, for a partial rebind of the item.
+     */
+    @Nullable
+    @Override
+    public Object getChangePayload(int oldItemPosition, int newItemPosition) {
+        return ChangePayload.of(mOldSnapshots.get(oldItemPosition), mNewSnapshots.get(newItemPosition));
+    }
+}
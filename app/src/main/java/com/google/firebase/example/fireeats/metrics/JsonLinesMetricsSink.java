@@ -0,0 +1,92 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.metrics;
+
+import android.util.Log;
+
+import com.google.firebase.example.fireeats.core.Histogram;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+
+/**
+ * {@link MetricsSink} that appends the metrics to a local file as JSON lines, one object per
+ * metric and write, to be pulled with {@code adb} and analyzed offline.
+ * <p>
+ * Histograms are written as
+ * {@code {"time":..,"type":"histogram","name":..,"count":..,"min":..,"p50":..,"p90":..,"p99":..,"max":..,"mean":..}},
+ * and counters as {@code {"time":..,"type":"counter","name":..,"count":..}}.
+ */
+public class JsonLinesMetricsSink implements MetricsSink {
+
+    private static final String TAG = "JsonLinesMetricsSink";
+
+    // The file the lines are appended to
+    private final File mFile;
+
+    /**
+     * Constructor of {@link JsonLinesMetricsSink}
+     *
+     * @param file The file to append the lines to, created when missing.
+     */
+    public JsonLinesMetricsSink(@NonNull File file) {
+        mFile = file;
+    }
+
+    @Override
+    public void write(long timeMillis,
+                      @NonNull Map<String, Histogram.Summary> histograms,
+                      @NonNull Map<String, Long> counters) {
+        try (Writer writer = new FileWriter(mFile, true)) {
+            for (Map.Entry<String, Histogram.Summary> entry : histograms.entrySet()) {
+                Histogram.Summary summary = entry.getValue();
+                writeLine(writer, new JSONObject()
+                        .put("time", timeMillis)
+                        .put("type", "histogram")
+                        .put("name", entry.getKey())
+                        .put("count", summary.count)
+                        .put("min", summary.min)
+                        .put("p50", summary.p50)
+                        .put("p90", summary.p90)
+                        .put("p99", summary.p99)
+                        .put("max", summary.max)
+                        .put("mean", summary.mean));
+            }
+            for (Map.Entry<String, Long> entry : counters.entrySet()) {
+                writeLine(writer, new JSONObject()
+                        .put("time", timeMillis)
+                        .put("type", "counter")
+                        .put("name", entry.getKey())
+                        .put("count", entry.getValue()));
+            }
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "Failed to write metrics to " + mFile, e);
+        }
+    }
+
+    private static void writeLine(Writer writer, JSONObject line) throws IOException {
+        writer.write(line.toString());
+        writer.write('\n');
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.metrics;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import com.google.firebase.example.fireeats.core.Histogram;
+import com.google.firebase.example.fireeats.util.AppExecutors;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.os.TraceCompat;
+
+/**
+ * Instrumentation of the hot paths of the App: wraps them in {@link android.os.Trace} sections,
+ * to be seen in system traces, and records their durations and other values in
+ * {@link Histogram}s and counters, which are written periodically to a {@link MetricsSink}.
+ * <p>
+ * Disabled by default, when every call costs a single read of a volatile flag, and no section
+ * is traced nor time read. Enabled with {@link #enable(MetricsSink)}.
+ * <p>
+ * Sections are used in pairs on the same thread:
+ * <pre>
+ * long start = Metrics.beginSection(Metrics.SECTION_BIND);
+ * ...
+ * Metrics.endSection(start, Metrics.BIND_US);
+ * </pre>
+ */
+public final class Metrics {
+
+    // Names of the trace sections
+    public static final String SECTION_ON_EVENT = "FirestoreAdapter.onEvent";
+    public static final String SECTION_BIND = "RestaurantAdapter.onBindViewHolder";
+    public static final String SECTION_RATING_BIND = "RatingAdapter.onBindViewHolder";
+    public static final String SECTION_RESTAURANT_LOADED = "RestaurantDetailActivity.onRestaurantLoaded";
+
+    // Names of the histograms
+    public static final String ON_EVENT_US = "firestore_adapter.on_event_us";
+    public static final String CHANGES_PER_EVENT = "firestore_adapter.changes_per_event";
+    public static final String SNAPSHOT_TO_RENDER_CACHE_MS = "firestore_adapter.snapshot_to_render_ms.cache";
+    public static final String SNAPSHOT_TO_RENDER_SERVER_MS = "firestore_adapter.snapshot_to_render_ms.server";
+    public static final String BIND_US = "restaurant_adapter.bind_us";
+    public static final String RATING_BIND_US = "rating_adapter.bind_us";
+    public static final String RESTAURANT_LOADED_US = "restaurant_detail.on_restaurant_loaded_us";
+
+    // Names of the counters
+    public static final String EVENTS_FROM_CACHE = "firestore_adapter.events.cache";
+    public static final String EVENTS_FROM_SERVER = "firestore_adapter.events.server";
+
+    // Interval at which the metrics are written to the sink
+    private static final long WRITE_INTERVAL_MILLIS = 10_000L;
+
+    // Whether the metrics are recorded, read on every call
+    private static volatile boolean sEnabled;
+    // Guards the metrics recorded, which are recorded from any thread
+    private static final Object sLock = new Object();
+    // Histograms and counters recorded since the last write, by name
+    private static final HashMap<String, Histogram> sHistograms = new HashMap<>();
+    private static final HashMap<String, Long> sCounters = new HashMap<>();
+    // The sink to write the metrics to, or null when disabled
+    private static MetricsSink sSink;
+    // Writes to the sink one at a time, off the main thread
+    private static final Executor sWriteExecutor = AppExecutors.newSerialExecutor();
+    // Schedules the periodic writes
+    private static final Handler sHandler = new Handler(Looper.getMainLooper());
+    private static final Runnable sWriteRunnable = new Runnable() {
+        @Override
+        public void run() {
+            write();
+            sHandler.postDelayed(this, WRITE_INTERVAL_MILLIS);
+        }
+    };
+
+    private Metrics() {
+    }
+
+    /**
+     * Starts recording the metrics, written to the {@code sink} periodically
+     * and on {@link #disable()}.
+     */
+    @MainThread
+    public static void enable(@NonNull MetricsSink sink) {
+        disable();
+        synchronized (sLock) {
+            sSink = sink;
+        }
+        sEnabled = true;
+        sHandler.postDelayed(sWriteRunnable, WRITE_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Stops recording the metrics, writing the metrics recorded so far.
+     */
+    @MainThread
+    public static void disable() {
+        if (!sEnabled) {
+            return;
+        }
+
+        sEnabled = false;
+        sHandler.removeCallbacks(sWriteRunnable);
+        write();
+        synchronized (sLock) {
+            sSink = null;
+        }
+    }
+
+    /**
+     * Returns whether the metrics are recorded, for the callers to skip computing the values
+     * to record when not.
+     */
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * Returns the current time in nanoseconds, or -1 when disabled.
+     */
+    public static long now() {
+        return sEnabled ? System.nanoTime() : -1;
+    }
+
+    /**
+     * Begins a trace section of the {@code name}, when enabled.
+     *
+     * @return The start time of the section in nanoseconds, to be passed to
+     * {@link #endSection(long, String)}, or -1 when disabled.
+     */
+    public static long beginSection(@NonNull String name) {
+        if (!sEnabled) {
+            return -1;
+        }
+
+        TraceCompat.beginSection(name);
+        return System.nanoTime();
+    }
+
+    /**
+     * Ends the trace section begun at {@code startNanos} on the same thread, and records
+     * its duration in microseconds into the {@code histogram}, if any.
+     *
+     * @param startNanos The start time returned by {@link #beginSection(String)}.
+     * @param histogram  The name of the histogram of the duration, or {@code null}.
+     */
+    public static void endSection(long startNanos, @Nullable String histogram) {
+        if (startNanos < 0) {
+            // Not begun, as disabled
+            return;
+        }
+
+        TraceCompat.endSection();
+        if (histogram != null) {
+            record(histogram, (System.nanoTime() - startNanos) / 1000);
+        }
+    }
+
+    /**
+     * Records the time from {@code startNanos} to the next frame in milliseconds into the
+     * {@code histogram}, for the latency of a change up to the frame that renders it.
+     *
+     * @param histogram  The name of the histogram of the latency.
+     * @param startNanos The start time, from {@link #now()}.
+     */
+    @MainThread
+    public static void recordUntilNextFrame(@NonNull final String histogram, final long startNanos) {
+        if (!sEnabled || startNanos < 0) {
+            return;
+        }
+
+        Choreographer.getInstance().postFrameCallback(frameTimeNanos ->
+                record(histogram, (System.nanoTime() - startNanos) / 1_000_000));
+    }
+
+    /**
+     * Records the {@code value} into the {@code histogram}, when enabled.
+     */
+    public static void record(@NonNull String histogram, long value) {
+        if (!sEnabled) {
+            return;
+        }
+
+        synchronized (sLock) {
+            Histogram values = sHistograms.get(histogram);
+            if (values == null) {
+                values = new Histogram();
+                sHistograms.put(histogram, values);
+            }
+            values.record(value);
+        }
+    }
+
+    /**
+     * Increments the {@code counter}, when enabled.
+     */
+    public static void increment(@NonNull String counter) {
+        if (!sEnabled) {
+            return;
+        }
+
+        synchronized (sLock) {
+            Long count = sCounters.get(counter);
+            sCounters.put(counter, count == null ? 1 : count + 1);
+        }
+    }
+
+    /**
+     * Writes the metrics recorded since the last write to the sink, in background,
+     * and starts recording afresh.
+     */
+    private static void write() {
+        final MetricsSink sink;
+        final HashMap<String, Histogram.Summary> histograms = new HashMap<>();
+        final HashMap<String, Long> counters;
+        synchronized (sLock) {
+            sink = sSink;
+            for (Map.Entry<String, Histogram> entry : sHistograms.entrySet()) {
+                histograms.put(entry.getKey(), entry.getValue().summarize());
+            }
+            counters = new HashMap<>(sCounters);
+            sHistograms.clear();
+            sCounters.clear();
+        }
+
+        if (sink == null || (histograms.isEmpty() && counters.isEmpty())) {
+            return;
+        }
+        final long timeMillis = System.currentTimeMillis();
+        sWriteExecutor.execute(() -> sink.write(timeMillis, histograms, counters));
+    }
+}
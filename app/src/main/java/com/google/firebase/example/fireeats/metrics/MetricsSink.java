@@ -0,0 +1,41 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.metrics;
+
+import com.google.firebase.example.fireeats.core.Histogram;
+
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Destination of the metrics collected by {@link Metrics}, written periodically.
+ */
+public interface MetricsSink {
+
+    /**
+     * Writes the metrics collected since the last write. Called on a background thread,
+     * one write at a time.
+     *
+     * @param timeMillis The wall clock time of the write, in milliseconds.
+     * @param histograms The summaries of the histograms recorded, by name.
+     * @param counters   The counts of the counters incremented, by name.
+     */
+    void write(long timeMillis,
+               @NonNull Map<String, Histogram.Summary> histograms,
+               @NonNull Map<String, Long> counters);
+
+}
@@ -0,0 +1,329 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.metrics;
+
+import android.os.SystemClock;
+
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Ledger of the Firestore document reads of the session, per screen and per query, to tell
+ * which user flows the reads billed come from.
+ * <p>
+ * Counts the {@link com.google.firebase.firestore.DocumentChange}s delivered by the snapshots
+ * of the queries, and the documents delivered by the snapshots of the documents, split by their
+ * origin: the server, or the local cache. Counts the {@code get}s of the transactions, per
+ * attempt. The reads billed are estimated from these:
+ * <ul>
+ * <li>The result of a one-time read of a query from the server is billed a read per document,
+ * and a listener is billed so for its first snapshot in sync with the server, whatever the
+ * changes delivered from the cache before it. A result is billed at least one read when empty.</li>
+ * <li>The next snapshots of a listener are billed a read per document added or modified,
+ * including the documents modified by the pending writes of the client, which the server sends
+ * back once written. The documents removed are not billed.</li>
+ * <li>A document delivered from the server is billed, as is a {@code get} in a transaction.</li>
+ * </ul>
+ * The estimate overcounts a listener registered again within the window in which the server
+ * resumes it from the changes since its last result, which bills only those changes, and
+ * undercounts the documents the server sends again unchanged, which are not delivered.
+ * <p>
+ * The session is the life of the process, or since {@link #startSession()}. Disabled by default,
+ * when every call costs a single read of a volatile flag. Enabled with {@link #setEnabled(boolean)}.
+ */
+public final class ReadLedger {
+
+    // Whether the reads are counted, read on every call
+    private static volatile boolean sEnabled;
+    // Guards the entries, which are counted from any thread
+    private static final Object sLock = new Object();
+    // Entries by screen, then by query, in the order of their first read
+    private static final LinkedHashMap<String, LinkedHashMap<String, Entry>> sScreens =
+            new LinkedHashMap<>();
+    // Start of the session, in elapsed realtime and wall clock milliseconds
+    private static long sSessionStartElapsed = SystemClock.elapsedRealtime();
+    private static long sSessionStartMillis = System.currentTimeMillis();
+
+    private ReadLedger() {
+    }
+
+    /**
+     * Sets whether the reads are counted.
+     */
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    /**
+     * Returns whether the reads are counted.
+     */
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * Starts a new session, clearing the reads counted so far.
+     */
+    public static void startSession() {
+        synchronized (sLock) {
+            sScreens.clear();
+            sSessionStartElapsed = SystemClock.elapsedRealtime();
+            sSessionStartMillis = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Counts the {@link com.google.firebase.firestore.DocumentChange}s delivered by a snapshot
+     * of a query, or by the result of a one-time read of a query.
+     *
+     * @param screen   The screen the query is read for.
+     * @param query    The label of the query.
+     * @param snapshot The snapshot delivered.
+     * @param listen   The {@link Listen} of the listener that delivered the {@code snapshot},
+     *                 or {@code null} for the result of a one-time read.
+     */
+    public static void recordQuery(@NonNull String screen, @NonNull String query,
+                                   @NonNull QuerySnapshot snapshot, @Nullable Listen listen) {
+        if (!sEnabled) {
+            return;
+        }
+
+        List<DocumentChange> changes = snapshot.getDocumentChanges();
+        boolean fromServer = !snapshot.getMetadata().isFromCache();
+        synchronized (sLock) {
+            Entry entry = getEntry(screen, query);
+            entry.mSnapshots++;
+            if (!fromServer) {
+                entry.mCacheChanges += changes.size();
+                return;
+            }
+
+            entry.mServerChanges += changes.size();
+            if (listen == null || !listen.mSynced) {
+                // The whole result is billed on its first sync, an empty result one read
+                entry.mReads += Math.max(1, snapshot.size());
+                if (listen != null) {
+                    listen.mSynced = true;
+                }
+            } else {
+                // Only the documents added or modified are billed afterwards
+                for (DocumentChange change : changes) {
+                    if (change.getType() != DocumentChange.Type.REMOVED) {
+                        entry.mReads++;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts the document delivered by a snapshot of a document, or by a one-time read of it.
+     *
+     * @param screen   The screen the document is read for.
+     * @param document The label of the document.
+     * @param snapshot The snapshot delivered.
+     */
+    public static void recordDocument(@NonNull String screen, @NonNull String document,
+                                      @NonNull DocumentSnapshot snapshot) {
+        if (!sEnabled) {
+            return;
+        }
+
+        boolean fromServer = !snapshot.getMetadata().isFromCache();
+        synchronized (sLock) {
+            Entry entry = getEntry(screen, document);
+            entry.mSnapshots++;
+            if (fromServer) {
+                entry.mServerChanges++;
+                entry.mReads++;
+            } else {
+                entry.mCacheChanges++;
+            }
+        }
+    }
+
+    /**
+     * Counts the {@code get}s of an attempt of a transaction, which are all billed.
+     *
+     * @param screen      The screen the transaction is run for.
+     * @param transaction The label of the transaction.
+     * @param count       The number of documents read by the attempt.
+     */
+    public static void recordTransactionGets(@NonNull String screen, @NonNull String transaction,
+                                             int count) {
+        if (!sEnabled) {
+            return;
+        }
+
+        synchronized (sLock) {
+            Entry entry = getEntry(screen, transaction);
+            entry.mTransactionGets += count;
+            entry.mReads += count;
+        }
+    }
+
+    /**
+     * Returns the entry of the {@code query} of the {@code screen}, created when missing.
+     * Called holding the lock.
+     */
+    private static Entry getEntry(String screen, String query) {
+        LinkedHashMap<String, Entry> queries = sScreens.get(screen);
+        if (queries == null) {
+            queries = new LinkedHashMap<>();
+            sScreens.put(screen, queries);
+        }
+
+        Entry entry = queries.get(query);
+        if (entry == null) {
+            entry = new Entry();
+            queries.put(query, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Returns the reads billed of the session, on the {@code screen} if not {@code null},
+     * on all the screens otherwise.
+     */
+    public static long getReads(@Nullable String screen) {
+        synchronized (sLock) {
+            long reads = 0;
+            for (Map.Entry<String, LinkedHashMap<String, Entry>> queries : sScreens.entrySet()) {
+                if (screen == null || screen.equals(queries.getKey())) {
+                    for (Entry entry : queries.getValue().values()) {
+                        reads += entry.mReads;
+                    }
+                }
+            }
+            return reads;
+        }
+    }
+
+    /**
+     * Describes the reads of the session in lines of text, per screen and per query,
+     * in the order of their first read.
+     */
+    @NonNull
+    public static String describe() {
+        synchronized (sLock) {
+            StringBuilder description = new StringBuilder(String.format(Locale.US,
+                    "Session %ds: %d reads",
+                    (SystemClock.elapsedRealtime() - sSessionStartElapsed) / 1000, getReads(null)));
+            for (Map.Entry<String, LinkedHashMap<String, Entry>> queries : sScreens.entrySet()) {
+                description.append(String.format(Locale.US, "\n%s: %d reads",
+                        queries.getKey(), getReads(queries.getKey())));
+                for (Map.Entry<String, Entry> entry : queries.getValue().entrySet()) {
+                    description.append("\n  ").append(entry.getValue())
+                            .append("  ").append(entry.getKey());
+                }
+            }
+            return description.toString();
+        }
+    }
+
+    /**
+     * Returns the reads of the session as JSON, per screen and per query.
+     */
+    @NonNull
+    public static JSONObject toJson() throws JSONException {
+        synchronized (sLock) {
+            JSONArray screens = new JSONArray();
+            for (Map.Entry<String, LinkedHashMap<String, Entry>> queries : sScreens.entrySet()) {
+                JSONArray entries = new JSONArray();
+                for (Map.Entry<String, Entry> entry : queries.getValue().entrySet()) {
+                    entries.put(entry.getValue().toJson().put("query", entry.getKey()));
+                }
+                screens.put(new JSONObject()
+                        .put("screen", queries.getKey())
+                        .put("reads", getReads(queries.getKey()))
+                        .put("queries", entries));
+            }
+            return new JSONObject()
+                    .put("sessionStart", sSessionStartMillis)
+                    .put("sessionMillis", SystemClock.elapsedRealtime() - sSessionStartElapsed)
+                    .put("reads", getReads(null))
+                    .put("screens", screens);
+        }
+    }
+
+    /**
+     * Writes the reads of the session as JSON to the {@code file}, replacing its content.
+     */
+    public static void export(@NonNull File file) throws IOException {
+        try (Writer writer = new FileWriter(file)) {
+            writer.write(toJson().toString(2));
+        } catch (JSONException e) {
+            throw new IOException("Failed to serialize the read ledger", e);
+        }
+    }
+
+    /**
+     * The state of the reads of a query listener, to be created for every listener registered,
+     * as a listener registered again syncs its whole result again.
+     */
+    public static final class Listen {
+        // Whether a snapshot in sync with the server was delivered, guarded by the lock
+        private boolean mSynced;
+    }
+
+    /**
+     * Reads counted for a query of a screen.
+     */
+    private static final class Entry {
+        // Number of snapshots delivered
+        private long mSnapshots;
+        // Number of documents delivered from the cache, and from the server
+        private long mCacheChanges;
+        private long mServerChanges;
+        // Number of documents read by transactions
+        private long mTransactionGets;
+        // Estimated number of reads billed
+        private long mReads;
+
+        JSONObject toJson() throws JSONException {
+            return new JSONObject()
+                    .put("reads", mReads)
+                    .put("snapshots", mSnapshots)
+                    .put("cacheChanges", mCacheChanges)
+                    .put("serverChanges", mServerChanges)
+                    .put("transactionGets", mTransactionGets);
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%d reads (%d snaps, %d cache, %d server, %d tx)",
+                    mReads, mSnapshots, mCacheChanges, mServerChanges, mTransactionGets);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.metrics;
+
+import android.app.Activity;
+import android.graphics.Color;
+import android.graphics.Typeface;
+import android.util.Log;
+import android.util.TypedValue;
+import android.view.Gravity;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+import androidx.annotation.NonNull;
+import androidx.core.view.ViewCompat;
+
+/**
+ * Debug overlay of the {@link ReadLedger} over the content of a screen. Shows the reads of the
+ * screen and of the session, refreshed every second; expands to the reads per query on tap,
+ * and exports the ledger as JSON on long press.
+ */
+public final class ReadLedgerOverlay {
+
+    private static final String TAG = "ReadLedgerOverlay";
+
+    // File the ledger is exported to, in the files directory of the App
+    private static final String EXPORT_FILE = "read_ledger.json";
+    // Interval at which the overlay is refreshed
+    private static final long REFRESH_INTERVAL_MILLIS = 1_000L;
+
+    private ReadLedgerOverlay() {
+    }
+
+    /**
+     * Adds the overlay over the content of the {@code activity}, if the {@link ReadLedger}
+     * is enabled.
+     *
+     * @param activity The {@link Activity} of the screen, whose content view is set.
+     * @param screen   The name of the screen in the {@link ReadLedger}.
+     */
+    public static void attach(@NonNull final Activity activity, @NonNull final String screen) {
+        if (!ReadLedger.isEnabled()) {
+            return;
+        }
+
+        final TextView overlay = new TextView(activity);
+        overlay.setTypeface(Typeface.MONOSPACE);
+        overlay.setTextSize(TypedValue.COMPLEX_UNIT_SP, 10);
+        overlay.setTextColor(Color.WHITE);
+        overlay.setBackgroundColor(0xA0000000);
+        int padding = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, 4,
+                activity.getResources().getDisplayMetrics());
+        overlay.setPadding(padding, padding, padding, padding);
+
+        // Expand to the reads per query on tap, and export on long press
+        overlay.setOnClickListener(view -> {
+            view.setActivated(!view.isActivated());
+            refresh(overlay, screen);
+        });
+        overlay.setOnLongClickListener(view -> {
+            export(activity);
+            return true;
+        });
+
+        ViewGroup content = activity.findViewById(android.R.id.content);
+        content.addView(overlay, new FrameLayout.LayoutParams(
+                ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT,
+                Gravity.BOTTOM | Gravity.START));
+
+        // Refresh while shown
+        overlay.post(new Runnable() {
+            @Override
+            public void run() {
+                if (ViewCompat.isAttachedToWindow(overlay)) {
+                    refresh(overlay, screen);
+                    overlay.postDelayed(this, REFRESH_INTERVAL_MILLIS);
+                }
+            }
+        });
+    }
+
+    /**
+     * Shows the reads of the {@code screen} and of the session, or the reads per query
+     * when expanded.
+     */
+    private static void refresh(TextView overlay, String screen) {
+        overlay.setText(overlay.isActivated() ? ReadLedger.describe()
+                : String.format(Locale.US, "reads: %d screen, %d session",
+                ReadLedger.getReads(screen), ReadLedger.getReads(null)));
+    }
+
+    /**
+     * Exports the ledger as JSON to the files directory, to be pulled with
+     * {@code adb shell run-as <package> cat files/read_ledger.json}.
+     */
+    private static void export(Activity activity) {
+        File file = new File(activity.getFilesDir(), EXPORT_FILE);
+        try {
+            ReadLedger.export(file);
+            Log.d(TAG, "Exported the read ledger to " + file);
+            Toast.makeText(activity, "Exported to " + file, Toast.LENGTH_SHORT).show();
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to export the read ledger", e);
+        }
+    }
+}
@@ -30,6 +30,9 @@ import java.util.Date;
 public class Rating {
 
     public static final String COLLECTION = "ratings";
+    public static final String FIELD_USER_NAME = "userName";
+    public static final String FIELD_RATING = "rating";
+    public static final String FIELD_TEXT = "text";
     public static final String FIELD_TIMESTAMP = "timestamp";
 
     private String userId;
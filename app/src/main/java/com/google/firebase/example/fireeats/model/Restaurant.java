@@ -15,6 +15,7 @@
  */
 package com.google.firebase.example.fireeats.model;
 
+import com.google.firebase.example.fireeats.core.RestaurantFields;
 import com.google.firebase.firestore.IgnoreExtraProperties;
 
 /**
@@ -23,12 +24,14 @@ import com.google.firebase.firestore.IgnoreExtraProperties;
 @IgnoreExtraProperties
 public class Restaurant {
 
-    public static final String COLLECTION = "restaurants";
-    public static final String FIELD_CITY = "city";
-    public static final String FIELD_CATEGORY = "category";
-    public static final String FIELD_PRICE = "price";
-    public static final String FIELD_POPULARITY = "numRatings";
-    public static final String FIELD_AVG_RATING = "avgRating";
+    public static final String COLLECTION = RestaurantFields.COLLECTION;
+    public static final String FIELD_NAME = RestaurantFields.NAME;
+    public static final String FIELD_PHOTO = RestaurantFields.PHOTO;
+    public static final String FIELD_CITY = RestaurantFields.CITY;
+    public static final String FIELD_CATEGORY = RestaurantFields.CATEGORY;
+    public static final String FIELD_PRICE = RestaurantFields.PRICE;
+    public static final String FIELD_POPULARITY = RestaurantFields.NUM_RATINGS;
+    public static final String FIELD_AVG_RATING = RestaurantFields.AVG_RATING;
 
     private String name;
     private String city;
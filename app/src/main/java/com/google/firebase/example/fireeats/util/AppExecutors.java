@@ -0,0 +1,144 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.util;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Shared {@link Executor}s of the App, for work to be kept off the main thread.
+ */
+public final class AppExecutors {
+
+    // Number of threads of the background pool, leaving a core for the main thread
+    private static final int POOL_SIZE =
+            Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+
+    // Background pool shared by the App, whose idle threads time out
+    private static final ThreadPoolExecutor BACKGROUND;
+
+    static {
+        BACKGROUND = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new BackgroundThreadFactory("FireEats-bg-"));
+        BACKGROUND.allowCoreThreadTimeOut(true);
+    }
+
+    private AppExecutors() {
+    }
+
+    /**
+     * Returns the shared background {@link Executor}, which runs the tasks concurrently.
+     */
+    @NonNull
+    public static Executor background() {
+        return BACKGROUND;
+    }
+
+    /**
+     * Creates an {@link ExecutorService} with its own background thread, for long tasks which
+     * would hold a thread of the shared background {@link Executor}. To be shut down by the caller.
+     *
+     * @param name The name of the thread.
+     */
+    @NonNull
+    public static ExecutorService newSingleThreadExecutor(@NonNull String name) {
+        return new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new BackgroundThreadFactory(name + "-"));
+    }
+
+    /**
+     * Creates an {@link Executor} that runs its tasks one at a time, in the order submitted,
+     * on the shared background {@link Executor}.
+     */
+    @NonNull
+    public static Executor newSerialExecutor() {
+        return newSerialExecutor(BACKGROUND);
+    }
+
+    /**
+     * Creates an {@link Executor} that runs its tasks one at a time, in the order submitted,
+     * on the {@code delegate} {@link Executor}.
+     */
+    @NonNull
+    public static Executor newSerialExecutor(@NonNull Executor delegate) {
+        return new SerialExecutor(delegate);
+    }
+
+    /**
+     * {@link Executor} that runs its tasks one at a time on a delegate {@link Executor},
+     * in the order submitted.
+     */
+    private static final class SerialExecutor implements Executor {
+        private final Executor mDelegate;
+        private final ArrayDeque<Runnable> mTasks = new ArrayDeque<>();
+        private Runnable mActive;
+
+        SerialExecutor(Executor delegate) {
+            mDelegate = delegate;
+        }
+
+        @Override
+        public synchronized void execute(@NonNull final Runnable task) {
+            mTasks.offer(() -> {
+                try {
+                    task.run();
+                } finally {
+                    scheduleNext();
+                }
+            });
+            if (mActive == null) {
+                scheduleNext();
+            }
+        }
+
+        private synchronized void scheduleNext() {
+            if ((mActive = mTasks.poll()) != null) {
+                mDelegate.execute(mActive);
+            }
+        }
+    }
+
+    /**
+     * {@link ThreadFactory} of the background threads, which run at background priority.
+     */
+    private static final class BackgroundThreadFactory implements ThreadFactory {
+        // Prefix of the names of the threads, followed by their number
+        private final String mNamePrefix;
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        BackgroundThreadFactory(String namePrefix) {
+            mNamePrefix = namePrefix;
+        }
+
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(() -> {
+                android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, mNamePrefix + mCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.util;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.example.fireeats.BuildConfig;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.LoadBundleTaskProgress;
+import com.google.firebase.firestore.Query;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Loads the Firestore data bundle of the top restaurants, shipped in the App assets, into the
+ * local cache of Firestore, so that the home list renders from the cache on first launch,
+ * without waiting on the server.
+ * <p>
+ * The bundle holds the named query {@link #QUERY_TOP_RESTAURANTS} of the default
+ * {@link com.google.firebase.example.fireeats.Filters}, and is generated by
+ * "scripts/bundle/generate-bundle.js" with the Gradle task "generateFirestoreBundle".
+ * It is loaded only once per version of the App, as the documents loaded are then
+ * kept up to date in the cache by the listeners.
+ */
+public final class BundleLoader {
+
+    private static final String TAG = "BundleLoader";
+
+    // Path of the bundle in the assets
+    private static final String ASSET_PATH = "bundles/top_restaurants.bundle";
+    // Named query of the default Filters in the bundle, see generate-bundle.js
+    public static final String QUERY_TOP_RESTAURANTS = "top-restaurants";
+
+    // Preferences recording the version of the App whose bundle was loaded
+    private static final String PREFS_NAME = "bundle_loader";
+    private static final String PREF_LOADED_VERSION = "loaded_version";
+
+    private BundleLoader() {
+    }
+
+    /**
+     * Loads the bundle of the top restaurants into the local cache of Firestore, unless it was
+     * loaded already for this version of the App, or is not shipped.
+     *
+     * @param context   The {@link Context} to read the assets and preferences from.
+     * @param firestore The {@link FirebaseFirestore} instance to load the bundle into.
+     * @return The {@link Task} resolving to the named {@link Query} of the top restaurants, which
+     * reads the documents of the bundle from the cache, or to {@code null} when the bundle
+     * was not loaded now.
+     */
+    public static Task<Query> loadTopRestaurants(@NonNull Context context,
+                                                 @NonNull FirebaseFirestore firestore) {
+        final Context appContext = context.getApplicationContext();
+        final SharedPreferences prefs =
+                appContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        if (prefs.getInt(PREF_LOADED_VERSION, -1) == BuildConfig.VERSION_CODE) {
+            // Loaded already, and kept up to date since by the listeners
+            return Tasks.forResult(null);
+        }
+
+        // Read the bundle off the main thread
+        return Tasks.call(AppExecutors.background(), () -> readAsset(appContext))
+                .continueWithTask(task -> {
+                    byte[] bundle = task.getResult();
+                    if (bundle == null) {
+                        // Not shipped, when the bundle was not generated for the build
+                        Log.w(TAG, "No bundle in assets at " + ASSET_PATH);
+                        return Tasks.forResult(null);
+                    }
+
+                    return firestore.loadBundle(bundle)
+                            .continueWithTask(loadTask -> {
+                                LoadBundleTaskProgress progress = loadTask.getResult();
+                                Log.d(TAG, "Loaded " + progress.getDocumentsLoaded()
+                                        + " documents, " + progress.getBytesLoaded() + " bytes");
+                                prefs.edit().putInt(PREF_LOADED_VERSION, BuildConfig.VERSION_CODE)
+                                        .apply();
+                                return firestore.getNamedQuery(QUERY_TOP_RESTAURANTS);
+                            });
+                });
+    }
+
+    /**
+     * Reads the bundle from the assets.
+     *
+     * @return The bytes of the bundle, or {@code null} when it is not present.
+     */
+    @Nullable
+    private static byte[] readAsset(Context context) throws IOException {
+        InputStream in;
+        try {
+            in = context.getAssets().open(ASSET_PATH);
+        } catch (IOException e) {
+            return null;
+        }
+
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
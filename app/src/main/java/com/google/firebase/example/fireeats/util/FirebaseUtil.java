@@ -19,12 +19,15 @@ import com.firebase.ui.auth.AuthUI;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.example.fireeats.BuildConfig;
 import com.google.firebase.firestore.FirebaseFirestore;
-
-import java.lang.ref.WeakReference;
+import com.google.firebase.firestore.FirebaseFirestoreSettings;
 
 /**
  * Utility class for initializing Firebase services and connecting them to the Firebase Emulator
  * Suite if necessary.
+ * <p>
+ * The services are held strongly for the life of the process, and configured exactly once,
+ * on whichever thread first asks for them. {@link #warmUp()} creates them all off the main thread
+ * during Application startup, so that the first screen finds them ready.
  */
 public class FirebaseUtil {
 
@@ -33,50 +36,131 @@ public class FirebaseUtil {
      **/
     private static final boolean sUseEmulators = BuildConfig.DEBUG;
 
-    private static WeakReference<FirebaseFirestore> FIRESTORE_REF;
-    private static FirebaseAuth AUTH;
-    private static AuthUI AUTH_UI;
+    /**
+     * Settings of the Firestore local cache, defaulting to the values of the build
+     **/
+    private static boolean sPersistenceEnabled = BuildConfig.FIRESTORE_PERSISTENCE_ENABLED;
+    private static long sCacheSizeBytes = BuildConfig.FIRESTORE_CACHE_SIZE_BYTES;
+
+    private static volatile FirebaseFirestore FIRESTORE;
+    private static volatile FirebaseAuth AUTH;
+    private static volatile AuthUI AUTH_UI;
+
+    /**
+     * Locks of the creation of each service, so that creating one never waits for another
+     **/
+    private static final Object FIRESTORE_LOCK = new Object();
+    private static final Object AUTH_LOCK = new Object();
+    private static final Object AUTH_UI_LOCK = new Object();
+
+    /**
+     * Configures the Firestore local cache. Must be called before the first call
+     * to {@link #getFirestore()} or {@link #warmUp()}, as the settings cannot be changed
+     * once Firestore is used.
+     *
+     * @param persistenceEnabled Whether the cache is persisted on disk across App restarts.
+     * @param cacheSizeBytes     The size of the cache on disk, beyond which the unused documents
+     *                           are collected, or {@link FirebaseFirestoreSettings#CACHE_SIZE_UNLIMITED}.
+     * @throws IllegalStateException When Firestore is already in use.
+     */
+    public static void setFirestoreSettings(boolean persistenceEnabled, long cacheSizeBytes) {
+        synchronized (FIRESTORE_LOCK) {
+            if (FIRESTORE != null) {
+                throw new IllegalStateException(
+                        "Firestore settings must be set before its first use");
+            }
+
+            sPersistenceEnabled = persistenceEnabled;
+            sCacheSizeBytes = cacheSizeBytes;
+        }
+    }
+
+    /**
+     * Creates and configures Firestore, Auth and AuthUI in background, unless already created.
+     * Called on Application startup, ahead of the first screen.
+     */
+    public static void warmUp() {
+        AppExecutors.background().execute(() -> {
+            getFirestore();
+            getAuth();
+            getAuthUI();
+        });
+    }
 
     public static FirebaseFirestore getFirestore() {
-        if (FIRESTORE_REF == null) {
-            FIRESTORE_REF = new WeakReference<>(FirebaseFirestore.getInstance());
+        FirebaseFirestore firestore = FIRESTORE;
+        if (firestore == null) {
+            synchronized (FIRESTORE_LOCK) {
+                firestore = FIRESTORE;
+                if (firestore == null) {
+                    firestore = FirebaseFirestore.getInstance();
+
+                    // Configure the local cache, before any other use of Firestore
+                    firestore.setFirestoreSettings(new FirebaseFirestoreSettings.Builder()
+                            .setPersistenceEnabled(sPersistenceEnabled)
+                            .setCacheSizeBytes(sCacheSizeBytes)
+                            .build());
+
+                    // Connect to the Cloud Firestore emulator when appropriate. The host
+                    // '10.0.2.2' is a special IP address to let the Android emulator connect
+                    // to 'localhost'.
+                    if (sUseEmulators) {
+                        firestore.useEmulator("10.0.2.2", 8080);
+                    }
 
-            // Connect to the Cloud Firestore emulator when appropriate. The host '10.0.2.2' is a
-            // special IP address to let the Android emulator connect to 'localhost'.
-            if (sUseEmulators) {
-                FIRESTORE_REF.get().useEmulator("10.0.2.2", 8080);
+                    // Publish only once configured
+                    FIRESTORE = firestore;
+                }
             }
         }
 
-        return FIRESTORE_REF.get();
+        return firestore;
     }
 
     public static FirebaseAuth getAuth() {
-        if (AUTH == null) {
-            AUTH = FirebaseAuth.getInstance();
+        FirebaseAuth auth = AUTH;
+        if (auth == null) {
+            synchronized (AUTH_LOCK) {
+                auth = AUTH;
+                if (auth == null) {
+                    auth = FirebaseAuth.getInstance();
 
-            // Connect to the Firebase Auth emulator when appropriate. The host '10.0.2.2' is a
-            // special IP address to let the Android emulator connect to 'localhost'.
-            if (sUseEmulators) {
-                AUTH.useEmulator("10.0.2.2", 9099);
+                    // Connect to the Firebase Auth emulator when appropriate. The host
+                    // '10.0.2.2' is a special IP address to let the Android emulator connect
+                    // to 'localhost'.
+                    if (sUseEmulators) {
+                        auth.useEmulator("10.0.2.2", 9099);
+                    }
+
+                    AUTH = auth;
+                }
             }
         }
 
-        return AUTH;
+        return auth;
     }
 
     public static AuthUI getAuthUI() {
-        if (AUTH_UI == null) {
-            AUTH_UI = AuthUI.getInstance();
+        AuthUI authUI = AUTH_UI;
+        if (authUI == null) {
+            synchronized (AUTH_UI_LOCK) {
+                authUI = AUTH_UI;
+                if (authUI == null) {
+                    authUI = AuthUI.getInstance();
+
+                    // Connect to the Firebase Auth emulator when appropriate. The host
+                    // '10.0.2.2' is a special IP address to let the Android emulator connect
+                    // to 'localhost'.
+                    if (sUseEmulators) {
+                        authUI.useEmulator("10.0.2.2", 9099);
+                    }
 
-            // Connect to the Firebase Auth emulator when appropriate. The host '10.0.2.2' is a
-            // special IP address to let the Android emulator connect to 'localhost'.
-            if (sUseEmulators) {
-                AUTH_UI.useEmulator("10.0.2.2", 9099);
+                    AUTH_UI = authUI;
+                }
             }
         }
 
-        return AUTH_UI;
+        return authUI;
     }
 
 }
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.util;
+
+import com.google.firebase.example.fireeats.core.QueryBuilder;
+import com.google.firebase.firestore.Query;
+
+/**
+ * {@link QueryBuilder} of the Firestore {@link Query}.
+ */
+public final class FirestoreQueryBuilder implements QueryBuilder<Query> {
+
+    public static final FirestoreQueryBuilder INSTANCE = new FirestoreQueryBuilder();
+
+    private FirestoreQueryBuilder() {
+    }
+
+    @Override
+    public Query whereEqualTo(Query query, String field, Object value) {
+        return query.whereEqualTo(field, value);
+    }
+
+    @Override
+    public Query orderBy(Query query, String field, boolean descending) {
+        return query.orderBy(field, descending ? Query.Direction.DESCENDING
+                : Query.Direction.ASCENDING);
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.util;
+
+import android.os.Build;
+import android.os.Debug;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.example.fireeats.model.Restaurant;
+import com.google.firebase.example.fireeats.model.RestaurantMapper;
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Compares the generated {@link RestaurantMapper} with the reflective
+ * {@link DocumentSnapshot#toObject(Class)}, on the Restaurant snapshots loaded, for the
+ * mapping throughput and the garbage allocated per Document. Meant for debug builds, run
+ * on a quiet App, as the allocations are counted for the whole process.
+ */
+public final class MapperBenchmark {
+
+    // Number of Documents mapped to warm up each mapper, before measuring
+    private static final int WARMUP_DOCUMENTS = 20_000;
+    // Number of Documents mapped when measuring each mapper
+    private static final int MEASURED_DOCUMENTS = 100_000;
+
+    // Sink of the results of mapping, for the mapping not to be optimized away
+    private static volatile int sSink;
+
+    private MapperBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark in background over the {@code snapshots}, mapped repeatedly.
+     *
+     * @param snapshots The Restaurant snapshots to map.
+     * @return The {@link Task} of the report of the results.
+     */
+    public static Task<String> run(@NonNull List<DocumentSnapshot> snapshots) {
+        final List<DocumentSnapshot> documents = new ArrayList<>(snapshots);
+        return Tasks.call(AppExecutors.background(), () -> {
+            if (documents.isEmpty()) {
+                return "No Restaurants to map";
+            }
+
+            // Warm up both, for the one-time costs such as the reflection of toObject
+            // to be excluded. The first use of toObject is measured separately.
+            long firstUseStart = System.nanoTime();
+            documents.get(0).toObject(Restaurant.class);
+            long toObjectFirstUseNanos = System.nanoTime() - firstUseStart;
+            map(documents, WARMUP_DOCUMENTS, true);
+            map(documents, WARMUP_DOCUMENTS, false);
+
+            Result reflective = measure(documents, true);
+            Result generated = measure(documents, false);
+            return String.format(Locale.US, "toObject: %s, first use %.2fms | generated: %s",
+                    reflective, toObjectFirstUseNanos / 1e6, generated);
+        });
+    }
+
+    /**
+     * Measures the mapping of {@link #MEASURED_DOCUMENTS} with either mapper.
+     */
+    private static Result measure(List<DocumentSnapshot> documents, boolean reflective) {
+        System.gc();
+        long bytesStart = getBytesAllocated();
+        long start = System.nanoTime();
+        map(documents, MEASURED_DOCUMENTS, reflective);
+        long elapsedNanos = System.nanoTime() - start;
+        long bytes = getBytesAllocated() - bytesStart;
+
+        return new Result(MEASURED_DOCUMENTS * 1e9 / elapsedNanos,
+                bytesStart < 0 ? -1 : (double) bytes / MEASURED_DOCUMENTS);
+    }
+
+    /**
+     * Maps the {@code documents} round-robin, up to the {@code count} of Documents.
+     */
+    private static void map(List<DocumentSnapshot> documents, int count, boolean reflective) {
+        int hash = 0;
+        for (int i = 0; i < count; i++) {
+            DocumentSnapshot document = documents.get(i % documents.size());
+            Restaurant restaurant = reflective ? document.toObject(Restaurant.class)
+                    : RestaurantMapper.fromSnapshot(document);
+            hash += restaurant != null ? restaurant.getNumRatings() : 0;
+        }
+        sSink = hash;
+    }
+
+    /**
+     * Returns the bytes allocated by the process so far, or -1 when not available.
+     */
+    private static long getBytesAllocated() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return -1;
+        }
+
+        String bytes = Debug.getRuntimeStat("art.gc.bytes-allocated");
+        return bytes != null ? Long.parseLong(bytes) : -1;
+    }
+
+    /**
+     * Result of a mapper.
+     */
+    private static final class Result {
+        private final double mDocumentsPerSecond;
+        private final double mBytesPerDocument;
+
+        Result(double documentsPerSecond, double bytesPerDocument) {
+            mDocumentsPerSecond = documentsPerSecond;
+            mBytesPerDocument = bytesPerDocument;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%.0f docs/s, %.0f bytes/doc",
+                    mDocumentsPerSecond, mBytesPerDocument);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.google.firebase.example.fireeats.util;
+
+import com.bumptech.glide.annotation.GlideExtension;
+import com.bumptech.glide.annotation.GlideOption;
+import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.load.resource.bitmap.DownsampleStrategy;
+import com.bumptech.glide.request.BaseRequestOptions;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Application-wide request options for {@link com.bumptech.glide.Glide}, available
+ * on the generated {@link GlideApp} requests.
+ *
+ * @author Kaushik N Sanji
+ */
+@GlideExtension
+public final class MyAppGlideExtension {
+
+    private MyAppGlideExtension() {
+    }
+
+    /**
+     * Options for the small images of lists, which are decoded at the exact {@code size}
+     * in the lower precision RGB_565 format, using half the memory of ARGB_8888.
+     *
+     * @param options The request options to apply on.
+     * @param size    The width and height of the image in pixels.
+     */
+    @NonNull
+    @GlideOption
+    public static BaseRequestOptions<?> listThumbnail(BaseRequestOptions<?> options, int size) {
+        return options
+                .format(DecodeFormat.PREFER_RGB_565)
+                .override(size)
+                .downsample(DownsampleStrategy.CENTER_OUTSIDE)
+                .centerCrop();
+    }
+
+    /**
+     * Options for the full-bleed images, which are decoded in full quality ARGB_8888.
+     *
+     * @param options The request options to apply on.
+     */
+    @NonNull
+    @GlideOption
+    public static BaseRequestOptions<?> fullQuality(BaseRequestOptions<?> options) {
+        return options.format(DecodeFormat.PREFER_ARGB_8888);
+    }
+}
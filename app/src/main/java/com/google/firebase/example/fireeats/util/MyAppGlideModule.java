@@ -1,8 +1,19 @@
 package com.google.firebase.example.fireeats.util;
 
+import android.app.ActivityManager;
+import android.content.Context;
+
+import com.bumptech.glide.GlideBuilder;
 import com.bumptech.glide.annotation.GlideModule;
+import com.bumptech.glide.load.engine.bitmap_recycle.LruBitmapPool;
+import com.bumptech.glide.load.engine.cache.InternalCacheDiskCacheFactory;
+import com.bumptech.glide.load.engine.cache.LruResourceCache;
+import com.bumptech.glide.load.engine.cache.MemorySizeCalculator;
 import com.bumptech.glide.module.AppGlideModule;
 
+import androidx.annotation.NonNull;
+import androidx.core.app.ActivityManagerCompat;
+
 /**
  * Application-wide Configurator Utility for {@link com.bumptech.glide.Glide}
  *
@@ -10,4 +21,47 @@ import com.bumptech.glide.module.AppGlideModule;
  */
 @GlideModule
 public class MyAppGlideModule extends AppGlideModule {
-}
\ No newline at end of file
+
+    // Share of the per-app heap (memory class) for the memory cache and the bitmap pool each
+    private static final float MEMORY_CACHE_HEAP_FRACTION = 0.125f;
+    private static final float MEMORY_CACHE_HEAP_FRACTION_LOW_RAM = 0.0625f;
+
+    // Disk cache size of the decoded thumbnails and the photos fetched
+    private static final long DISK_CACHE_SIZE_BYTES = 200L * 1024 * 1024;
+    private static final long DISK_CACHE_SIZE_BYTES_LOW_RAM = 50L * 1024 * 1024;
+
+    /**
+     * Sizes the memory and disk caches by the memory class of the device.
+     */
+    @Override
+    public void applyOptions(@NonNull Context context, @NonNull GlideBuilder builder) {
+        ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        boolean isLowRam = ActivityManagerCompat.isLowRamDevice(activityManager);
+
+        // Memory class is the heap limit of the app in MB
+        long heapBytes = activityManager.getMemoryClass() * 1024L * 1024L;
+        long memoryBudget = (long) (heapBytes
+                * (isLowRam ? MEMORY_CACHE_HEAP_FRACTION_LOW_RAM : MEMORY_CACHE_HEAP_FRACTION));
+
+        // Never exceed the budget Glide computes from the screen size and memory class,
+        // which already accounts for the low RAM devices
+        MemorySizeCalculator calculator = new MemorySizeCalculator.Builder(context).build();
+        builder.setMemoryCache(new LruResourceCache(
+                Math.min(memoryBudget, calculator.getMemoryCacheSize())));
+        builder.setBitmapPool(new LruBitmapPool(
+                Math.min(memoryBudget, calculator.getBitmapPoolSize())));
+
+        builder.setDiskCache(new InternalCacheDiskCacheFactory(context,
+                isLowRam ? DISK_CACHE_SIZE_BYTES_LOW_RAM : DISK_CACHE_SIZE_BYTES));
+    }
+
+    /**
+     * Disables the parsing of Glide modules from the Manifest, as the App uses
+     * the annotation processor only.
+     */
+    @Override
+    public boolean isManifestParsingEnabled() {
+        return false;
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.util;
+
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.google.firebase.example.fireeats.metrics.ReadLedger;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Bounded LRU cache of recent {@link Query} results, keyed by the criteria of the {@link Query},
+ * so that switching back to a recent {@link Query} can render at once from memory.
+ * <p>
+ * Entries are evicted when the cache exceeds its maximum number of entries, least recently used
+ * first, or when they are older than the maximum age on being read. Optionally, the most recently
+ * used entries can keep a listener on their {@link Query} so that their results stay fresh, while
+ * the cache is listening, see {@link #setListening(boolean)}.
+ *
+ * @param <K> The type of the key identifying the criteria of a {@link Query}. The keys
+ *            must not be mutated once put into the cache.
+ */
+public class QueryResultCache<K> {
+
+    private static final String TAG = "QueryResultCache";
+
+    // Name of the warm listeners in the read ledger, as they read for no screen in particular
+    private static final String LEDGER_SCREEN = "QueryResultCache";
+
+    // The LRU cache of entries
+    private final LruCache<K, Entry> mCache;
+    // Maximum age of an entry to be served, in milliseconds
+    private final long mMaxAgeMillis;
+    // Number of most recently used entries that keep a listener on their Query
+    private final int mWarmListenerCount;
+    // Whether the most recently used entries may keep a listener, such as while the screen is used
+    private boolean mListening = true;
+
+    // Statistics of the cache
+    private int mHitCount;
+    private int mMissCount;
+    private int mExpiredCount;
+
+    /**
+     * Constructor of {@link QueryResultCache}
+     *
+     * @param maxEntries        The maximum number of entries to retain.
+     * @param maxAgeMillis      The maximum age of an entry to be served, in milliseconds.
+     * @param warmListenerCount The number of most recently used entries that keep
+     *                          a listener on their {@link Query}, or 0 for none.
+     */
+    public QueryResultCache(int maxEntries, long maxAgeMillis, int warmListenerCount) {
+        mMaxAgeMillis = maxAgeMillis;
+        mWarmListenerCount = warmListenerCount;
+        mCache = new LruCache<K, Entry>(maxEntries) {
+            @Override
+            protected void entryRemoved(boolean evicted, K key, Entry oldValue, Entry newValue) {
+                // Detach the listener of the entry removed
+                oldValue.cool();
+            }
+        };
+    }
+
+    /**
+     * Saves the results of the {@link Query} identified by the {@code key}.
+     *
+     * @param key       The key identifying the criteria of the {@link Query}.
+     * @param query     The {@link Query} the results were read from.
+     * @param snapshots The results of the {@link Query}.
+     */
+    public void put(@NonNull K key, @NonNull Query query, @NonNull List<DocumentSnapshot> snapshots) {
+        mCache.put(key, new Entry(String.valueOf(key), query, snapshots));
+        updateWarmListeners();
+    }
+
+    /**
+     * Returns the results cached for the {@link Query} identified by the {@code key},
+     * or {@code null} when not found or expired.
+     *
+     * @param key The key identifying the criteria of the {@link Query}.
+     */
+    @Nullable
+    public List<DocumentSnapshot> get(@NonNull K key) {
+        Entry entry = mCache.get(key);
+        if (entry == null) {
+            mMissCount++;
+            return null;
+        }
+
+        if (SystemClock.elapsedRealtime() - entry.mTimestamp > mMaxAgeMillis) {
+            // Drop the entry when it is too old to be served
+            mCache.remove(key);
+            mExpiredCount++;
+            mMissCount++;
+            return null;
+        }
+
+        mHitCount++;
+        updateWarmListeners();
+        return entry.mSnapshots;
+    }
+
+    /**
+     * Sets whether the most recently used entries keep a listener on their {@link Query}, so that
+     * the warm listeners do not read while the results are not to be used, such as while the
+     * screen is in the background. Listening by default.
+     */
+    public void setListening(boolean listening) {
+        if (mListening != listening) {
+            mListening = listening;
+            updateWarmListeners();
+        }
+    }
+
+    /**
+     * Keeps the listeners of the most recently used entries attached, while listening,
+     * and detaches the listeners of the rest.
+     */
+    private void updateWarmListeners() {
+        if (mWarmListenerCount <= 0) {
+            return;
+        }
+
+        // Snapshot of the entries is ordered from least to most recently used
+        Map<K, Entry> entries = mCache.snapshot();
+        int coldCount = mListening ? entries.size() - mWarmListenerCount : entries.size();
+        for (Entry entry : entries.values()) {
+            if (coldCount-- > 0) {
+                entry.cool();
+            } else {
+                entry.warm();
+            }
+        }
+    }
+
+    /**
+     * Removes all entries, detaching their listeners.
+     */
+    public void clear() {
+        mCache.evictAll();
+    }
+
+    public int getHitCount() {
+        return mHitCount;
+    }
+
+    public int getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * Returns the number of entries evicted for exceeding the maximum number of entries.
+     */
+    public int getEvictionCount() {
+        return mCache.evictionCount();
+    }
+
+    /**
+     * Returns the number of entries dropped for exceeding the maximum age.
+     */
+    public int getExpiredCount() {
+        return mExpiredCount;
+    }
+
+    /**
+     * Returns the ratio of reads served from the cache, between 0 and 1.
+     */
+    public float getHitRate() {
+        int readCount = mHitCount + mMissCount;
+        return readCount == 0 ? 0f : (float) mHitCount / readCount;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "QueryResultCache[size=%d/%d, hits=%d, misses=%d, hitRate=%.2f, evictions=%d, expired=%d]",
+                mCache.size(), mCache.maxSize(), mHitCount, mMissCount, getHitRate(),
+                getEvictionCount(), mExpiredCount);
+    }
+
+    /**
+     * An entry of the cache, holding the results of a {@link Query} and the time they were read.
+     */
+    private static final class Entry {
+        // The label of the Query in the read ledger
+        private final String mLabel;
+        // The Query the results were read from
+        private final Query mQuery;
+        // The results of the Query
+        private List<DocumentSnapshot> mSnapshots;
+        // The time the results were read at
+        private long mTimestamp;
+        // The Listener that keeps the results fresh, or null when cold
+        private ListenerRegistration mRegistration;
+
+        Entry(String label, Query query, List<DocumentSnapshot> snapshots) {
+            mLabel = label;
+            mQuery = query;
+            mSnapshots = new ArrayList<>(snapshots);
+            mTimestamp = SystemClock.elapsedRealtime();
+        }
+
+        /**
+         * Registers a listener on the {@link Query} to keep the results fresh, if not registered.
+         */
+        void warm() {
+            if (mRegistration == null) {
+                final ReadLedger.Listen listen = new ReadLedger.Listen();
+                mRegistration = mQuery.addSnapshotListener((snapshot, error) -> {
+                    if (error != null) {
+                        // The listener is removed on error, and registered again when
+                        // the entry is next used, retaining the results until they expire
+                        Log.w(TAG, "Warm listener of " + mLabel + " failed", error);
+                        mRegistration = null;
+                        return;
+                    }
+
+                    if (snapshot != null) {
+                        ReadLedger.recordQuery(LEDGER_SCREEN, mLabel, snapshot, listen);
+                        mSnapshots = snapshot.getDocuments();
+                        mTimestamp = SystemClock.elapsedRealtime();
+                    }
+                });
+            }
+        }
+
+        /**
+         * Detaches the listener from the {@link Query}, if registered.
+         */
+        void cool() {
+            if (mRegistration != null) {
+                mRegistration.remove();
+                mRegistration = null;
+            }
+        }
+    }
+}
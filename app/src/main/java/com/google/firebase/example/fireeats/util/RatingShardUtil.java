@@ -0,0 +1,239 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.util;
+
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.example.fireeats.metrics.ReadLedger;
+import com.google.firebase.example.fireeats.model.Rating;
+import com.google.firebase.example.fireeats.model.RatingMapper;
+import com.google.firebase.example.fireeats.model.Restaurant;
+import com.google.firebase.example.fireeats.model.RestaurantMapper;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * Utilities for the sharded aggregate of Restaurant ratings.
+ * <p>
+ * Instead of updating the aggregate on the Restaurant document in a transaction for every rating,
+ * a rating increments the counters of one of {@link #NUM_SHARDS} shard documents picked at random,
+ * under the "ratingShards" subcollection of the Restaurant. This spreads the writes of a popular
+ * Restaurant across the shards, so that they do not contend for the same document.
+ * <p>
+ * The "numRatings" and "avgRating" of the Restaurant document hold the aggregate rolled up from
+ * the shards periodically with {@link #rollUp(FirebaseFirestore, DocumentReference, String)},
+ * and the shards hold the ratings since. The current aggregate is the sum of both.
+ * <p>
+ * The Restaurant document and its shards are read by separate listeners, which may see either
+ * side of a roll up first. Every roll up increments the "ratingRollUps" of the Restaurant and
+ * stamps the reset shards with it, and only the shards stamped with the roll ups of the Restaurant
+ * read are added to its aggregate, so that the ratings of a roll up are never counted twice.
+ * Until both sides have seen the roll up, the shards are left out.
+ */
+public final class RatingShardUtil {
+
+    public static final String COLLECTION = "ratingShards";
+    public static final String FIELD_NUM_RATINGS = "numRatings";
+    public static final String FIELD_TOTAL_RATING = "totalRating";
+    // Roll up of the Restaurant the shard was last reset by
+    public static final String FIELD_ROLL_UP = "rollUp";
+    // Number of roll ups of the shards into the Restaurant, on the Restaurant document
+    public static final String FIELD_ROLL_UPS = "ratingRollUps";
+
+    // Number of shards per Restaurant
+    public static final int NUM_SHARDS = 10;
+
+    // Random generator for picking a shard
+    private static final Random RANDOM = new Random();
+
+    private RatingShardUtil() {
+    }
+
+    /**
+     * Returns the reference to the "ratingShards" subcollection of the Restaurant.
+     */
+    public static CollectionReference getShards(DocumentReference restaurantRef) {
+        return restaurantRef.collection(COLLECTION);
+    }
+
+    /**
+     * Adds the rating to the Restaurant, and increments the counters of a random shard
+     * in the same batch, without reading or writing the Restaurant document.
+     *
+     * @param firestore     The {@link FirebaseFirestore} instance.
+     * @param restaurantRef The reference to the Restaurant document.
+     * @param rating        The {@link Rating} to be added.
+     * @return The {@link Task} of the batch write.
+     */
+    public static Task<Void> addRating(FirebaseFirestore firestore,
+                                       DocumentReference restaurantRef,
+                                       Rating rating) {
+        // Create a reference to the new Rating document
+        DocumentReference ratingRef = restaurantRef.collection(Rating.COLLECTION).document();
+        // Pick a random shard
+        DocumentReference shardRef = getShards(restaurantRef)
+                .document(String.valueOf(RANDOM.nextInt(NUM_SHARDS)));
+
+        // Increments of the shard counters, creating the shard if absent
+        Map<String, Object> increments = new HashMap<>();
+        increments.put(FIELD_NUM_RATINGS, FieldValue.increment(1));
+        increments.put(FIELD_TOTAL_RATING, FieldValue.increment(rating.getRating()));
+
+        WriteBatch batch = firestore.batch();
+        batch.set(ratingRef, RatingMapper.toMap(rating));
+        batch.set(shardRef, increments, SetOptions.merge());
+        return batch.commit();
+    }
+
+    /**
+     * Returns the number of roll ups of the shards into the Restaurant, 0 if never rolled up.
+     *
+     * @param restaurant The snapshot of the Restaurant document.
+     */
+    public static long getRollUps(DocumentSnapshot restaurant) {
+        Long rollUps = restaurant.getLong(FIELD_ROLL_UPS);
+        return rollUps != null ? rollUps : 0;
+    }
+
+    /**
+     * Sums up the counters of the shards reset by the last roll up of the Restaurant.
+     *
+     * @param shards  The snapshot of the "ratingShards" subcollection of a Restaurant.
+     * @param rollUps The roll ups of the snapshot of the Restaurant the aggregate is applied to,
+     *                from {@link #getRollUps(DocumentSnapshot)}.
+     * @return The {@link Aggregate} of the ratings held by the shards, not yet in the Restaurant.
+     */
+    public static Aggregate sum(QuerySnapshot shards, long rollUps) {
+        Aggregate aggregate = new Aggregate();
+        for (DocumentSnapshot shard : shards) {
+            aggregate.add(shard, rollUps);
+        }
+        return aggregate;
+    }
+
+    /**
+     * Applies the ratings held by the shards on the aggregate of the Restaurant.
+     *
+     * @param restaurant The Restaurant with the aggregate rolled up last.
+     * @param shards     The {@link Aggregate} of the ratings held by the shards.
+     * @return A new Restaurant with the current aggregate.
+     */
+    public static Restaurant applyTo(Restaurant restaurant, Aggregate shards) {
+        int numRatings = restaurant.getNumRatings() + (int) shards.mNumRatings;
+        double totalRating = restaurant.getAvgRating() * restaurant.getNumRatings()
+                + shards.mTotalRating;
+
+        return new Restaurant(restaurant.getName(), restaurant.getCity(),
+                restaurant.getCategory(), restaurant.getPhoto(), restaurant.getPrice(),
+                numRatings, numRatings == 0 ? 0 : totalRating / numRatings);
+    }
+
+    /**
+     * Rolls up the ratings held by the shards into the aggregate of the Restaurant document,
+     * and resets the shards, in a transaction.
+     *
+     * @param firestore     The {@link FirebaseFirestore} instance.
+     * @param restaurantRef The reference to the Restaurant document.
+     * @param screen        The screen to count the reads against in the {@link ReadLedger}.
+     * @return The {@link Task} of the transaction.
+     */
+    public static Task<Void> rollUp(FirebaseFirestore firestore,
+                                    final DocumentReference restaurantRef,
+                                    final String screen) {
+        return firestore.runTransaction(transaction -> {
+            // Read the Restaurant and all its shards, counted on every attempt
+            ReadLedger.recordTransactionGets(screen, "rollUp", 1 + NUM_SHARDS);
+            DocumentSnapshot restaurantSnapshot = transaction.get(restaurantRef);
+            long rollUps = getRollUps(restaurantSnapshot);
+            DocumentReference[] shardRefs = new DocumentReference[NUM_SHARDS];
+            Aggregate aggregate = new Aggregate();
+            for (int i = 0; i < NUM_SHARDS; i++) {
+                shardRefs[i] = getShards(restaurantRef).document(String.valueOf(i));
+                aggregate.add(transaction.get(shardRefs[i]), rollUps);
+            }
+
+            if (aggregate.mNumRatings == 0) {
+                // Nothing to roll up
+                return null;
+            }
+
+            Restaurant restaurant = applyTo(
+                    Objects.requireNonNull(RestaurantMapper.fromSnapshot(restaurantSnapshot)),
+                    aggregate);
+
+            // Update the aggregate of the Restaurant
+            Map<String, Object> update = new HashMap<>();
+            update.put(Restaurant.FIELD_POPULARITY, restaurant.getNumRatings());
+            update.put(Restaurant.FIELD_AVG_RATING, restaurant.getAvgRating());
+            update.put(FIELD_ROLL_UPS, rollUps + 1);
+            transaction.update(restaurantRef, update);
+
+            // Reset all the shards, stamped with the new roll up
+            Map<String, Object> reset = new HashMap<>();
+            reset.put(FIELD_NUM_RATINGS, 0);
+            reset.put(FIELD_TOTAL_RATING, 0);
+            reset.put(FIELD_ROLL_UP, rollUps + 1);
+            for (DocumentReference shardRef : shardRefs) {
+                transaction.set(shardRef, reset);
+            }
+
+            return null;
+        });
+    }
+
+    /**
+     * Aggregate of the ratings held by the shards.
+     */
+    public static final class Aggregate {
+        private long mNumRatings;
+        private double mTotalRating;
+
+        /**
+         * Adds the counters of the {@code shard}, if it exists and was reset by the roll up
+         * {@code rollUps}. A shard never reset is of the roll up 0.
+         */
+        void add(DocumentSnapshot shard, long rollUps) {
+            Long rollUp = shard.getLong(FIELD_ROLL_UP);
+            if ((rollUp != null ? rollUp : 0) != rollUps) {
+                // Of another side of a roll up than the Restaurant
+                return;
+            }
+
+            Long numRatings = shard.getLong(FIELD_NUM_RATINGS);
+            Double totalRating = shard.getDouble(FIELD_TOTAL_RATING);
+            mNumRatings += numRatings != null ? numRatings : 0;
+            mTotalRating += totalRating != null ? totalRating : 0;
+        }
+
+        public long getNumRatings() {
+            return mNumRatings;
+        }
+
+        public double getTotalRating() {
+            return mTotalRating;
+        }
+    }
+}
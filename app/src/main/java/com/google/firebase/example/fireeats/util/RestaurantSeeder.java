@@ -0,0 +1,357 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.util;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.example.fireeats.model.Rating;
+import com.google.firebase.example.fireeats.model.RatingMapper;
+import com.google.firebase.example.fireeats.model.Restaurant;
+import com.google.firebase.example.fireeats.model.RestaurantMapper;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Seeds the "restaurants" collection with random Restaurants and their Ratings, written
+ * in {@link WriteBatch}es of up to {@link #MAX_BATCH_SIZE} operations, with a limited number
+ * of batches in flight at a time.
+ * <p>
+ * The documents, including their IDs, are generated from a {@link Random} with a fixed seed,
+ * hence seeding again with the same seed and user reproduces the same dataset, overwriting
+ * the documents seeded before. The aggregate ratings of each Restaurant are computed from the
+ * Ratings generated for it.
+ * <p>
+ * Seeding runs on a thread of its own, which blocks on the limit of batches in flight, rather than
+ * on a thread of the shared background {@link java.util.concurrent.Executor}.
+ */
+public class RestaurantSeeder {
+
+    private static final String TAG = "RestaurantSeeder";
+
+    // Maximum number of operations in a WriteBatch
+    public static final int MAX_BATCH_SIZE = 500;
+
+    // Time to wait for a batch in flight to be written, after which seeding fails
+    private static final long BATCH_TIMEOUT_SECONDS = 60;
+
+    // Length and characters of the generated Document IDs, like the auto IDs of Firestore
+    private static final int ID_LENGTH = 20;
+    private static final String ID_CHARS =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+
+    private static final String[] RATING_TEXTS = {
+            "Would come back again!",
+            "Decent food, slow service.",
+            "Best in town.",
+            "Not worth the price.",
+            "Great for a quick bite.",
+            "",
+    };
+
+    private final Context mContext;
+    private final FirebaseFirestore mFirestore;
+    private final FirebaseUser mUser;
+    private final long mSeed;
+    private final int mRestaurantCount;
+    private final int mMaxRatingsPerRestaurant;
+    private final int mMaxBatchesInFlight;
+    private final ExecutorService mExecutor;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    // Whether the seeding was cancelled
+    private volatile boolean mCancelled;
+
+    /**
+     * Listener for the progress of seeding, called on the main thread.
+     */
+    public interface OnProgressListener {
+
+        /**
+         * Called after each batch is written.
+         */
+        void onProgress(@NonNull Progress progress);
+
+        /**
+         * Called when seeding completes, fails or is cancelled.
+         *
+         * @param progress The final {@link Progress}.
+         * @param error    The first error of a batch write, or {@code null} on success.
+         */
+        void onComplete(@NonNull Progress progress, @Nullable Exception error);
+    }
+
+    /**
+     * Constructor of {@link RestaurantSeeder}
+     *
+     * @param context                 The {@link Context} to read the choices of Restaurants from.
+     * @param firestore               The {@link FirebaseFirestore} instance to write to.
+     * @param user                    The {@link FirebaseUser} authoring the Ratings.
+     * @param seed                    The seed of the random generator.
+     * @param restaurantCount         The number of Restaurants to generate.
+     * @param maxRatingsPerRestaurant The maximum number of Ratings generated per Restaurant,
+     *                                which should be less than {@link #MAX_BATCH_SIZE}.
+     * @param maxBatchesInFlight      The maximum number of batches being written at a time.
+     */
+    public RestaurantSeeder(Context context, FirebaseFirestore firestore, FirebaseUser user,
+                            long seed, int restaurantCount, int maxRatingsPerRestaurant,
+                            int maxBatchesInFlight) {
+        if (maxRatingsPerRestaurant >= MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("A Restaurant and its Ratings must fit in a batch of "
+                    + MAX_BATCH_SIZE);
+        }
+
+        mContext = context.getApplicationContext();
+        mFirestore = firestore;
+        mUser = user;
+        mSeed = seed;
+        mRestaurantCount = restaurantCount;
+        mMaxRatingsPerRestaurant = maxRatingsPerRestaurant;
+        mMaxBatchesInFlight = maxBatchesInFlight;
+        mExecutor = AppExecutors.newSingleThreadExecutor(TAG);
+    }
+
+    /**
+     * Starts seeding in background.
+     *
+     * @param listener The {@link OnProgressListener} to report the progress to.
+     */
+    public void start(@NonNull OnProgressListener listener) {
+        mExecutor.execute(() -> seed(listener));
+        // Let the thread end with the seeding
+        mExecutor.shutdown();
+    }
+
+    /**
+     * Stops seeding at once, interrupting the seeding thread if blocked on the batches in flight.
+     * The batches in flight still complete, and the batches written are not reverted.
+     */
+    public void cancel() {
+        mCancelled = true;
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * Seeds, and reports the completion to the {@code listener}.
+     */
+    private void seed(OnProgressListener listener) {
+        Progress progress = new Progress(mRestaurantCount);
+        AtomicReference<Exception> error = new AtomicReference<>();
+        try {
+            writeBatches(listener, progress, error);
+        } catch (InterruptedException e) {
+            // Cancelled, while the batches in flight complete on their own
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException e) {
+            error.compareAndSet(null, e);
+        }
+        mHandler.post(() -> listener.onComplete(progress, error.get()));
+    }
+
+    /**
+     * Generates the documents and writes them in batches, blocking until all batches are written.
+     *
+     * @throws InterruptedException If interrupted by {@link #cancel()}.
+     * @throws TimeoutException     If a batch was not written in time.
+     */
+    private void writeBatches(OnProgressListener listener, Progress progress,
+                              AtomicReference<Exception> error)
+            throws InterruptedException, TimeoutException {
+        Random random = new Random(mSeed);
+        CollectionReference restaurants = mFirestore.collection(Restaurant.COLLECTION);
+        Semaphore inFlight = new Semaphore(mMaxBatchesInFlight);
+
+        WriteBatch batch = mFirestore.batch();
+        int batchSize = 0;
+        int batchRestaurants = 0;
+        int batchRatings = 0;
+
+        for (int i = 0; i < mRestaurantCount && !mCancelled && error.get() == null; i++) {
+            // Generate the Restaurant and its Ratings
+            Restaurant restaurant = RestaurantUtil.getRandom(mContext, random);
+            Rating[] ratings = new Rating[random.nextInt(mMaxRatingsPerRestaurant + 1)];
+            double ratingTotal = 0;
+            for (int j = 0; j < ratings.length; j++) {
+                ratings[j] = getRandomRating(random);
+                ratingTotal += ratings[j].getRating();
+            }
+            restaurant.setNumRatings(ratings.length);
+            restaurant.setAvgRating(ratings.length == 0 ? 0 : ratingTotal / ratings.length);
+
+            if (batchSize + 1 + ratings.length > MAX_BATCH_SIZE) {
+                // Write the current batch, since the Restaurant and its Ratings do not fit in
+                commit(batch, batchRestaurants, batchRatings, inFlight, progress, error, listener);
+                batch = mFirestore.batch();
+                batchSize = 0;
+                batchRestaurants = 0;
+                batchRatings = 0;
+            }
+
+            // Add the Restaurant and its Ratings to the batch
+            DocumentReference restaurantRef = restaurants.document(getRandomId(random));
+            batch.set(restaurantRef, RestaurantMapper.toMap(restaurant));
+            for (Rating rating : ratings) {
+                batch.set(restaurantRef.collection(Rating.COLLECTION).document(getRandomId(random)),
+                        RatingMapper.toMap(rating));
+            }
+            batchSize += 1 + ratings.length;
+            batchRestaurants++;
+            batchRatings += ratings.length;
+        }
+
+        if (batchSize > 0 && !mCancelled && error.get() == null) {
+            commit(batch, batchRestaurants, batchRatings, inFlight, progress, error, listener);
+        }
+
+        // Wait for all the batches in flight
+        acquire(inFlight, mMaxBatchesInFlight);
+    }
+
+    /**
+     * Writes the {@code batch} once the number of batches in flight is under the limit.
+     */
+    private void commit(WriteBatch batch, int restaurantCount, int ratingCount,
+                        Semaphore inFlight, Progress progress, AtomicReference<Exception> error,
+                        OnProgressListener listener)
+            throws InterruptedException, TimeoutException {
+        acquire(inFlight, 1);
+        // Complete on the calling thread, as the seeding thread may be blocked on the limit
+        batch.commit().addOnCompleteListener(Runnable::run, task -> {
+            if (task.isSuccessful()) {
+                progress.add(restaurantCount, ratingCount);
+                mHandler.post(() -> listener.onProgress(progress));
+            } else {
+                error.compareAndSet(null, task.getException());
+            }
+            inFlight.release();
+        });
+    }
+
+    /**
+     * Acquires the {@code permits} of the batches in flight, waiting for
+     * {@link #BATCH_TIMEOUT_SECONDS} at most.
+     *
+     * @throws TimeoutException If the batches in flight were not written in time.
+     */
+    private static void acquire(Semaphore inFlight, int permits)
+            throws InterruptedException, TimeoutException {
+        if (!inFlight.tryAcquire(permits, BATCH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new TimeoutException("Batch not written within " + BATCH_TIMEOUT_SECONDS + "s");
+        }
+    }
+
+    /**
+     * Creates a random Rating authored by the user.
+     */
+    private Rating getRandomRating(Random random) {
+        // Whole stars from 1 to 5, as rated in the app
+        return new Rating(mUser, 1 + random.nextInt(5),
+                RATING_TEXTS[random.nextInt(RATING_TEXTS.length)]);
+    }
+
+    /**
+     * Creates a random Document ID. The IDs are not sequential, to spread the writes
+     * across the key range.
+     */
+    private static String getRandomId(Random random) {
+        StringBuilder id = new StringBuilder(ID_LENGTH);
+        for (int i = 0; i < ID_LENGTH; i++) {
+            id.append(ID_CHARS.charAt(random.nextInt(ID_CHARS.length())));
+        }
+        return id.toString();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s[seed=%d, restaurants=%d, maxRatings=%d, inFlight=%d]",
+                TAG, mSeed, mRestaurantCount, mMaxRatingsPerRestaurant, mMaxBatchesInFlight);
+    }
+
+    /**
+     * Progress of seeding, updated as the batches are written.
+     */
+    public static final class Progress {
+        private final int mTotalRestaurants;
+        private final long mStartTime = SystemClock.elapsedRealtime();
+        private final AtomicInteger mRestaurants = new AtomicInteger();
+        private final AtomicInteger mRatings = new AtomicInteger();
+        private final AtomicInteger mBatches = new AtomicInteger();
+
+        Progress(int totalRestaurants) {
+            mTotalRestaurants = totalRestaurants;
+        }
+
+        void add(int restaurants, int ratings) {
+            mRestaurants.addAndGet(restaurants);
+            mRatings.addAndGet(ratings);
+            mBatches.incrementAndGet();
+        }
+
+        public int getRestaurantCount() {
+            return mRestaurants.get();
+        }
+
+        public int getRatingCount() {
+            return mRatings.get();
+        }
+
+        public int getBatchCount() {
+            return mBatches.get();
+        }
+
+        /**
+         * Returns the fraction of Restaurants written, between 0 and 1.
+         */
+        public float getFraction() {
+            return mTotalRestaurants == 0 ? 1f : (float) mRestaurants.get() / mTotalRestaurants;
+        }
+
+        /**
+         * Returns the number of documents written per second, since seeding started.
+         */
+        public float getDocumentsPerSecond() {
+            long elapsedMillis = Math.max(1, SystemClock.elapsedRealtime() - mStartTime);
+            return (mRestaurants.get() + mRatings.get()) * 1000f / elapsedMillis;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "Progress[%.1f%%, restaurants=%d, ratings=%d, batches=%d, docs/s=%.1f]",
+                    getFraction() * 100, getRestaurantCount(), getRatingCount(),
+                    getBatchCount(), getDocumentsPerSecond());
+        }
+    }
+}
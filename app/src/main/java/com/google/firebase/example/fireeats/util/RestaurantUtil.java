@@ -23,9 +23,6 @@ import com.google.firebase.example.fireeats.model.Restaurant;
 import java.util.Arrays;
 import java.util.Locale;
 import java.util.Random;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Utilities for Restaurants.
@@ -34,8 +31,8 @@ public class RestaurantUtil {
 
     private static final String TAG = "RestaurantUtil";
 
-    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(2, 4, 60,
-            TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+    // Shared random generator for the Restaurants created one at a time
+    private static final Random RANDOM = new Random();
 
     private static final String RESTAURANT_URL_FMT = "https://storage.googleapis.com/firestorequickstarts.appspot.com/food_%d.png";
 
@@ -63,35 +60,57 @@ public class RestaurantUtil {
             "Diner",
     };
 
+    private static final int[] PRICES = new int[]{1, 2, 3};
+
+    // Cities and Categories to choose from, loaded once from the resources
+    private static String[] sCities;
+    private static String[] sCategories;
 
     /**
      * Create a random Restaurant POJO.
      */
     public static Restaurant getRandom(Context context) {
-        Restaurant restaurant = new Restaurant();
-        Random random = new Random();
-
-        // Cities (first element is 'Any')
-        String[] cities = context.getResources().getStringArray(R.array.cities);
-        cities = Arrays.copyOfRange(cities, 1, cities.length);
-
-        // Categories (first element is 'Any')
-        String[] categories = context.getResources().getStringArray(R.array.categories);
-        categories = Arrays.copyOfRange(categories, 1, categories.length);
+        synchronized (RANDOM) {
+            return getRandom(context, RANDOM);
+        }
+    }
 
-        int[] prices = new int[]{1, 2, 3};
+    /**
+     * Create a random Restaurant POJO, drawing from the given {@code random} generator so that
+     * a generator with a fixed seed creates the same sequence of Restaurants.
+     */
+    public static Restaurant getRandom(Context context, Random random) {
+        Restaurant restaurant = new Restaurant();
+        loadChoices(context);
 
         restaurant.setName(getRandomName(random));
-        restaurant.setCity(getRandomString(cities, random));
-        restaurant.setCategory(getRandomString(categories, random));
+        restaurant.setCity(getRandomString(sCities, random));
+        restaurant.setCategory(getRandomString(sCategories, random));
         restaurant.setPhoto(getRandomImageUrl(random));
-        restaurant.setPrice(getRandomInt(prices, random));
+        restaurant.setPrice(getRandomInt(PRICES, random));
         restaurant.setAvgRating(getRandomRating(random));
         restaurant.setNumRatings(random.nextInt(20));
 
         return restaurant;
     }
 
+    /**
+     * Loads the Cities and Categories to choose from, if not loaded already.
+     */
+    private static synchronized void loadChoices(Context context) {
+        if (sCities != null) {
+            return;
+        }
+
+        // Cities (first element is 'Any')
+        String[] cities = context.getResources().getStringArray(R.array.cities);
+        sCities = Arrays.copyOfRange(cities, 1, cities.length);
+
+        // Categories (first element is 'Any')
+        String[] categories = context.getResources().getStringArray(R.array.categories);
+        sCategories = Arrays.copyOfRange(categories, 1, categories.length);
+    }
+
 
     /**
      * Get a random image.
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.util;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.example.fireeats.core.RestaurantRowStore;
+import com.google.firebase.example.fireeats.model.Restaurant;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Compares the heap retained by the Restaurant rows held as {@link DocumentSnapshot}s with the
+ * heap retained by the same rows held in a {@link RestaurantRowStore}, at 1k, 10k and 100k rows.
+ * The rows are read from the local cache, repeatedly when fewer are cached, each read giving
+ * distinct snapshots. Meant for debug builds, run on a quiet App, as the heap is measured for
+ * the whole process.
+ */
+public final class RowHeapComparison {
+
+    // Numbers of rows compared
+    private static final int[] ROW_COUNTS = {1_000, 10_000, 100_000};
+
+    // Sink of the rows held, for them not to be collected before they are measured
+    private static volatile Object sSink;
+
+    private RowHeapComparison() {
+    }
+
+    /**
+     * Runs the comparison in background over the Restaurants of the {@code query}.
+     *
+     * @param query The {@link Query} of the Restaurants, read from the local cache.
+     * @return The {@link Task} of the report of the results.
+     */
+    public static Task<String> run(@NonNull Query query) {
+        return Tasks.call(AppExecutors.background(), () -> {
+            StringBuilder report = new StringBuilder();
+            for (int rowCount : ROW_COUNTS) {
+                report.append(report.length() == 0 ? "" : " | ").append(compare(query, rowCount));
+            }
+            return report.toString();
+        });
+    }
+
+    /**
+     * Measures the heap retained by {@code rowCount} rows, as snapshots and then as a store.
+     */
+    private static String compare(Query query, int rowCount) throws Exception {
+        long baseline = getUsedHeap();
+
+        // Hold the rows as snapshots
+        List<DocumentSnapshot> snapshots = readSnapshots(query, rowCount);
+        if (snapshots.isEmpty()) {
+            return "No Restaurants cached";
+        }
+        sSink = snapshots;
+        long snapshotBytes = getUsedHeap() - baseline;
+
+        // Hold the same rows in a store, releasing the snapshots
+        RestaurantRowStore store = new RestaurantRowStore();
+        for (DocumentSnapshot snapshot : snapshots) {
+            appendRow(store, snapshot);
+        }
+        int rows = snapshots.size();
+        snapshots.clear();
+        sSink = store;
+        long storeBytes = getUsedHeap() - baseline;
+        sSink = null;
+
+        return String.format(Locale.US,
+                "%d rows: snapshots %.0f bytes/row, store %.0f bytes/row (%.1fx)",
+                rows, (double) snapshotBytes / rows, (double) storeBytes / rows,
+                storeBytes > 0 ? (double) snapshotBytes / storeBytes : 0);
+    }
+
+    /**
+     * Appends the row of the Restaurant {@code snapshot} to the {@code store}, reading only
+     * the fields shown by a row, without retaining the {@code snapshot}.
+     */
+    private static void appendRow(RestaurantRowStore store, DocumentSnapshot snapshot) {
+        Long price = snapshot.getLong(Restaurant.FIELD_PRICE);
+        Long numRatings = snapshot.getLong(Restaurant.FIELD_POPULARITY);
+        Double avgRating = snapshot.getDouble(Restaurant.FIELD_AVG_RATING);
+        store.append(snapshot.getId(),
+                snapshot.getString(Restaurant.FIELD_NAME),
+                snapshot.getString(Restaurant.FIELD_PHOTO),
+                snapshot.getString(Restaurant.FIELD_CITY),
+                snapshot.getString(Restaurant.FIELD_CATEGORY),
+                price != null ? price.intValue() : 0,
+                numRatings != null ? numRatings.intValue() : 0,
+                avgRating != null ? avgRating : 0);
+    }
+
+    /**
+     * Reads {@code rowCount} snapshots of the {@code query} from the local cache, reading it
+     * again while fewer are read, or fewer when nothing is cached.
+     */
+    private static List<DocumentSnapshot> readSnapshots(Query query, int rowCount)
+            throws Exception {
+        ArrayList<DocumentSnapshot> snapshots = new ArrayList<>(rowCount);
+        while (snapshots.size() < rowCount) {
+            QuerySnapshot result = Tasks.await(
+                    query.limit(rowCount - snapshots.size()).get(Source.CACHE));
+            if (result.isEmpty()) {
+                break;
+            }
+            snapshots.addAll(result.getDocuments());
+        }
+        return snapshots;
+    }
+
+    /**
+     * Returns the bytes of the Java heap in use, after collecting the garbage.
+     */
+    private static long getUsedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 2; i++) {
+            runtime.gc();
+            runtime.runFinalization();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.util;
+
+import android.util.LruCache;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Process-wide handoff of the {@link DocumentSnapshot}s already loaded by a screen to the screen
+ * it opens, keyed by their Document ID, so that the screen opened can render them at once,
+ * without waiting for its own listener. Only the most recent snapshots handed off are kept.
+ */
+@MainThread
+public final class SnapshotHandoff {
+
+    // Number of most recent snapshots kept
+    private static final int MAX_ENTRIES = 8;
+
+    private static final LruCache<String, DocumentSnapshot> SNAPSHOTS = new LruCache<>(MAX_ENTRIES);
+
+    private SnapshotHandoff() {
+    }
+
+    /**
+     * Hands off the {@code snapshot}, replacing any snapshot handed off earlier for its Document.
+     */
+    public static void put(@NonNull DocumentSnapshot snapshot) {
+        SNAPSHOTS.put(snapshot.getId(), snapshot);
+    }
+
+    /**
+     * Returns the snapshot handed off for the Document ID, or {@code null} when there is none.
+     */
+    @Nullable
+    public static DocumentSnapshot get(@NonNull String documentId) {
+        return SNAPSHOTS.get(documentId);
+    }
+}
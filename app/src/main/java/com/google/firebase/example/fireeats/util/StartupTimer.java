@@ -0,0 +1,120 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.util;
+
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.ViewTreeObserver;
+
+import java.util.Locale;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Measures the cold start of the App, from the creation of the first screen to the first row
+ * of its list drawn, and logs it once per process under the tag {@value #TAG}, in a format
+ * parsed by "scripts/startup/measure-cold-start.sh".
+ * <p>
+ * Only the first screen created in the process is measured, and only when it is not restored
+ * from a saved state, which would not be a cold start.
+ */
+public final class StartupTimer {
+
+    public static final String TAG = "StartupTimer";
+
+    // Time at which the Application was created, on the elapsed realtime clock
+    private static long sApplicationCreateTime = -1;
+    // Time at which the first screen was created, or -1 when not measuring
+    private static long sActivityCreateTime = -1;
+    // Whether the first screen of the process was seen, measured or not
+    private static boolean sActivitySeen;
+
+    private StartupTimer() {
+    }
+
+    /**
+     * Records the creation of the Application. Called from {@code Application#onCreate}.
+     */
+    public static void onApplicationCreate() {
+        sApplicationCreateTime = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * Starts measuring from the creation of the first screen, unless another screen was created
+     * earlier in the process, or the screen is being restored.
+     *
+     * @param restored Whether the screen is restored from a saved state.
+     */
+    public static void onActivityCreate(boolean restored) {
+        if (sActivitySeen) {
+            return;
+        }
+
+        sActivitySeen = true;
+        if (!restored) {
+            sActivityCreateTime = SystemClock.elapsedRealtime();
+        }
+    }
+
+    /**
+     * Reports the first row drawn by the {@code recyclerView}, if measuring the cold start.
+     *
+     * @param recyclerView The {@link RecyclerView} of the first screen.
+     * @param onReported   Callback invoked once the first row is drawn and reported.
+     */
+    public static void reportFirstRow(@NonNull final RecyclerView recyclerView,
+                                      @NonNull final Runnable onReported) {
+        if (sActivityCreateTime < 0) {
+            return;
+        }
+
+        final ViewTreeObserver observer = recyclerView.getViewTreeObserver();
+        observer.addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                if (recyclerView.getChildCount() == 0 || sActivityCreateTime < 0) {
+                    // Wait for a row to be laid out
+                    return true;
+                }
+
+                recyclerView.getViewTreeObserver().removeOnPreDrawListener(this);
+                log(SystemClock.elapsedRealtime());
+                sActivityCreateTime = -1;
+                onReported.run();
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Logs the timings to the first row drawn at {@code firstRowTime}, relative to the creation
+     * of the first screen, the Application and the process where known.
+     */
+    private static void log(long firstRowTime) {
+        long processStartTime = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N
+                ? Process.getStartElapsedRealtime() : -1;
+
+        Log.i(TAG, String.format(Locale.US,
+                "cold_start activity_to_first_row_ms=%d application_to_first_row_ms=%d"
+                        + " process_to_first_row_ms=%d",
+                firstRowTime - sActivityCreateTime,
+                sApplicationCreateTime < 0 ? -1 : firstRowTime - sApplicationCreateTime,
+                processStartTime < 0 ? -1 : firstRowTime - processStartTime));
+    }
+}
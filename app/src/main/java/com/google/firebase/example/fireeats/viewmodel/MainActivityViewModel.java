@@ -15,22 +15,79 @@
  */
 package com.google.firebase.example.fireeats.viewmodel;
 
+import android.util.Log;
+
 import com.google.firebase.example.fireeats.Filters;
+import com.google.firebase.example.fireeats.MainActivity;
+import com.google.firebase.example.fireeats.util.FirebaseUtil;
+import com.google.firebase.example.fireeats.util.QueryResultCache;
+import com.google.firebase.example.fireeats.util.RestaurantSeeder;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.Query;
+
+import java.util.List;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import androidx.lifecycle.LiveData;
 import androidx.lifecycle.ViewModel;
 
 /**
- * ViewModel for {@link com.google.firebase.example.fireeats.MainActivity}.
+ * ViewModel for {@link MainActivity}.
+ * <p>
+ * Owns the listener of the restaurants of the server {@link Filters}, whose first page is
+ * delivered by {@link #getRestaurants()}, so that it survives the configuration changes
+ * of the Activity, which renders the restaurants retained with no new reads.
  */
 
 public class MainActivityViewModel extends ViewModel {
 
+    private static final String TAG = "MainActivityViewModel";
+
+    // Maximum number of recent results of Filters to retain
+    private static final int RESULT_CACHE_MAX_ENTRIES = 8;
+    // Maximum age of the recent results of Filters to be rendered from memory
+    private static final long RESULT_CACHE_MAX_AGE_MILLIS = 10 * 60 * 1000L;
+    // Number of most recent results of Filters kept fresh with a listener
+    private static final int RESULT_CACHE_WARM_LISTENERS = 2;
+    // Time without observers after which the listener of the restaurants is detached,
+    // well beyond the recreation of the Activity on configuration changes
+    private static final long LISTENER_GRACE_PERIOD_MILLIS = 60_000L;
+
     private boolean mIsSigningIn;
     private Filters mFilters;
+    private final QueryResultCache<Filters> mResultCache;
+    // First page of the restaurants of the server Filters
+    private final RestaurantListLiveData mRestaurants;
+    // Seeding in progress, if any
+    private RestaurantSeeder mSeeder;
 
     public MainActivityViewModel() {
         mIsSigningIn = false;
         mFilters = Filters.getDefault();
+        mResultCache = new QueryResultCache<>(RESULT_CACHE_MAX_ENTRIES,
+                RESULT_CACHE_MAX_AGE_MILLIS, RESULT_CACHE_WARM_LISTENERS);
+        mRestaurants = new RestaurantListLiveData(FirebaseUtil.getFirestore(), MainActivity.SCREEN,
+                LISTENER_GRACE_PERIOD_MILLIS);
+        // Stop the listeners of the recent results along with the listener of the restaurants,
+        // after the same grace period in the background
+        mRestaurants.setOnIdleListener(idle -> mResultCache.setListening(!idle));
+    }
+
+    @Override
+    protected void onCleared() {
+        // Detach the listener of the restaurants
+        mRestaurants.clear();
+
+        // Detach the listeners of the recent results
+        mResultCache.clear();
+
+        // Stop seeding
+        if (mSeeder != null) {
+            mSeeder.cancel();
+            mSeeder = null;
+        }
     }
 
     public boolean getIsSigningIn() {
@@ -48,4 +105,111 @@ public class MainActivityViewModel extends ViewModel {
     public void setFilters(Filters mFilters) {
         this.mFilters = mFilters;
     }
+
+    /**
+     * Returns the first page of the restaurants of the server {@link Filters}, delivered while
+     * observed, and retained across the configuration changes of the Activity.
+     */
+    public LiveData<RestaurantList> getRestaurants() {
+        return mRestaurants;
+    }
+
+    /**
+     * Sets the number of restaurants of the first page, unless set by an earlier instance
+     * of the Activity, for the restaurants retained to be rendered as they are.
+     *
+     * @param pageSize The number of restaurants of the first page, or 0 to read all.
+     * @return The number of restaurants of the first page in effect.
+     */
+    public int initPageSize(int pageSize) {
+        if (mRestaurants.getFilters() == null) {
+            mRestaurants.setPageSize(pageSize);
+        }
+        return mRestaurants.getPageSize();
+    }
+
+    /**
+     * Returns the {@link Filters} of the server {@link Query} listened to, which may be broader
+     * than the {@link Filters} shown, or {@code null} until set. Not to be modified.
+     */
+    @Nullable
+    public Filters getServerFilters() {
+        return mRestaurants.getFilters();
+    }
+
+    /**
+     * Returns whether the restaurants delivered for the server {@link Filters} are all their
+     * results, such that narrower {@link Filters} can be derived from them.
+     */
+    public boolean hasCompleteResults() {
+        return mRestaurants.isComplete();
+    }
+
+    /**
+     * Listens to the server {@link Query} of the {@code filters}, delivering their recent results
+     * from memory at once if present, and saving the results of the previous {@link Filters}.
+     */
+    public void setServerFilters(@NonNull Filters filters) {
+        Filters previousFilters = mRestaurants.getFilters();
+        if (filters.equals(previousFilters)) {
+            return;
+        }
+
+        // Save the results loaded for the previous Filters
+        RestaurantList previous = mRestaurants.getValue();
+        Query previousQuery = mRestaurants.getFirstPageQuery();
+        if (previous != null && previous.getFilters() == previousFilters
+                && previousQuery != null && !previous.getSnapshots().isEmpty()) {
+            mResultCache.put(previousFilters, previousQuery, previous.getSnapshots());
+        }
+
+        // Deliver the recent results of the filters from memory, if present
+        mRestaurants.setFilters(filters, mResultCache.get(filters));
+        Log.d(TAG, "setServerFilters: " + mResultCache);
+    }
+
+    /**
+     * Delivers the {@code snapshots} of the {@code filters} read from the local cache, such as
+     * from a Firestore data bundle, while they are the server {@link Filters} and no results
+     * of them were delivered.
+     */
+    public void renderFromCache(@NonNull Filters filters,
+                                @NonNull List<DocumentSnapshot> snapshots) {
+        mRestaurants.renderFromCache(filters, snapshots);
+    }
+
+    /**
+     * Starts the {@code seeder}, logging its progress, unless a seeding is already in progress.
+     *
+     * @return {@code true} if started; {@code false} otherwise.
+     */
+    public boolean startSeeding(RestaurantSeeder seeder) {
+        if (mSeeder != null) {
+            return false;
+        }
+
+        Log.d(TAG, "Seeding " + seeder);
+        mSeeder = seeder;
+        seeder.start(new RestaurantSeeder.OnProgressListener() {
+            @Override
+            public void onProgress(@NonNull RestaurantSeeder.Progress progress) {
+                Log.d(TAG, "Seeding " + progress);
+            }
+
+            @Override
+            public void onComplete(@NonNull RestaurantSeeder.Progress progress,
+                                   @Nullable Exception error) {
+                if (error != null) {
+                    Log.w(TAG, "Seeding failed at " + progress, error);
+                } else {
+                    Log.d(TAG, "Seeding completed " + progress);
+                }
+
+                if (mSeeder == seeder) {
+                    mSeeder = null;
+                }
+            }
+        });
+        return true;
+    }
 }
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.viewmodel;
+
+import com.google.firebase.example.fireeats.Filters;
+import com.google.firebase.example.fireeats.model.Restaurant;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.Query;
+
+import java.util.Collections;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * The first page of the restaurants of some {@link Filters}, as delivered by
+ * {@link RestaurantListLiveData}: the snapshots, in their order, along with the
+ * {@link Restaurant}s deserialized from them off the main thread.
+ */
+public final class RestaurantList {
+
+    // Filters of the restaurants, not to be modified
+    private final Filters mFilters;
+    // Query of the Filters, with no page limit
+    private final Query mQuery;
+    private final List<DocumentSnapshot> mSnapshots;
+    private final List<Restaurant> mRestaurants;
+    private final boolean mFromCache;
+    // Error the listener failed with, or null
+    private final FirebaseFirestoreException mError;
+
+    RestaurantList(@NonNull Filters filters, @NonNull Query query,
+                   @NonNull List<DocumentSnapshot> snapshots, @NonNull List<Restaurant> restaurants,
+                   boolean fromCache, @Nullable FirebaseFirestoreException error) {
+        mFilters = filters;
+        mQuery = query;
+        mSnapshots = Collections.unmodifiableList(snapshots);
+        mRestaurants = Collections.unmodifiableList(restaurants);
+        mFromCache = fromCache;
+        mError = error;
+    }
+
+    /**
+     * Returns the {@link Filters} of the restaurants, which must not be modified.
+     */
+    @NonNull
+    public Filters getFilters() {
+        return mFilters;
+    }
+
+    /**
+     * Returns the {@link Query} of the {@link Filters}, with no page limit.
+     */
+    @NonNull
+    public Query getQuery() {
+        return mQuery;
+    }
+
+    /**
+     * Returns the snapshots of the restaurants, in their order.
+     */
+    @NonNull
+    public List<DocumentSnapshot> getSnapshots() {
+        return mSnapshots;
+    }
+
+    /**
+     * Returns the {@link Restaurant}s deserialized from the snapshots, in the same order.
+     */
+    @NonNull
+    public List<Restaurant> getRestaurants() {
+        return mRestaurants;
+    }
+
+    /**
+     * Returns whether the restaurants came from the cache, rather than from a snapshot
+     * up to date with the server.
+     */
+    public boolean isFromCache() {
+        return mFromCache;
+    }
+
+    /**
+     * Returns the error the listener failed with, in which case the restaurants are the last
+     * ones delivered, or {@code null}.
+     */
+    @Nullable
+    public FirebaseFirestoreException getError() {
+        return mError;
+    }
+}
@@ -0,0 +1,472 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.viewmodel;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.firebase.example.fireeats.Filters;
+import com.google.firebase.example.fireeats.core.FilterQueries;
+import com.google.firebase.example.fireeats.metrics.Metrics;
+import com.google.firebase.example.fireeats.metrics.ReadLedger;
+import com.google.firebase.example.fireeats.model.Restaurant;
+import com.google.firebase.example.fireeats.model.RestaurantMapper;
+import com.google.firebase.example.fireeats.util.AppExecutors;
+import com.google.firebase.example.fireeats.util.FirestoreQueryBuilder;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import androidx.lifecycle.LiveData;
+
+/**
+ * {@link LiveData} of the first page of the restaurants of the {@link Filters} set, which listens
+ * to their {@link Query} while observed, and deserializes the {@link Restaurant}s off the main
+ * thread.
+ * <p>
+ * Owned by a ViewModel, it outlives the configuration changes of the screen observing it. The
+ * listener is detached only after a grace period without active observers, so that a recreated
+ * screen is served the last {@link RestaurantList} at once, with no new reads.
+ * <p>
+ * On listening to new {@link Filters}, the first page is read from the local cache and delivered
+ * at once, unless earlier results are given, until the listener delivers.
+ */
+@MainThread
+public class RestaurantListLiveData extends LiveData<RestaurantList> {
+
+    private static final String TAG = "RestaurantListLiveData";
+
+    private final FirebaseFirestore mFirestore;
+    // Screen the reads are counted against in the read ledger
+    private final String mScreen;
+    // Time without active observers after which the listener is detached
+    private final long mGracePeriodMillis;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    // Runnable that detaches the listener at the end of the grace period, retaining the last results
+    private final Runnable mDetachRunnable = this::onGracePeriodElapsed;
+    // Notified when the grace period elapses without active observers, and on the next one
+    private OnIdleListener mOnIdleListener;
+    private boolean mIdle;
+    // Serial Executor to receive the snapshots and deserialize them on
+    private final Executor mListenerExecutor =
+            AppExecutors.newSerialExecutor(AppExecutors.background());
+    // Restaurants of the last snapshot of the listener of the generation below, by Document ID,
+    // accessed on the listener Executor only
+    private final HashMap<String, Restaurant> mListenerModels = new HashMap<>();
+    private int mListenerModelsGeneration = -1;
+
+    // Number of restaurants of the first page, or 0 to read all the restaurants
+    private int mPageSize;
+    // The Filters set, not to be modified, and their Query with no page limit, or null until set
+    private Filters mFilters;
+    private Query mQuery;
+    // The Query listened to, which is the first page of the Query
+    private Query mListenQuery;
+    // The Listener registered on the Query listened to, or null when detached
+    private ListenerRegistration mRegistration;
+    // Incremented on every change in registration, to discard the results of a stale listener
+    private int mGeneration;
+    // The reads state of the listener registered, for the ReadLedger
+    private ReadLedger.Listen mLedgerListen;
+    // Whether the listener delivered a snapshot of the Filters set
+    private boolean mDelivered;
+
+    /**
+     * Constructor of {@link RestaurantListLiveData}
+     *
+     * @param firestore         The {@link FirebaseFirestore} to read the restaurants from.
+     * @param screen            The name of the screen the reads are counted against.
+     * @param gracePeriodMillis The time without active observers after which the listener
+     *                          is detached, in milliseconds.
+     */
+    public RestaurantListLiveData(@NonNull FirebaseFirestore firestore, @NonNull String screen,
+                                  long gracePeriodMillis) {
+        mFirestore = firestore;
+        mScreen = screen;
+        mGracePeriodMillis = gracePeriodMillis;
+    }
+
+    /**
+     * Listener notified when this {@link LiveData} goes idle, that is when its grace period
+     * elapses without active observers, and when it is observed again.
+     */
+    public interface OnIdleListener {
+
+        /**
+         * Called when this {@link LiveData} goes idle, or becomes active again.
+         *
+         * @param idle Whether the grace period elapsed without active observers.
+         */
+        void onIdleChanged(boolean idle);
+    }
+
+    /**
+     * Sets the listener notified when this {@link LiveData} goes idle, and becomes active again,
+     * for its owner to stop and resume other listeners along.
+     */
+    public void setOnIdleListener(@Nullable OnIdleListener listener) {
+        mOnIdleListener = listener;
+    }
+
+    @Override
+    protected void onActive() {
+        // Cancel any pending detach of the listener
+        mHandler.removeCallbacks(mDetachRunnable);
+        attach();
+        setIdle(false);
+    }
+
+    @Override
+    protected void onInactive() {
+        // Keep listening for the grace period, over the recreation of the observer
+        mHandler.postDelayed(mDetachRunnable, mGracePeriodMillis);
+    }
+
+    /**
+     * Sets the number of restaurants of the first page. Takes effect from the next
+     * {@link Filters} set.
+     *
+     * @param pageSize The number of restaurants of the first page, or 0 to read all.
+     */
+    public void setPageSize(int pageSize) {
+        mPageSize = Math.max(0, pageSize);
+    }
+
+    /**
+     * Returns the number of restaurants of the first page, or 0 when all are read.
+     */
+    public int getPageSize() {
+        return mPageSize;
+    }
+
+    /**
+     * Returns the {@link Filters} set, which must not be modified, or {@code null} until set.
+     */
+    @Nullable
+    public Filters getFilters() {
+        return mFilters;
+    }
+
+    /**
+     * Returns the {@link Query} of the first page of the {@link Filters} set,
+     * or {@code null} until set.
+     */
+    @Nullable
+    public Query getFirstPageQuery() {
+        if (mQuery == null) {
+            return null;
+        }
+        return mPageSize > 0 ? mQuery.limit(mPageSize) : mQuery;
+    }
+
+    /**
+     * Listens to the first page of the restaurants of the {@code filters} while observed, unless
+     * they are already set. The {@code cachedSnapshots} are delivered until the listener delivers.
+     *
+     * @param filters         The {@link Filters} of the restaurants.
+     * @param cachedSnapshots The first page of the restaurants of the {@code filters} read
+     *                        earlier, or {@code null} to read it from the local cache.
+     */
+    public void setFilters(@NonNull Filters filters,
+                           @Nullable List<DocumentSnapshot> cachedSnapshots) {
+        if (filters.equals(mFilters)) {
+            return;
+        }
+
+        detach();
+        mFilters = new Filters(filters);
+        mQuery = FilterQueries.build(mFirestore.collection(Restaurant.COLLECTION), mFilters,
+                FirestoreQueryBuilder.INSTANCE);
+        mListenQuery = getFirstPageQuery();
+        mDelivered = false;
+
+        if (cachedSnapshots != null) {
+            // Deliver the results read earlier at once
+            final Filters cachedFilters = mFilters;
+            final Query cachedQuery = mQuery;
+            mListenerExecutor.execute(() ->
+                    deliverCached(cachedFilters, cachedQuery, cachedSnapshots));
+        }
+        if (hasActiveObservers()) {
+            attach();
+        }
+    }
+
+    /**
+     * Delivers the {@code snapshots} of the {@code filters} read from the local cache by the
+     * caller, unless other {@link Filters} are set, the listener delivered already, or
+     * results of the {@code filters} were delivered already. Useful when the cache is populated
+     * after listening started, such as by loading a Firestore data bundle.
+     *
+     * @param filters   The {@link Filters} the {@code snapshots} are the results of.
+     * @param snapshots The results of the {@code filters}, in their order, which are
+     *                  truncated to the page size.
+     */
+    public void renderFromCache(@NonNull Filters filters,
+                                @NonNull List<DocumentSnapshot> snapshots) {
+        RestaurantList restaurants = getValue();
+        if (!filters.equals(mFilters) || mDelivered || snapshots.isEmpty()
+                || (restaurants != null && restaurants.getFilters() == mFilters)) {
+            return;
+        }
+
+        if (mPageSize > 0 && snapshots.size() > mPageSize) {
+            // Hold only as many restaurants as the first page would deliver
+            snapshots = snapshots.subList(0, mPageSize);
+        }
+        final Filters cachedFilters = mFilters;
+        final Query cachedQuery = mQuery;
+        final List<DocumentSnapshot> cachedSnapshots = new ArrayList<>(snapshots);
+        mListenerExecutor.execute(() ->
+                deliverCached(cachedFilters, cachedQuery, cachedSnapshots));
+    }
+
+    /**
+     * Returns whether the last {@link RestaurantList} delivered holds all the restaurants of the
+     * {@link Filters} set, that is a first page from the server that is not full.
+     */
+    public boolean isComplete() {
+        RestaurantList restaurants = getValue();
+        return restaurants != null && restaurants.getFilters() == mFilters
+                && restaurants.getError() == null && !restaurants.isFromCache()
+                && (mPageSize == 0 || restaurants.getSnapshots().size() < mPageSize);
+    }
+
+    /**
+     * Detaches the listener for good, retaining the last results. Called when the owner
+     * of this {@link LiveData} is cleared.
+     */
+    public void clear() {
+        mHandler.removeCallbacks(mDetachRunnable);
+        detach();
+    }
+
+    /**
+     * Detaches the listener, and notifies going idle, as the grace period elapsed
+     * without active observers.
+     */
+    private void onGracePeriodElapsed() {
+        detach();
+        setIdle(true);
+    }
+
+    private void setIdle(boolean idle) {
+        if (mIdle != idle) {
+            mIdle = idle;
+            if (mOnIdleListener != null) {
+                mOnIdleListener.onIdleChanged(idle);
+            }
+        }
+    }
+
+    /**
+     * Registers the listener on the {@link Query} listened to, if set and detached, reading
+     * the first page from the local cache until the listener delivers, if there are no
+     * results of the {@link Filters} set yet.
+     */
+    private void attach() {
+        if (mListenQuery == null || mRegistration != null) {
+            return;
+        }
+
+        final Filters filters = mFilters;
+        final Query query = mQuery;
+        RestaurantList restaurants = getValue();
+        if (!mDelivered && (restaurants == null || restaurants.getFilters() != filters)) {
+            // Render from the cache until the listener delivers
+            mListenQuery.get(Source.CACHE).addOnSuccessListener(mListenerExecutor, snapshot -> {
+                if (!snapshot.isEmpty()) {
+                    deliverCached(filters, query, snapshot.getDocuments());
+                }
+            });
+        }
+
+        final int generation = ++mGeneration;
+        mLedgerListen = new ReadLedger.Listen();
+        mRegistration = mListenQuery.addSnapshotListener(mListenerExecutor, (snapshot, error) ->
+                onBackgroundEvent(filters, query, snapshot, error, generation));
+    }
+
+    /**
+     * Detaches the listener from the {@link Query} listened to, if registered.
+     */
+    private void detach() {
+        if (mRegistration != null) {
+            mRegistration.remove();
+            mRegistration = null;
+            mGeneration++;
+        }
+    }
+
+    /**
+     * Deserializes the {@code documents} read from the cache, and delivers them on the main thread
+     * unless other {@link Filters} were set, or the listener delivered, meanwhile.
+     */
+    @WorkerThread
+    private void deliverCached(final Filters filters, final Query query,
+                               final List<DocumentSnapshot> documents) {
+        final List<Restaurant> restaurants = parse(documents);
+        mHandler.post(() -> {
+            if (filters != mFilters || mDelivered) {
+                return;
+            }
+
+            setValue(new RestaurantList(filters, query, documents, restaurants, true, null));
+        });
+    }
+
+    /**
+     * Called on the listener {@link Executor} with the snapshot of the {@link Query} listened to.
+     * Deserializes the {@link Restaurant}s, and delivers them on the main thread.
+     *
+     * @param filters    The {@link Filters} of the {@link Query} listened to.
+     * @param query      The {@link Query} of the {@code filters}, with no page limit.
+     * @param snapshot   The value of the event. {@code null} if there was an error.
+     * @param error      The error if there was error. {@code null} otherwise.
+     * @param generation The generation of the listener that received the snapshot.
+     */
+    @WorkerThread
+    private void onBackgroundEvent(final Filters filters, final Query query,
+                                   @Nullable final QuerySnapshot snapshot,
+                                   @Nullable final FirebaseFirestoreException error,
+                                   final int generation) {
+        final long receivedNanos = Metrics.now();
+        final List<Restaurant> restaurants = snapshot != null
+                ? parseChanges(snapshot, generation) : null;
+
+        mHandler.post(() -> {
+            if (generation != mGeneration) {
+                // Discard when the listener was detached meanwhile
+                return;
+            }
+
+            if (error != null) {
+                onError(filters, query, error);
+            } else {
+                onSnapshot(filters, query, Objects.requireNonNull(snapshot),
+                        Objects.requireNonNull(restaurants), receivedNanos);
+            }
+        });
+    }
+
+    /**
+     * Delivers the {@link Restaurant}s of the {@code snapshot} of the {@code filters}.
+     */
+    private void onSnapshot(Filters filters, Query query, QuerySnapshot snapshot,
+                            List<Restaurant> restaurants, long receivedNanos) {
+        mDelivered = true;
+        boolean fromCache = snapshot.getMetadata().isFromCache();
+
+        // Count the documents delivered by the snapshot against the Filters
+        ReadLedger.recordQuery(mScreen, filters.toString(), snapshot, mLedgerListen);
+        if (Metrics.isEnabled()) {
+            // Record the size and the origin of the snapshot
+            Metrics.record(Metrics.CHANGES_PER_EVENT, snapshot.getDocumentChanges().size());
+            Metrics.increment(fromCache ? Metrics.EVENTS_FROM_CACHE : Metrics.EVENTS_FROM_SERVER);
+        }
+
+        setValue(new RestaurantList(filters, query, snapshot.getDocuments(), restaurants,
+                fromCache, null));
+
+        // Record the latency from the receipt of the snapshot to the frame that renders it
+        Metrics.recordUntilNextFrame(fromCache
+                ? Metrics.SNAPSHOT_TO_RENDER_CACHE_MS : Metrics.SNAPSHOT_TO_RENDER_SERVER_MS,
+                receivedNanos);
+    }
+
+    /**
+     * Delivers the {@code error} of the listener of the {@code filters}, along with the last
+     * {@link Restaurant}s delivered for them, if any. The listener is detached, to be registered
+     * again the next time this {@link LiveData} becomes active.
+     */
+    private void onError(Filters filters, Query query, FirebaseFirestoreException error) {
+        Log.w(TAG, "onEvent: Listen error", error);
+        detach();
+
+        RestaurantList restaurants = getValue();
+        if (restaurants != null && restaurants.getFilters() == filters) {
+            setValue(new RestaurantList(filters, query, restaurants.getSnapshots(),
+                    restaurants.getRestaurants(), restaurants.isFromCache(), error));
+        } else {
+            setValue(new RestaurantList(filters, query, Collections.emptyList(),
+                    Collections.emptyList(), true, error));
+        }
+    }
+
+    /**
+     * Deserializes the {@link Restaurant}s of the Documents added or modified since the last
+     * snapshot of the listener of the {@code generation}, reusing the {@link Restaurant}s of the
+     * other Documents, as most snapshots change only a few of them.
+     *
+     * @return The {@link Restaurant}s of all the Documents of the {@code snapshot}, in order.
+     */
+    @WorkerThread
+    private List<Restaurant> parseChanges(QuerySnapshot snapshot, int generation) {
+        if (generation != mListenerModelsGeneration) {
+            // The first snapshot of a listener adds all its Documents
+            mListenerModels.clear();
+            mListenerModelsGeneration = generation;
+        }
+
+        for (DocumentChange change : snapshot.getDocumentChanges()) {
+            DocumentSnapshot document = change.getDocument();
+            if (change.getType() == DocumentChange.Type.REMOVED) {
+                mListenerModels.remove(document.getId());
+            } else {
+                mListenerModels.put(document.getId(),
+                        Objects.requireNonNull(RestaurantMapper.fromSnapshot(document)));
+            }
+        }
+
+        List<DocumentSnapshot> documents = snapshot.getDocuments();
+        ArrayList<Restaurant> restaurants = new ArrayList<>(documents.size());
+        for (DocumentSnapshot document : documents) {
+            restaurants.add(mListenerModels.get(document.getId()));
+        }
+        return restaurants;
+    }
+
+    /**
+     * Deserializes the {@link Restaurant}s of the {@code documents} with the generated mapper,
+     * for the one-time results read from the cache.
+     */
+    @WorkerThread
+    private static List<Restaurant> parse(List<DocumentSnapshot> documents) {
+        ArrayList<Restaurant> restaurants = new ArrayList<>(documents.size());
+        for (DocumentSnapshot document : documents) {
+            restaurants.add(Objects.requireNonNull(RestaurantMapper.fromSnapshot(document)));
+        }
+        return restaurants;
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.core;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Benchmarks the contention of the ratings added at once to a single Restaurant on the Cloud
+ * Firestore emulator, between the read-modify-write transaction on the Restaurant document,
+ * and the increment of one random shard in a batch with the rating, as by "RatingShardUtil"
+ * of the App.
+ * <p>
+ * Every operation adds one rating, from {@link #THREADS} threads at once, hence the throughput
+ * is in ratings per second. A transaction aborted by the contention is retried, as by the SDK,
+ * and the retries are reported as "retries" per second.
+ * <p>
+ * The Android SDK does not run on a plain JVM, so the emulator is talked to over its REST API,
+ * with the same reads and writes as the App. Start the emulator with
+ * "firebase emulators:start --only firestore", and run with
+ * "./gradlew :core:jmh -PjmhInclude=RatingContentionBenchmark". The emulator is reached at
+ * the FIRESTORE_EMULATOR_HOST environment variable, "localhost:8080" by default.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(RatingContentionBenchmark.THREADS)
+public class RatingContentionBenchmark {
+
+    // Number of clients rating the Restaurant at once
+    static final int THREADS = 8;
+    // Number of shards per Restaurant, as in the App
+    private static final int NUM_SHARDS = 10;
+    // Project of the emulator, which accepts any
+    private static final String PROJECT_ID = "mock-firestore-project";
+    // Lets the requests bypass the security rules on the emulator
+    private static final String AUTHORIZATION = "Bearer owner";
+    // Status of a request aborted by the contention
+    private static final int HTTP_CONFLICT = 409;
+
+    private static final Pattern TRANSACTION =
+            Pattern.compile("\"transaction\"\\s*:\\s*\"([^\"]+)\"");
+    private static final Pattern NUM_RATINGS =
+            Pattern.compile("\"numRatings\"\\s*:\\s*\\{\\s*\"integerValue\"\\s*:\\s*\"(-?\\d+)\"");
+    private static final Pattern AVG_RATING =
+            Pattern.compile("\"avgRating\"\\s*:\\s*\\{\\s*\"(?:double|integer)Value\"\\s*:\\s*\"?([-+.\\dEe]+)");
+
+    // URL of the documents of the emulator, and the name of the Restaurant rated
+    private String mDocumentsUrl;
+    private String mRestaurantName;
+
+    /**
+     * Number of transactions retried.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Retries {
+        public long retries;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            retries = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String host = System.getenv("FIRESTORE_EMULATOR_HOST");
+        mDocumentsUrl = "http://" + (host != null ? host : "localhost:8080")
+                + "/v1/projects/" + PROJECT_ID + "/databases/(default)/documents";
+
+        // A new Restaurant per trial, without ratings
+        mRestaurantName = "projects/" + PROJECT_ID + "/databases/(default)/documents/restaurants/"
+                + "contention-" + Long.toString(System.currentTimeMillis(), 36);
+        try {
+            commit(null, update(mRestaurantName, "\"name\":{\"stringValue\":\"Contention\"},"
+                    + restaurantAggregate(0, 0)));
+        } catch (IOException e) {
+            throw new IllegalStateException("The Firestore emulator is not reachable at "
+                    + mDocumentsUrl + ", see the documentation of the benchmark", e);
+        }
+    }
+
+    /**
+     * Adds a rating in a transaction which reads the Restaurant, and writes the rating and the
+     * new aggregate of the Restaurant, as the App did before the sharded aggregate.
+     */
+    @Benchmark
+    public void transaction(Retries retries) throws IOException {
+        double rating = nextRating();
+        while (true) {
+            String transaction = beginTransaction();
+            try {
+                String restaurant = request("GET", mDocumentsUrl + "/"
+                        + documentPath(mRestaurantName) + "?transaction="
+                        + URLEncoder.encode(transaction, "UTF-8"), null);
+                long numRatings = Long.parseLong(find(NUM_RATINGS, restaurant));
+                double avgRating = Double.parseDouble(find(AVG_RATING, restaurant));
+
+                long newNumRatings = numRatings + 1;
+                double newAvgRating = (avgRating * numRatings + rating) / newNumRatings;
+                commit(transaction,
+                        update(mRestaurantName, restaurantAggregate(newNumRatings, newAvgRating)),
+                        update(newRatingName(), ratingFields(rating)));
+                return;
+            } catch (AbortedException e) {
+                // Contended, retry in a new transaction
+                retries.retries++;
+                rollback(transaction);
+            }
+        }
+    }
+
+    /**
+     * Adds a rating in a batch with the increments of a random shard, without reading or
+     * writing the Restaurant, as the App does.
+     */
+    @Benchmark
+    public void shardedIncrement() throws IOException {
+        double rating = nextRating();
+        String shardName = mRestaurantName + "/ratingShards/"
+                + ThreadLocalRandom.current().nextInt(NUM_SHARDS);
+
+        // Increments of the shard counters, creating the shard if absent
+        String increments = "{\"update\":{\"name\":\"" + shardName + "\",\"fields\":{}},"
+                + "\"updateMask\":{\"fieldPaths\":[]},"
+                + "\"updateTransforms\":["
+                + "{\"fieldPath\":\"numRatings\",\"increment\":{\"integerValue\":\"1\"}},"
+                + "{\"fieldPath\":\"totalRating\",\"increment\":{\"doubleValue\":"
+                + rating + "}}]}";
+        commit(null, update(newRatingName(), ratingFields(rating)), increments);
+    }
+
+    /**
+     * Returns a rating from 1 to 5.
+     */
+    private static double nextRating() {
+        return 1 + ThreadLocalRandom.current().nextInt(5);
+    }
+
+    /**
+     * Returns the name of a new rating document of the Restaurant, with a random ID.
+     */
+    private String newRatingName() {
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+        StringBuilder name = new StringBuilder(mRestaurantName).append("/ratings/");
+        for (int i = 0; i < 20; i++) {
+            name.append(alphabet.charAt(ThreadLocalRandom.current().nextInt(alphabet.length())));
+        }
+        return name.toString();
+    }
+
+    private static String restaurantAggregate(long numRatings, double avgRating) {
+        return String.format(Locale.ROOT,
+                "\"numRatings\":{\"integerValue\":\"%d\"},\"avgRating\":{\"doubleValue\":%s}",
+                numRatings, Double.toString(avgRating));
+    }
+
+    private static String ratingFields(double rating) {
+        return "\"userName\":{\"stringValue\":\"Contention\"},"
+                + "\"rating\":{\"doubleValue\":" + rating + "},"
+                + "\"text\":{\"stringValue\":\"Benchmark\"}";
+    }
+
+    /**
+     * Returns the write of the {@code fields} to the document, creating it if absent.
+     */
+    private static String update(String name, String fields) {
+        return "{\"update\":{\"name\":\"" + name + "\",\"fields\":{" + fields + "}}}";
+    }
+
+    /**
+     * Returns the path of the document, relative to {@link #mDocumentsUrl}.
+     */
+    private static String documentPath(String name) {
+        return name.substring(name.indexOf("/documents/") + "/documents/".length());
+    }
+
+    private String beginTransaction() throws IOException {
+        return find(TRANSACTION, request("POST", mDocumentsUrl + ":beginTransaction", "{}"));
+    }
+
+    private void rollback(String transaction) {
+        try {
+            request("POST", mDocumentsUrl + ":rollback",
+                    "{\"transaction\":\"" + transaction + "\"}");
+        } catch (IOException e) {
+            // Already ended by the abort
+        }
+    }
+
+    /**
+     * Commits the {@code writes}, atomically, in the {@code transaction} if not null.
+     */
+    private void commit(@Nullable String transaction, String... writes) throws IOException {
+        StringBuilder body = new StringBuilder("{\"writes\":[")
+                .append(String.join(",", writes)).append(']');
+        if (transaction != null) {
+            body.append(",\"transaction\":\"").append(transaction).append('"');
+        }
+        request("POST", mDocumentsUrl + ":commit", body.append('}').toString());
+    }
+
+    /**
+     * Sends the request to the emulator, and returns the body of the response.
+     *
+     * @throws AbortedException If aborted by the contention.
+     */
+    private static String request(String method, String url, @Nullable String body)
+            throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod(method);
+        connection.setRequestProperty("Authorization", AUTHORIZATION);
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        int status = connection.getResponseCode();
+        boolean isSuccessful = status / 100 == 2;
+        // Read the whole response, for the connection to be reused
+        String response = readFully(isSuccessful
+                ? connection.getInputStream() : connection.getErrorStream());
+        if (status == HTTP_CONFLICT) {
+            throw new AbortedException(response);
+        } else if (!isSuccessful) {
+            throw new IOException("HTTP " + status + " from " + url + ": " + response);
+        }
+        return response;
+    }
+
+    private static String readFully(@Nullable InputStream in) throws IOException {
+        if (in == null) {
+            return "";
+        }
+
+        try (InputStream stream = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String find(Pattern pattern, String json) throws IOException {
+        Matcher matcher = pattern.matcher(json);
+        if (!matcher.find()) {
+            throw new IOException("No " + pattern + " in " + json);
+        }
+        return matcher.group(1);
+    }
+
+    /**
+     * Request aborted by the contention on a document, to be retried.
+     */
+    private static final class AbortedException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        AbortedException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Benchmarks the {@link SnapshotListEngine} with the {@link ChangeBatcher} of the adapter, fed with
+ * synthetic streams of {@link SnapshotChange}s, delivered in bursts as by a snapshot listener.
+ * <p>
+ * Every operation applies a single change, hence the throughput is in changes per second, and
+ * the "gc.alloc.rate.norm" of the "gc" profiler is in bytes allocated per change. At the end of
+ * each burst, the events recorded are dispatched and the list is reset to its initial rows,
+ * which are included in the cost of the changes of the burst. The reset allocates nothing.
+ * <p>
+ * Run with "./gradlew :core:jmh".
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SnapshotListBenchmark {
+
+    // Rows held before each burst, in addition to the burst size
+    private static final int EXTRA_ROWS = 50;
+    // Number of range events beyond which a burst is dispatched as a data set change,
+    // as by default in the adapter
+    private static final int BATCH_THRESHOLD = 32;
+    // Seed of the synthetic streams, to compare the runs
+    private static final long SEED = 42L;
+
+    /**
+     * Kind of changes in a burst.
+     */
+    public enum Scenario {
+        // Documents added at random positions
+        INSERT,
+        // Documents modified in content only
+        MODIFY,
+        // Documents modified in content and moved to random positions
+        MOVE,
+        // Documents removed from random positions
+        REMOVE,
+        // Additions, moves and removals, like a re-sorted query
+        MIXED
+    }
+
+    @Param({"10", "100", "1000", "10000"})
+    public int burstSize;
+
+    @Param({"INSERT", "MODIFY", "MOVE", "REMOVE", "MIXED"})
+    public Scenario scenario;
+
+    // Rows held at the start of each burst
+    private FakeDocument[] mInitialRows;
+    // The burst of changes, applied in order
+    private FakeChange[] mChanges;
+
+    private ArrayList<FakeDocument> mRows;
+    private ChangeBatcher mBatcher;
+    private SnapshotListEngine<FakeDocument> mEngine;
+    // Index of the next change of the burst to apply
+    private int mNext;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) {
+        Random random = new Random(SEED);
+        int initialSize = burstSize + EXTRA_ROWS;
+        mInitialRows = new FakeDocument[initialSize];
+        for (int i = 0; i < initialSize; i++) {
+            mInitialRows[i] = new FakeDocument("doc" + i, 0);
+        }
+        mChanges = generate(random);
+
+        mRows = new ArrayList<>(initialSize + burstSize);
+        mBatcher = new ChangeBatcher(new BlackholeSink(blackhole), () -> blackhole.consume(true),
+                BATCH_THRESHOLD);
+        // A constant payload, as computing the fields changed is up to the adapter
+        mEngine = new SnapshotListEngine<>(mRows, mBatcher, (oldDocument, newDocument) -> "");
+        resetRows();
+    }
+
+    /**
+     * Applies the next change of the burst, and dispatches the burst on its last change.
+     */
+    @Benchmark
+    public void applyChange() {
+        mEngine.apply(mChanges[mNext++], 0);
+
+        if (mNext == mChanges.length) {
+            mBatcher.dispatch();
+            resetRows();
+            mNext = 0;
+        }
+    }
+
+    /**
+     * Restores the initial rows, without allocating, as the capacity of the list is retained.
+     */
+    private void resetRows() {
+        mRows.clear();
+        for (FakeDocument row : mInitialRows) {
+            mRows.add(row);
+        }
+    }
+
+    /**
+     * Generates a burst of valid changes of the {@link #scenario}, by applying them
+     * to a copy of the initial rows.
+     */
+    private FakeChange[] generate(Random random) {
+        List<FakeDocument> rows = new ArrayList<>();
+        for (FakeDocument row : mInitialRows) {
+            rows.add(row);
+        }
+
+        FakeChange[] changes = new FakeChange[burstSize];
+        int nextId = rows.size();
+        for (int i = 0; i < burstSize; i++) {
+            Scenario kind = scenario;
+            if (kind == Scenario.MIXED) {
+                int pick = random.nextInt(10);
+                kind = pick < 4 ? Scenario.INSERT : pick < 7 ? Scenario.MOVE : Scenario.REMOVE;
+                if (rows.size() < 2) {
+                    kind = Scenario.INSERT;
+                }
+            }
+
+            switch (kind) {
+                case INSERT: {
+                    int newIndex = random.nextInt(rows.size() + 1);
+                    FakeDocument document = new FakeDocument("doc" + nextId++, 0);
+                    rows.add(newIndex, document);
+                    changes[i] = new FakeChange(SnapshotChange.Type.ADDED, document, -1, newIndex);
+                    break;
+                }
+                case MODIFY: {
+                    int index = random.nextInt(rows.size());
+                    FakeDocument document = rows.get(index).next();
+                    rows.set(index, document);
+                    changes[i] = new FakeChange(SnapshotChange.Type.MODIFIED, document,
+                            index, index);
+                    break;
+                }
+                case MOVE: {
+                    int oldIndex = random.nextInt(rows.size());
+                    int newIndex = random.nextInt(rows.size() - 1);
+                    if (newIndex >= oldIndex) {
+                        // Always to a different position
+                        newIndex++;
+                    }
+                    FakeDocument document = rows.remove(oldIndex).next();
+                    rows.add(newIndex, document);
+                    changes[i] = new FakeChange(SnapshotChange.Type.MODIFIED, document,
+                            oldIndex, newIndex);
+                    break;
+                }
+                case REMOVE: {
+                    int oldIndex = random.nextInt(rows.size());
+                    FakeDocument document = rows.remove(oldIndex);
+                    changes[i] = new FakeChange(SnapshotChange.Type.REMOVED, document,
+                            oldIndex, -1);
+                    break;
+                }
+                default:
+                    throw new IllegalStateException("Unexpected scenario " + kind);
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Synthetic Document snapshot, identified by its ID and version.
+     */
+    static final class FakeDocument {
+        final String mId;
+        final int mVersion;
+
+        FakeDocument(String id, int version) {
+            mId = id;
+            mVersion = version;
+        }
+
+        /**
+         * Returns the next version of this Document.
+         */
+        FakeDocument next() {
+            return new FakeDocument(mId, mVersion + 1);
+        }
+    }
+
+    /**
+     * Synthetic {@link SnapshotChange}, generated ahead of the measurement.
+     */
+    static final class FakeChange implements SnapshotChange<FakeDocument> {
+        private final Type mType;
+        private final FakeDocument mDocument;
+        private final int mOldIndex;
+        private final int mNewIndex;
+
+        FakeChange(Type type, FakeDocument document, int oldIndex, int newIndex) {
+            mType = type;
+            mDocument = document;
+            mOldIndex = oldIndex;
+            mNewIndex = newIndex;
+        }
+
+        @Override
+        public Type getType() {
+            return mType;
+        }
+
+        @Override
+        public FakeDocument getDocument() {
+            return mDocument;
+        }
+
+        @Override
+        public int getOldIndex() {
+            return mOldIndex;
+        }
+
+        @Override
+        public int getNewIndex() {
+            return mNewIndex;
+        }
+    }
+
+    /**
+     * {@link ListUpdateSink} that consumes the events dispatched, standing in for the adapter.
+     */
+    static final class BlackholeSink implements ListUpdateSink {
+        private final Blackhole mBlackhole;
+
+        BlackholeSink(Blackhole blackhole) {
+            mBlackhole = blackhole;
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            mBlackhole.consume(position + count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            mBlackhole.consume(position - count);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            mBlackhole.consume(fromPosition ^ toPosition);
+        }
+
+        @Override
+        public void onChanged(int position, int count, @Nullable Object payload) {
+            mBlackhole.consume(payload);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.core;
+
+import java.util.ArrayList;
+import java.util.Objects;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Batches the item change events of a burst of Document changes by merging the events
+ * on adjacent positions into range events, and dispatches them to a {@link ListUpdateSink}
+ * all at once with {@link #dispatch()}.
+ * <p>
+ * When the number of range events of the burst passes a threshold, the burst is
+ * dispatched as a single data set change instead.
+ */
+public class ChangeBatcher implements ListUpdateSink {
+
+    // Type of events recorded
+    private static final int TYPE_INSERT = 1;
+    private static final int TYPE_REMOVE = 2;
+    private static final int TYPE_CHANGE = 3;
+    private static final int TYPE_MOVE = 4;
+
+    // The callback to dispatch the range events to
+    private final ListUpdateSink mRangeCallback;
+    // The callback to dispatch the single data set change to
+    private final Runnable mDataSetChangedCallback;
+    // Range events recorded for the current burst, in the order of their occurrence
+    private final ArrayList<Event> mEvents = new ArrayList<>();
+    // Number of range events beyond which the burst is dispatched as a single data set change
+    private int mThreshold;
+
+    /**
+     * Constructor of {@link ChangeBatcher}
+     *
+     * @param rangeCallback          The {@link ListUpdateSink} to dispatch the range events to.
+     * @param dataSetChangedCallback The {@link Runnable} to dispatch the single data set change to.
+     * @param threshold              The number of range events beyond which the burst is
+     *                               dispatched as a single data set change.
+     */
+    public ChangeBatcher(ListUpdateSink rangeCallback, Runnable dataSetChangedCallback,
+                         int threshold) {
+        mRangeCallback = rangeCallback;
+        mDataSetChangedCallback = dataSetChangedCallback;
+        mThreshold = threshold;
+    }
+
+    /**
+     * Sets the number of range events beyond which the burst is dispatched as a single
+     * data set change.
+     */
+    public void setThreshold(int threshold) {
+        mThreshold = threshold;
+    }
+
+    /**
+     * Returns the last event recorded if it is of the {@code type}, else {@code null}.
+     */
+    @Nullable
+    private Event getLastEvent(int type) {
+        if (mEvents.isEmpty()) {
+            return null;
+        }
+
+        Event lastEvent = mEvents.get(mEvents.size() - 1);
+        return lastEvent.mType == type ? lastEvent : null;
+    }
+
+    @Override
+    public void onInserted(int position, int count) {
+        Event lastEvent = getLastEvent(TYPE_INSERT);
+        if (lastEvent != null && position >= lastEvent.mPosition
+                && position <= lastEvent.mPosition + lastEvent.mCount) {
+            // Grow the last insert range when inserting within or right after it
+            lastEvent.mCount += count;
+            return;
+        }
+
+        mEvents.add(new Event(TYPE_INSERT, position, count, null));
+    }
+
+    @Override
+    public void onRemoved(int position, int count) {
+        Event lastEvent = getLastEvent(TYPE_REMOVE);
+        if (lastEvent != null && lastEvent.mPosition >= position
+                && lastEvent.mPosition <= position + count) {
+            // Grow the last remove range when removing right at or before it
+            lastEvent.mCount += count;
+            lastEvent.mPosition = position;
+            return;
+        }
+
+        mEvents.add(new Event(TYPE_REMOVE, position, count, null));
+    }
+
+    @Override
+    public void onMoved(int fromPosition, int toPosition) {
+        // Moves cannot be merged into ranges
+        mEvents.add(new Event(TYPE_MOVE, fromPosition, toPosition, null));
+    }
+
+    @Override
+    public void onChanged(int position, int count, @Nullable Object payload) {
+        Event lastEvent = getLastEvent(TYPE_CHANGE);
+        if (lastEvent != null && Objects.equals(lastEvent.mPayload, payload)
+                && position <= lastEvent.mPosition + lastEvent.mCount
+                && position + count >= lastEvent.mPosition) {
+            // Merge into the last change range when overlapping or adjacent with the same payload
+            int end = Math.max(lastEvent.mPosition + lastEvent.mCount, position + count);
+            lastEvent.mPosition = Math.min(lastEvent.mPosition, position);
+            lastEvent.mCount = end - lastEvent.mPosition;
+            return;
+        }
+
+        mEvents.add(new Event(TYPE_CHANGE, position, count, payload));
+    }
+
+    /**
+     * Discards the range events recorded for the current burst, without dispatching them.
+     */
+    public void clear() {
+        mEvents.clear();
+    }
+
+    /**
+     * Dispatches the range events recorded for the current burst, or a single data set change
+     * when their number passes the threshold, and clears them to record the next burst.
+     */
+    public void dispatch() {
+        if (mEvents.isEmpty()) {
+            return;
+        }
+
+        if (mEvents.size() > mThreshold) {
+            // Too many ranges to animate, hence dispatch as a single data set change
+            mDataSetChangedCallback.run();
+        } else {
+            for (Event event : mEvents) {
+                switch (event.mType) {
+                    case TYPE_INSERT:
+                        mRangeCallback.onInserted(event.mPosition, event.mCount);
+                        break;
+                    case TYPE_REMOVE:
+                        mRangeCallback.onRemoved(event.mPosition, event.mCount);
+                        break;
+                    case TYPE_CHANGE:
+                        mRangeCallback.onChanged(event.mPosition, event.mCount, event.mPayload);
+                        break;
+                    case TYPE_MOVE:
+                        mRangeCallback.onMoved(event.mPosition, event.mCount);
+                        break;
+                }
+            }
+        }
+
+        mEvents.clear();
+    }
+
+    /**
+     * A range event recorded. For moves, {@code mPosition} and {@code mCount} hold
+     * the positions moved from and to respectively.
+     */
+    private static final class Event {
+        private final int mType;
+        private final Object mPayload;
+        private int mPosition;
+        private int mCount;
+
+        Event(int type, int position, int count, @Nullable Object payload) {
+            mType = type;
+            mPosition = position;
+            mCount = count;
+            mPayload = payload;
+        }
+    }
+}
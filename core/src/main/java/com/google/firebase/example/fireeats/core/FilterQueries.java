@@ -0,0 +1,60 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.core;
+
+/**
+ * Translates the filter and sort criteria on the restaurants into a query.
+ */
+public final class FilterQueries {
+
+    private FilterQueries() {
+    }
+
+    /**
+     * Builds the query of the {@code filters} on the {@code base} query.
+     *
+     * @param base    The query on the "restaurants" Collection.
+     * @param filters The {@link FilterSpec} to build the query of.
+     * @param builder The {@link QueryBuilder} of the type of query.
+     * @param <Q>     The type of the query.
+     * @return The query of the {@code filters}.
+     */
+    public static <Q> Q build(Q base, FilterSpec filters, QueryBuilder<Q> builder) {
+        Q query = base;
+
+        // Add Category equality filter if set
+        if (filters.hasCategory()) {
+            query = builder.whereEqualTo(query, RestaurantFields.CATEGORY, filters.getCategory());
+        }
+
+        // Add City equality filter if set
+        if (filters.hasCity()) {
+            query = builder.whereEqualTo(query, RestaurantFields.CITY, filters.getCity());
+        }
+
+        // Add Price equality filter if set
+        if (filters.hasPrice()) {
+            query = builder.whereEqualTo(query, RestaurantFields.PRICE, filters.getPrice());
+        }
+
+        // Add Sort by filters (orderBy with direction) if set
+        if (filters.hasSortBy()) {
+            query = builder.orderBy(query, filters.getSortBy(), filters.isSortDescending());
+        }
+
+        return query;
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.core;
+
+/**
+ * The filter and sort criteria on the restaurants, to build a query from
+ * with {@link FilterQueries}.
+ */
+public interface FilterSpec {
+
+    boolean hasCategory();
+
+    String getCategory();
+
+    boolean hasCity();
+
+    String getCity();
+
+    boolean hasPrice();
+
+    int getPrice();
+
+    boolean hasSortBy();
+
+    /**
+     * Returns the name of the field to sort by.
+     */
+    String getSortBy();
+
+    /**
+     * Returns whether the sort is in the descending order.
+     */
+    boolean isSortDescending();
+}
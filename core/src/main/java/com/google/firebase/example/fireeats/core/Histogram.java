@@ -0,0 +1,165 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.core;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Histogram of non-negative {@code long} values, such as durations or counts, in log-linear
+ * buckets: each power of two is split into 8 buckets, so that the percentiles are within 12.5%
+ * of the values recorded, in a fixed footprint whatever the number of values.
+ * <p>
+ * Not thread-safe; the callers recording from several threads are to synchronize.
+ */
+public final class Histogram {
+
+    // Number of buckets per power of two, and its log2
+    private static final int SUB_BUCKETS = 8;
+    private static final int SUB_BUCKET_BITS = 3;
+    // Number of buckets, enough for any non-negative long
+    private static final int BUCKET_COUNT = SUB_BUCKETS * (Long.SIZE - SUB_BUCKET_BITS);
+
+    // Number of values recorded per bucket
+    private final long[] mBuckets = new long[BUCKET_COUNT];
+    // Number, sum and bounds of the values recorded
+    private long mCount;
+    private long mSum;
+    private long mMin = Long.MAX_VALUE;
+    private long mMax = Long.MIN_VALUE;
+
+    /**
+     * Records the {@code value}, clamped to 0 when negative.
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+        mBuckets[getBucket(value)]++;
+        mCount++;
+        mSum += value;
+        mMin = Math.min(mMin, value);
+        mMax = Math.max(mMax, value);
+    }
+
+    /**
+     * Returns the index of the bucket of the {@code value}. The values below {@link #SUB_BUCKETS}
+     * have a bucket each, and the values above share the buckets of their power of two.
+     */
+    static int getBucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS * (exponent - SUB_BUCKET_BITS + 1) + subBucket;
+    }
+
+    /**
+     * Returns the lowest value of the {@code bucket}.
+     */
+    static long getBucketStart(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * Returns the number of values recorded.
+     */
+    public long getCount() {
+        return mCount;
+    }
+
+    /**
+     * Returns the value at the {@code percentile} of the values recorded, approximated to
+     * the lowest value of its bucket, within the bounds of the values recorded.
+     *
+     * @param percentile The percentile, from 0 to 100.
+     * @return The value at the {@code percentile}, or 0 when no values were recorded.
+     */
+    public long getPercentile(double percentile) {
+        if (mCount == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(mCount * Math.min(100, Math.max(0, percentile)) / 100);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += mBuckets[bucket];
+            if (seen >= Math.max(1, rank)) {
+                return Math.min(mMax, Math.max(mMin, getBucketStart(bucket)));
+            }
+        }
+        return mMax;
+    }
+
+    /**
+     * Returns a summary of the values recorded.
+     */
+    @NonNull
+    public Summary summarize() {
+        return new Summary(mCount, mCount == 0 ? 0 : mMin, mCount == 0 ? 0 : mMax,
+                mCount == 0 ? 0 : (double) mSum / mCount,
+                getPercentile(50), getPercentile(90), getPercentile(99));
+    }
+
+    /**
+     * Removes all the values recorded.
+     */
+    public void clear() {
+        Arrays.fill(mBuckets, 0);
+        mCount = 0;
+        mSum = 0;
+        mMin = Long.MAX_VALUE;
+        mMax = Long.MIN_VALUE;
+    }
+
+    /**
+     * Immutable summary of the values of a {@link Histogram}.
+     */
+    public static final class Summary {
+        public final long count;
+        public final long min;
+        public final long max;
+        public final double mean;
+        public final long p50;
+        public final long p90;
+        public final long p99;
+
+        Summary(long count, long min, long max, double mean, long p50, long p90, long p99) {
+            this.count = count;
+            this.min = min;
+            this.max = max;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "count=%d min=%d p50=%d p90=%d p99=%d max=%d mean=%.1f",
+                    count, min, p50, p90, p99, max, mean);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.core;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Receiver of the item change events of a list, mirroring
+ * {@code androidx.recyclerview.widget.ListUpdateCallback} without depending on Android.
+ */
+public interface ListUpdateSink {
+
+    /**
+     * Called when {@code count} items are inserted at the {@code position}.
+     */
+    void onInserted(int position, int count);
+
+    /**
+     * Called when {@code count} items are removed from the {@code position}.
+     */
+    void onRemoved(int position, int count);
+
+    /**
+     * Called when an item is moved from the {@code fromPosition} to the {@code toPosition}.
+     */
+    void onMoved(int fromPosition, int toPosition);
+
+    /**
+     * Called when {@code count} items from the {@code position} are changed, with the
+     * {@code payload} describing the change, if any.
+     */
+    void onChanged(int position, int count, @Nullable Object payload);
+}
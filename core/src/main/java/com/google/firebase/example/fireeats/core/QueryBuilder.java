@@ -0,0 +1,35 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.core;
+
+/**
+ * Builds on a query of type {@code Q}, which is immutable like the Firestore {@code Query},
+ * such that every call returns a new query.
+ *
+ * @param <Q> The type of the query.
+ */
+public interface QueryBuilder<Q> {
+
+    /**
+     * Returns the {@code query} with the equality filter of the {@code field} on the {@code value}.
+     */
+    Q whereEqualTo(Q query, String field, Object value);
+
+    /**
+     * Returns the {@code query} with the sort by the {@code field} in the direction requested.
+     */
+    Q orderBy(Q query, String field, boolean descending);
+}
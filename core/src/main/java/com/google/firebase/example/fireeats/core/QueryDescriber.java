@@ -0,0 +1,39 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.core;
+
+/**
+ * {@link QueryBuilder} that describes the query in a line of text, such as
+ * {@code "restaurants category==Sushi orderBy avgRating desc"}, to label the query
+ * in logs and reports.
+ */
+public final class QueryDescriber implements QueryBuilder<String> {
+
+    public static final QueryDescriber INSTANCE = new QueryDescriber();
+
+    private QueryDescriber() {
+    }
+
+    @Override
+    public String whereEqualTo(String query, String field, Object value) {
+        return query + " " + field + "==" + value;
+    }
+
+    @Override
+    public String orderBy(String query, String field, boolean descending) {
+        return query + " orderBy " + field + (descending ? " desc" : "");
+    }
+}
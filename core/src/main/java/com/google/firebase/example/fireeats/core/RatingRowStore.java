@@ -0,0 +1,124 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.core;
+
+import java.util.Arrays;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Compact store of the rating rows of a list, holding only the fields shown by a row in
+ * parallel arrays, one per field, in place of a {@code DocumentSnapshot} and its complete field
+ * map per row. The rating is held as a primitive.
+ * <p>
+ * Rows are only ever appended, or cleared all at once, which suits the older pages of the
+ * ratings, newest first, which are read once and never updated.
+ */
+public final class RatingRowStore {
+
+    // Initial capacity of the arrays, grown by half as rows are appended
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Document IDs of the rows
+    private String[] mIds = new String[INITIAL_CAPACITY];
+    // Fields of the rows, indexed like the Document IDs
+    private String[] mUserNames = new String[INITIAL_CAPACITY];
+    private double[] mRatings = new double[INITIAL_CAPACITY];
+    private String[] mTexts = new String[INITIAL_CAPACITY];
+    // Number of rows held
+    private int mSize;
+
+    /**
+     * Appends a row.
+     *
+     * @return The index of the row appended.
+     */
+    public int append(@NonNull String id, @Nullable String userName, double rating,
+                      @Nullable String text) {
+        if (mSize == mIds.length) {
+            grow();
+        }
+
+        int index = mSize++;
+        mIds[index] = id;
+        mUserNames[index] = userName;
+        mRatings[index] = rating;
+        mTexts[index] = text;
+        return index;
+    }
+
+    /**
+     * Grows the arrays by half of their capacity.
+     */
+    private void grow() {
+        int capacity = mIds.length + (mIds.length >> 1);
+        mIds = Arrays.copyOf(mIds, capacity);
+        mUserNames = Arrays.copyOf(mUserNames, capacity);
+        mRatings = Arrays.copyOf(mRatings, capacity);
+        mTexts = Arrays.copyOf(mTexts, capacity);
+    }
+
+    /**
+     * Returns the number of rows held.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Removes all the rows, releasing the arrays grown for them.
+     */
+    public void clear() {
+        mIds = new String[INITIAL_CAPACITY];
+        mUserNames = new String[INITIAL_CAPACITY];
+        mRatings = new double[INITIAL_CAPACITY];
+        mTexts = new String[INITIAL_CAPACITY];
+        mSize = 0;
+    }
+
+    @NonNull
+    public String getId(int index) {
+        checkIndex(index);
+        return mIds[index];
+    }
+
+    @Nullable
+    public String getUserName(int index) {
+        checkIndex(index);
+        return mUserNames[index];
+    }
+
+    public double getRating(int index) {
+        checkIndex(index);
+        return mRatings[index];
+    }
+
+    @Nullable
+    public String getText(int index) {
+        checkIndex(index);
+        return mTexts[index];
+    }
+
+    /**
+     * Checks that the {@code index} is of a row held, as the arrays are larger than the rows.
+     */
+    private void checkIndex(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mSize);
+        }
+    }
+}
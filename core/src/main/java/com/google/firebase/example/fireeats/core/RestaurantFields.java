@@ -0,0 +1,35 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.core;
+
+/**
+ * Names of the "restaurants" Collection and the fields of its Documents, shared by the models
+ * and the queries built from filters.
+ */
+public final class RestaurantFields {
+
+    public static final String COLLECTION = "restaurants";
+    public static final String NAME = "name";
+    public static final String PHOTO = "photo";
+    public static final String CITY = "city";
+    public static final String CATEGORY = "category";
+    public static final String PRICE = "price";
+    public static final String NUM_RATINGS = "numRatings";
+    public static final String AVG_RATING = "avgRating";
+
+    private RestaurantFields() {
+    }
+}
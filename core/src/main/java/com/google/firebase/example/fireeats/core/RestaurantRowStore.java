@@ -0,0 +1,169 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.core;
+
+import java.util.Arrays;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Compact store of the restaurant rows of a list, holding only the fields shown by a row in
+ * parallel arrays, one per field, in place of a {@code DocumentSnapshot} and its complete field
+ * map per row. The numeric fields are held as primitives, and the cities and categories, which
+ * come from small vocabularies, are interned to {@code int} codes with {@link StringPool}s.
+ * <p>
+ * Rows are only ever appended, or cleared all at once, which suits the pages of a list that
+ * are read once and never updated.
+ */
+public final class RestaurantRowStore {
+
+    // Initial capacity of the arrays, grown by half as rows are appended
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Document IDs of the rows
+    private String[] mIds = new String[INITIAL_CAPACITY];
+    // Fields of the rows, indexed like the Document IDs
+    private String[] mNames = new String[INITIAL_CAPACITY];
+    private String[] mPhotos = new String[INITIAL_CAPACITY];
+    private int[] mCityCodes = new int[INITIAL_CAPACITY];
+    private int[] mCategoryCodes = new int[INITIAL_CAPACITY];
+    private int[] mPrices = new int[INITIAL_CAPACITY];
+    private int[] mNumRatings = new int[INITIAL_CAPACITY];
+    private double[] mAvgRatings = new double[INITIAL_CAPACITY];
+    // Vocabularies of the cities and the categories
+    private final StringPool mCities = new StringPool();
+    private final StringPool mCategories = new StringPool();
+    // Number of rows held
+    private int mSize;
+
+    /**
+     * Appends a row.
+     *
+     * @return The index of the row appended.
+     */
+    public int append(@NonNull String id, @Nullable String name, @Nullable String photo,
+                      @Nullable String city, @Nullable String category,
+                      int price, int numRatings, double avgRating) {
+        if (mSize == mIds.length) {
+            grow();
+        }
+
+        int index = mSize++;
+        mIds[index] = id;
+        mNames[index] = name;
+        mPhotos[index] = photo;
+        mCityCodes[index] = mCities.intern(city);
+        mCategoryCodes[index] = mCategories.intern(category);
+        mPrices[index] = price;
+        mNumRatings[index] = numRatings;
+        mAvgRatings[index] = avgRating;
+        return index;
+    }
+
+    /**
+     * Grows the arrays by half of their capacity.
+     */
+    private void grow() {
+        int capacity = mIds.length + (mIds.length >> 1);
+        mIds = Arrays.copyOf(mIds, capacity);
+        mNames = Arrays.copyOf(mNames, capacity);
+        mPhotos = Arrays.copyOf(mPhotos, capacity);
+        mCityCodes = Arrays.copyOf(mCityCodes, capacity);
+        mCategoryCodes = Arrays.copyOf(mCategoryCodes, capacity);
+        mPrices = Arrays.copyOf(mPrices, capacity);
+        mNumRatings = Arrays.copyOf(mNumRatings, capacity);
+        mAvgRatings = Arrays.copyOf(mAvgRatings, capacity);
+    }
+
+    /**
+     * Returns the number of rows held.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Removes all the rows, releasing the arrays grown for them.
+     */
+    public void clear() {
+        mIds = new String[INITIAL_CAPACITY];
+        mNames = new String[INITIAL_CAPACITY];
+        mPhotos = new String[INITIAL_CAPACITY];
+        mCityCodes = new int[INITIAL_CAPACITY];
+        mCategoryCodes = new int[INITIAL_CAPACITY];
+        mPrices = new int[INITIAL_CAPACITY];
+        mNumRatings = new int[INITIAL_CAPACITY];
+        mAvgRatings = new double[INITIAL_CAPACITY];
+        mCities.clear();
+        mCategories.clear();
+        mSize = 0;
+    }
+
+    @NonNull
+    public String getId(int index) {
+        checkIndex(index);
+        return mIds[index];
+    }
+
+    @Nullable
+    public String getName(int index) {
+        checkIndex(index);
+        return mNames[index];
+    }
+
+    @Nullable
+    public String getPhoto(int index) {
+        checkIndex(index);
+        return mPhotos[index];
+    }
+
+    @Nullable
+    public String getCity(int index) {
+        checkIndex(index);
+        return mCities.get(mCityCodes[index]);
+    }
+
+    @Nullable
+    public String getCategory(int index) {
+        checkIndex(index);
+        return mCategories.get(mCategoryCodes[index]);
+    }
+
+    public int getPrice(int index) {
+        checkIndex(index);
+        return mPrices[index];
+    }
+
+    public int getNumRatings(int index) {
+        checkIndex(index);
+        return mNumRatings[index];
+    }
+
+    public double getAvgRating(int index) {
+        checkIndex(index);
+        return mAvgRatings[index];
+    }
+
+    /**
+     * Checks that the {@code index} is of a row held, as the arrays are larger than the rows.
+     */
+    private void checkIndex(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mSize);
+        }
+    }
+}
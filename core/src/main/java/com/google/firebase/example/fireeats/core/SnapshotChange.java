@@ -0,0 +1,52 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.core;
+
+/**
+ * A change to a Document in the results of a query, as reported by a snapshot listener.
+ * The indices are relative to the results of the query, after the previous changes of
+ * the same snapshot are applied, like those of {@code com.google.firebase.firestore.DocumentChange}.
+ *
+ * @param <D> The type of the Document snapshot.
+ */
+public interface SnapshotChange<D> {
+
+    /**
+     * Type of the change.
+     */
+    enum Type {
+        ADDED,
+        MODIFIED,
+        REMOVED
+    }
+
+    Type getType();
+
+    /**
+     * Returns the Document added or modified, or the last version of the Document removed.
+     */
+    D getDocument();
+
+    /**
+     * Returns the index of the Document before this change, or -1 when {@link Type#ADDED}.
+     */
+    int getOldIndex();
+
+    /**
+     * Returns the index of the Document after this change, or -1 when {@link Type#REMOVED}.
+     */
+    int getNewIndex();
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.core;
+
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Applies the {@link SnapshotChange}s of a query to the list of Document snapshots held,
+ * and records the item change events of each to a {@link ListUpdateSink}.
+ * <p>
+ * The list is owned by the caller, which may hold the snapshots of several pages of a query
+ * in it, hence every change is applied relative to the position of its page in the list.
+ *
+ * @param <D> The type of the Document snapshot.
+ */
+public final class SnapshotListEngine<D> {
+
+    /**
+     * Describes the change in content between two versions of a Document, to be carried by the
+     * item change event of a modified Document.
+     *
+     * @param <D> The type of the Document snapshot.
+     */
+    public interface PayloadFactory<D> {
+
+        /**
+         * Returns the payload of the change from the {@code oldDocument} to the
+         * {@code newDocument}, or {@code null} to rebind the item fully.
+         */
+        @Nullable
+        Object create(@NonNull D oldDocument, @NonNull D newDocument);
+    }
+
+    // The snapshots held, in the order shown
+    private final List<D> mSnapshots;
+    // The sink to record the item change events to
+    private final ListUpdateSink mSink;
+    // Creates the payloads of the modified Documents
+    private final PayloadFactory<D> mPayloadFactory;
+
+    /**
+     * Constructor of {@link SnapshotListEngine}
+     *
+     * @param snapshots      The list of snapshots to apply the changes to.
+     * @param sink           The {@link ListUpdateSink} to record the item change events to.
+     * @param payloadFactory The {@link PayloadFactory} of the modified Documents.
+     */
+    public SnapshotListEngine(@NonNull List<D> snapshots, @NonNull ListUpdateSink sink,
+                              @NonNull PayloadFactory<D> payloadFactory) {
+        mSnapshots = snapshots;
+        mSink = sink;
+        mPayloadFactory = payloadFactory;
+    }
+
+    /**
+     * Applies the {@code change} by its type.
+     *
+     * @param change The {@link SnapshotChange} to apply.
+     * @param offset The position in the list of the first Document of the page
+     *               that reported the {@code change}.
+     */
+    public void apply(@NonNull SnapshotChange<D> change, int offset) {
+        switch (change.getType()) {
+            case ADDED:
+                onAdded(change.getDocument(), offset + change.getNewIndex());
+                break;
+            case MODIFIED:
+                onModified(change.getDocument(), offset + change.getOldIndex(),
+                        offset + change.getNewIndex());
+                break;
+            case REMOVED:
+                onRemoved(offset + change.getOldIndex());
+                break;
+        }
+    }
+
+    /**
+     * Adds the new {@code document} at the position {@code newIndex}, and records
+     * an item insertion event there.
+     */
+    public void onAdded(@NonNull D document, int newIndex) {
+        mSnapshots.add(newIndex, document);
+        mSink.onInserted(newIndex, 1);
+    }
+
+    /**
+     * Replaces the Document at the position {@code oldIndex} with its new version.
+     * 1. When only the content has changed, the snapshot is updated in place, and an item change
+     * event is recorded for the position.
+     * 2. When the position has changed as well, the old snapshot is removed and the new snapshot
+     * is added at the {@code newIndex}, and an item moved event is recorded, followed by
+     * an item change event at the {@code newIndex} to rebind the moved item with its new content.
+     * <p>
+     * The item change events carry the payload of the change in content.
+     */
+    public void onModified(@NonNull D document, int oldIndex, int newIndex) {
+        Object payload = mPayloadFactory.create(mSnapshots.get(oldIndex), document);
+
+        if (oldIndex == newIndex) {
+            // When there is a change in content only
+            mSnapshots.set(oldIndex, document);
+            mSink.onChanged(oldIndex, 1, payload);
+        } else {
+            // When there is a change in content and position
+            mSnapshots.remove(oldIndex);
+            mSnapshots.add(newIndex, document);
+            mSink.onMoved(oldIndex, newIndex);
+            mSink.onChanged(newIndex, 1, payload);
+        }
+    }
+
+    /**
+     * Removes the Document at the position {@code oldIndex}, and records an item removed
+     * event there.
+     *
+     * @return The snapshot removed.
+     */
+    public D onRemoved(int oldIndex) {
+        D removed = mSnapshots.remove(oldIndex);
+        mSink.onRemoved(oldIndex, 1);
+        return removed;
+    }
+}
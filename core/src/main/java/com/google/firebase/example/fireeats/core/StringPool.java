@@ -0,0 +1,80 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Interns the strings of a small vocabulary, such as the cities or the categories of the
+ * restaurants, to {@code int} codes, so that each distinct string is held only once however
+ * many rows refer to it.
+ */
+public final class StringPool {
+
+    // Code of the null string
+    public static final int NULL_CODE = -1;
+
+    // Codes of the strings interned, keyed by the strings
+    private final HashMap<String, Integer> mCodes = new HashMap<>();
+    // Strings interned, indexed by their codes
+    private final ArrayList<String> mStrings = new ArrayList<>();
+
+    /**
+     * Returns the code of the {@code string}, interning it if not seen yet.
+     *
+     * @param string The string to intern, or {@code null}.
+     * @return The code of the {@code string}, or {@link #NULL_CODE} when {@code null}.
+     */
+    public int intern(@Nullable String string) {
+        if (string == null) {
+            return NULL_CODE;
+        }
+
+        Integer code = mCodes.get(string);
+        if (code == null) {
+            code = mStrings.size();
+            mCodes.put(string, code);
+            mStrings.add(string);
+        }
+        return code;
+    }
+
+    /**
+     * Returns the string of the {@code code}, or {@code null} for {@link #NULL_CODE}.
+     */
+    @Nullable
+    public String get(int code) {
+        return code == NULL_CODE ? null : mStrings.get(code);
+    }
+
+    /**
+     * Returns the number of distinct strings interned.
+     */
+    public int size() {
+        return mStrings.size();
+    }
+
+    /**
+     * Removes all the strings interned.
+     */
+    public void clear() {
+        mCodes.clear();
+        mStrings.clear();
+    }
+}
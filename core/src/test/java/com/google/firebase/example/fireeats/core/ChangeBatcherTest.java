@@ -0,0 +1,364 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import androidx.annotation.Nullable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the {@link ChangeBatcher}, counting the notifications it dispatches for bursts
+ * of item change events.
+ */
+public class ChangeBatcherTest {
+
+    // Threshold high enough for the bursts below to be dispatched as ranges
+    private static final int THRESHOLD = 100;
+
+    private RecordingSink mSink;
+    private ChangeBatcher mBatcher;
+
+    @Before
+    public void setUp() {
+        mSink = new RecordingSink();
+        mBatcher = new ChangeBatcher(mSink, mSink::onDataSetChanged, THRESHOLD);
+    }
+
+    @Test
+    public void adjacentInserts_mergeIntoOneRange() {
+        mBatcher.onInserted(0, 1);
+        mBatcher.onInserted(1, 1);
+        mBatcher.onInserted(2, 2);
+        mBatcher.dispatch();
+
+        assertEquals(Collections.singletonList("inserted(0, 4)"), mSink.mEvents);
+    }
+
+    @Test
+    public void insertsWithinRange_growTheRange() {
+        mBatcher.onInserted(5, 3);
+        mBatcher.onInserted(6, 1);
+        mBatcher.onInserted(5, 1);
+        mBatcher.dispatch();
+
+        assertEquals(Collections.singletonList("inserted(5, 5)"), mSink.mEvents);
+    }
+
+    @Test
+    public void distantInserts_staySeparate() {
+        mBatcher.onInserted(0, 1);
+        mBatcher.onInserted(2, 1);
+        mBatcher.dispatch();
+
+        assertEquals(Arrays.asList("inserted(0, 1)", "inserted(2, 1)"), mSink.mEvents);
+    }
+
+    @Test
+    public void removesAtSamePosition_mergeIntoOneRange() {
+        mBatcher.onRemoved(3, 1);
+        mBatcher.onRemoved(3, 1);
+        mBatcher.onRemoved(3, 2);
+        mBatcher.dispatch();
+
+        assertEquals(Collections.singletonList("removed(3, 4)"), mSink.mEvents);
+    }
+
+    @Test
+    public void removesRightBefore_mergeIntoOneRange() {
+        mBatcher.onRemoved(5, 1);
+        mBatcher.onRemoved(4, 1);
+        mBatcher.onRemoved(2, 2);
+        mBatcher.dispatch();
+
+        assertEquals(Collections.singletonList("removed(2, 4)"), mSink.mEvents);
+    }
+
+    @Test
+    public void removesAfterRange_staySeparate() {
+        mBatcher.onRemoved(2, 1);
+        mBatcher.onRemoved(3, 1);
+        mBatcher.dispatch();
+
+        assertEquals(Arrays.asList("removed(2, 1)", "removed(3, 1)"), mSink.mEvents);
+    }
+
+    @Test
+    public void overlappingChanges_withSamePayload_mergeIntoOneRange() {
+        mBatcher.onChanged(2, 1, "rating");
+        mBatcher.onChanged(3, 2, "rating");
+        mBatcher.onChanged(1, 1, "rating");
+        mBatcher.onChanged(2, 1, "rating");
+        mBatcher.dispatch();
+
+        assertEquals(Collections.singletonList("changed(1, 4, rating)"), mSink.mEvents);
+    }
+
+    @Test
+    public void adjacentChanges_withOtherPayloads_staySeparate() {
+        mBatcher.onChanged(2, 1, "rating");
+        mBatcher.onChanged(3, 1, "photo");
+        mBatcher.onChanged(4, 1, null);
+        mBatcher.dispatch();
+
+        assertEquals(Arrays.asList("changed(2, 1, rating)", "changed(3, 1, photo)",
+                "changed(4, 1, null)"), mSink.mEvents);
+    }
+
+    @Test
+    public void moves_neverMerge() {
+        mBatcher.onMoved(0, 1);
+        mBatcher.onMoved(1, 2);
+        mBatcher.dispatch();
+
+        assertEquals(Arrays.asList("moved(0, 1)", "moved(1, 2)"), mSink.mEvents);
+    }
+
+    @Test
+    public void eventsOfOtherTypes_breakTheRanges() {
+        mBatcher.onInserted(0, 1);
+        mBatcher.onChanged(1, 1, null);
+        mBatcher.onInserted(1, 1);
+        mBatcher.dispatch();
+
+        assertEquals(Arrays.asList("inserted(0, 1)", "changed(1, 1, null)", "inserted(1, 1)"),
+                mSink.mEvents);
+    }
+
+    @Test
+    public void rangesOverThreshold_dispatchOneDataSetChange() {
+        mBatcher.setThreshold(2);
+        mBatcher.onInserted(0, 1);
+        mBatcher.onMoved(4, 6);
+        mBatcher.onRemoved(8, 1);
+        mBatcher.dispatch();
+
+        assertEquals(Collections.singletonList("dataSetChanged"), mSink.mEvents);
+    }
+
+    @Test
+    public void rangesAtThreshold_dispatchRanges() {
+        mBatcher.setThreshold(2);
+        mBatcher.onInserted(0, 1);
+        mBatcher.onInserted(1, 1);
+        mBatcher.onMoved(4, 6);
+        mBatcher.dispatch();
+
+        assertEquals(Arrays.asList("inserted(0, 2)", "moved(4, 6)"), mSink.mEvents);
+    }
+
+    @Test
+    public void dispatch_startsTheNextBurst() {
+        mBatcher.onInserted(0, 1);
+        mBatcher.dispatch();
+        mBatcher.dispatch();
+        mBatcher.onInserted(1, 1);
+        mBatcher.dispatch();
+
+        // Not merged with the insert of the previous burst
+        assertEquals(Arrays.asList("inserted(0, 1)", "inserted(1, 1)"), mSink.mEvents);
+    }
+
+    @Test
+    public void clear_discardsTheBurst() {
+        mBatcher.onInserted(0, 1);
+        mBatcher.onRemoved(3, 1);
+        mBatcher.clear();
+        mBatcher.dispatch();
+
+        assertTrue(mSink.mEvents.isEmpty());
+    }
+
+    /**
+     * Replays synthetic streams of random events, and checks that the batched notifications
+     * lead to the same list as the events one by one, with no more notifications.
+     */
+    @Test
+    public void syntheticStreams_batchToEquivalentNotifications() {
+        for (long seed = 0; seed < 200; seed++) {
+            Random random = new Random(seed);
+            List<String> expected = newList(20);
+            List<String> actual = newList(20);
+            RecordingSink unbatched = new RecordingSink();
+            mSink.mEvents.clear();
+
+            int burstSize = 1 + random.nextInt(30);
+            for (int i = 0; i < burstSize; i++) {
+                recordRandomEvent(random, expected, unbatched);
+            }
+            mBatcher.dispatch();
+            replay(mSink.mEvents, actual);
+
+            assertEquals("seed " + seed, expected, actual);
+            assertTrue("seed " + seed, mSink.mEvents.size() <= unbatched.mEvents.size());
+        }
+    }
+
+    @Test
+    public void syntheticStreams_ofAdjacentEvents_batchToOneNotification() {
+        Random random = new Random(42);
+        for (int burst = 0; burst < 50; burst++) {
+            int position = random.nextInt(10);
+            int count = 1 + random.nextInt(20);
+            mSink.mEvents.clear();
+            switch (burst % 3) {
+                case 0:
+                    // Appending one after the other
+                    for (int i = 0; i < count; i++) {
+                        mBatcher.onInserted(position + i, 1);
+                    }
+                    break;
+                case 1:
+                    // Removing from the same position
+                    for (int i = 0; i < count; i++) {
+                        mBatcher.onRemoved(position, 1);
+                    }
+                    break;
+                default:
+                    // Changing in any order
+                    for (int i = count - 1; i >= 0; i--) {
+                        mBatcher.onChanged(position + i, 1, "payload");
+                    }
+                    break;
+            }
+            mBatcher.dispatch();
+
+            assertEquals(1, mSink.mEvents.size());
+        }
+    }
+
+    /**
+     * Applies a random valid event to the {@code list}, and records it into the batcher
+     * and the {@code unbatched} sink.
+     */
+    private void recordRandomEvent(Random random, List<String> list, RecordingSink unbatched) {
+        int kind = list.size() < 2 ? 0 : random.nextInt(4);
+        switch (kind) {
+            case 0: {
+                // Mostly next to the previous events, for them to merge
+                int position = random.nextInt(Math.min(list.size(), 3) + 1);
+                int count = 1 + random.nextInt(2);
+                mBatcher.onInserted(position, count);
+                unbatched.onInserted(position, count);
+                break;
+            }
+            case 1: {
+                int position = random.nextInt(Math.min(list.size(), 3));
+                int count = 1 + random.nextInt(Math.min(2, list.size() - position));
+                mBatcher.onRemoved(position, count);
+                unbatched.onRemoved(position, count);
+                break;
+            }
+            case 2: {
+                int position = random.nextInt(list.size());
+                Object payload = random.nextBoolean() ? "payload" : null;
+                mBatcher.onChanged(position, 1, payload);
+                unbatched.onChanged(position, 1, payload);
+                break;
+            }
+            default: {
+                int from = random.nextInt(list.size());
+                int to = random.nextInt(list.size());
+                mBatcher.onMoved(from, to);
+                unbatched.onMoved(from, to);
+                break;
+            }
+        }
+        replay(unbatched.mEvents.subList(unbatched.mEvents.size() - 1, unbatched.mEvents.size()),
+                list);
+    }
+
+    /**
+     * Returns a list of {@code size} distinct rows.
+     */
+    private static List<String> newList(int size) {
+        List<String> list = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            list.add("row" + i);
+        }
+        return list;
+    }
+
+    /**
+     * Applies the recorded {@code events} to the {@code list}, where inserted rows
+     * are all alike, and changed rows are marked.
+     */
+    private static void replay(List<String> events, List<String> list) {
+        for (String event : events) {
+            String[] args = event.substring(event.indexOf('(') + 1, event.length() - 1)
+                    .split(", ");
+            int first = Integer.parseInt(args[0]);
+            int second = Integer.parseInt(args[1]);
+            if (event.startsWith("inserted")) {
+                for (int i = 0; i < second; i++) {
+                    list.add(first, "new");
+                }
+            } else if (event.startsWith("removed")) {
+                list.subList(first, first + second).clear();
+            } else if (event.startsWith("moved")) {
+                list.add(second, list.remove(first));
+            } else if (event.startsWith("changed")) {
+                for (int i = first; i < first + second; i++) {
+                    if (!list.get(i).endsWith("*")) {
+                        list.set(i, list.get(i) + "*");
+                    }
+                }
+            } else {
+                throw new AssertionError("Unexpected event " + event);
+            }
+        }
+    }
+
+    /**
+     * {@link ListUpdateSink} recording the notifications it receives.
+     */
+    private static final class RecordingSink implements ListUpdateSink {
+        private final List<String> mEvents = new ArrayList<>();
+
+        @Override
+        public void onInserted(int position, int count) {
+            mEvents.add("inserted(" + position + ", " + count + ")");
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            mEvents.add("removed(" + position + ", " + count + ")");
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            mEvents.add("moved(" + fromPosition + ", " + toPosition + ")");
+        }
+
+        @Override
+        public void onChanged(int position, int count, @Nullable Object payload) {
+            mEvents.add("changed(" + position + ", " + count + ", " + payload + ")");
+        }
+
+        void onDataSetChanged() {
+            mEvents.add("dataSetChanged");
+        }
+    }
+}
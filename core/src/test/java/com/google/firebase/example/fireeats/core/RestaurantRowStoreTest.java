@@ -0,0 +1,181 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the {@link RestaurantRowStore}, for the rows held, and the heap retained per row
+ * against the field maps of the Document snapshots it replaces.
+ */
+public class RestaurantRowStoreTest {
+
+    // Number of rows measured, for the heap of a row to stand out of the noise of the heap
+    private static final int MEASURED_ROWS = 50_000;
+
+    private static final String[] CITIES = {"Albuquerque", "Arlington", "Atlanta", "Austin",
+            "Baltimore", "Boston", "Charlotte", "Chicago", "Cleveland", "Colorado Springs"};
+    private static final String[] CATEGORIES = {"Brunch", "Burgers", "Coffee", "Deli",
+            "Dim Sum", "Indian", "Italian", "Mediterranean", "Mexican", "Pizza", "Ramen", "Sushi"};
+
+    // Sink of the rows held, for them not to be collected before they are measured
+    private static volatile Object sSink;
+
+    @Test
+    public void append_holdsTheFieldsOfTheRows() {
+        RestaurantRowStore store = new RestaurantRowStore();
+        assertEquals(0, store.append("id0", "Best Pizza", "photo0", "Austin", "Pizza", 2, 10, 4.5));
+        assertEquals(1, store.append("id1", null, null, null, null, 0, 0, 0));
+
+        assertEquals(2, store.size());
+        assertEquals("id0", store.getId(0));
+        assertEquals("Best Pizza", store.getName(0));
+        assertEquals("photo0", store.getPhoto(0));
+        assertEquals("Austin", store.getCity(0));
+        assertEquals("Pizza", store.getCategory(0));
+        assertEquals(2, store.getPrice(0));
+        assertEquals(10, store.getNumRatings(0));
+        assertEquals(4.5, store.getAvgRating(0), 0);
+        assertNull(store.getName(1));
+        assertNull(store.getCity(1));
+        assertNull(store.getCategory(1));
+    }
+
+    @Test
+    public void append_growsAndInternsTheVocabularies() {
+        RestaurantRowStore store = new RestaurantRowStore();
+        for (int i = 0; i < 1000; i++) {
+            store.append("id" + i, "name" + i, null, new String(CITIES[i % CITIES.length]),
+                    CATEGORIES[i % CATEGORIES.length], i % 3 + 1, i, i % 5);
+        }
+
+        assertEquals(1000, store.size());
+        assertEquals("id999", store.getId(999));
+        assertEquals(999, store.getNumRatings(999));
+        // Equal cities are held once
+        assertSame(store.getCity(0), store.getCity(CITIES.length));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void get_beyondTheRows_throws() {
+        RestaurantRowStore store = new RestaurantRowStore();
+        store.append("id0", "name", null, null, null, 1, 0, 0);
+        store.getId(1);
+    }
+
+    @Test
+    public void clear_removesAllTheRows() {
+        RestaurantRowStore store = new RestaurantRowStore();
+        store.append("id0", "name", null, "Austin", "Pizza", 1, 0, 0);
+        store.clear();
+
+        assertEquals(0, store.size());
+        assertEquals(0, store.append("id1", "name", null, "Boston", "Sushi", 1, 0, 0));
+        assertEquals("Boston", store.getCity(0));
+    }
+
+    /**
+     * Measures the heap retained by the rows held as the field maps of their Document snapshots,
+     * with the numbers boxed and the strings distinct per row as deserialized, and then by the
+     * same rows in a store, which is expected to retain less than half of it.
+     */
+    @Test
+    public void heapPerRow_isLessThanHalfOfTheFieldMaps() {
+        Random random = new Random(42);
+        long baseline = getUsedHeap();
+
+        // Hold the rows as field maps
+        List<Map<String, Object>> documents = new ArrayList<>(MEASURED_ROWS);
+        List<String> ids = new ArrayList<>(MEASURED_ROWS);
+        for (int i = 0; i < MEASURED_ROWS; i++) {
+            documents.add(newFields(random));
+            ids.add(newId(random));
+        }
+        sSink = documents;
+        long mapBytes = getUsedHeap() - baseline;
+
+        // Hold the same rows in a store, releasing the maps
+        RestaurantRowStore store = new RestaurantRowStore();
+        for (int i = 0; i < MEASURED_ROWS; i++) {
+            Map<String, Object> fields = documents.get(i);
+            store.append(ids.get(i), (String) fields.get("name"), (String) fields.get("photo"),
+                    (String) fields.get("city"), (String) fields.get("category"),
+                    ((Long) fields.get("price")).intValue(),
+                    ((Long) fields.get("numRatings")).intValue(),
+                    (Double) fields.get("avgRating"));
+        }
+        documents.clear();
+        sSink = store;
+        long storeBytes = getUsedHeap() - baseline;
+        sSink = null;
+
+        assertTrue("Heap per row: field maps " + mapBytes / MEASURED_ROWS + " bytes, store "
+                + storeBytes / MEASURED_ROWS + " bytes", storeBytes * 2 < mapBytes);
+    }
+
+    /**
+     * Returns the fields of a random Restaurant, as deserialized from a Document snapshot.
+     */
+    private static Map<String, Object> newFields(Random random) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("name", "Restaurant " + random.nextInt(1000));
+        fields.put("photo", "https://storage.googleapis.com/firestorequickstarts.appspot.com/food_"
+                + (1 + random.nextInt(22)) + ".png");
+        // Distinct copies, as deserialized per Document
+        fields.put("city", new String(CITIES[random.nextInt(CITIES.length)]));
+        fields.put("category", new String(CATEGORIES[random.nextInt(CATEGORIES.length)]));
+        // Boxed, as the numbers are deserialized
+        fields.put("price", (long) (1 + random.nextInt(3)));
+        fields.put("numRatings", (long) random.nextInt(1000));
+        fields.put("avgRating", random.nextDouble() * 5);
+        return fields;
+    }
+
+    /**
+     * Returns a random Document ID, like the auto IDs of Firestore.
+     */
+    private static String newId(Random random) {
+        String chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+        StringBuilder id = new StringBuilder(20);
+        for (int i = 0; i < 20; i++) {
+            id.append(chars.charAt(random.nextInt(chars.length())));
+        }
+        return id.toString();
+    }
+
+    /**
+     * Returns the bytes of the Java heap in use, after collecting the garbage.
+     */
+    private static long getUsedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            System.runFinalization();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,380 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests of the {@link SnapshotListEngine}, for the order of the snapshots held, the changes
+ * of the pages held after the first, and the events merged by the {@link ChangeBatcher}.
+ */
+public class SnapshotListEngineTest {
+
+    private ArrayList<Doc> mSnapshots;
+    private List<String> mEvents;
+    private ChangeBatcher mBatcher;
+    private SnapshotListEngine<Doc> mEngine;
+
+    @Before
+    public void setUp() {
+        mSnapshots = new ArrayList<>();
+        mEvents = new ArrayList<>();
+        mBatcher = new ChangeBatcher(new RecordingSink(mEvents), () -> mEvents.add("dataSetChanged"),
+                Integer.MAX_VALUE);
+        // The payload names the field changed, if the score
+        mEngine = new SnapshotListEngine<>(mSnapshots, mBatcher,
+                (oldDoc, newDoc) -> oldDoc.mScore != newDoc.mScore ? "score" : null);
+    }
+
+    @Test
+    public void firstSnapshot_addsInOrder_asOneInsert() {
+        apply(0, added(doc("a", 3), 0), added(doc("b", 2), 1), added(doc("c", 1), 2));
+
+        assertEquals(Arrays.asList("a", "b", "c"), ids());
+        assertEquals(Collections.singletonList("inserted(0, 3)"), mEvents);
+    }
+
+    @Test
+    public void modified_inPlace_replacesWithPayload() {
+        apply(0, added(doc("a", 3), 0), added(doc("b", 2), 1));
+        mEvents.clear();
+
+        Doc newB = doc("b", 2).next();
+        apply(0, modified(newB, 1, 1));
+
+        assertSame(newB, mSnapshots.get(1));
+        assertEquals(Collections.singletonList("changed(1, 1, null)"), mEvents);
+    }
+
+    @Test
+    public void modified_moved_reordersAndRebindsAtNewIndex() {
+        apply(0, added(doc("a", 3), 0), added(doc("b", 2), 1), added(doc("c", 1), 2));
+        mEvents.clear();
+
+        // "c" is rated up to first
+        apply(0, modified(doc("c", 4), 2, 0));
+
+        assertEquals(Arrays.asList("c", "a", "b"), ids());
+        assertEquals(Arrays.asList("moved(2, 0)", "changed(0, 1, score)"), mEvents);
+    }
+
+    @Test
+    public void removed_returnsTheSnapshotRemoved() {
+        Doc b = doc("b", 2);
+        apply(0, added(doc("a", 3), 0), added(b, 1), added(doc("c", 1), 2));
+        mEvents.clear();
+
+        assertSame(b, mEngine.onRemoved(1));
+        mBatcher.dispatch();
+
+        assertEquals(Arrays.asList("a", "c"), ids());
+        assertEquals(Collections.singletonList("removed(1, 1)"), mEvents);
+    }
+
+    @Test
+    public void changesOfLaterPage_applyAtItsOffset() {
+        // First page of two, and second page of two
+        apply(0, added(doc("a", 9), 0), added(doc("b", 8), 1));
+        apply(2, added(doc("c", 5), 0), added(doc("d", 4), 1));
+        assertEquals(Arrays.asList("inserted(0, 2)", "inserted(2, 2)"), mEvents);
+        mEvents.clear();
+
+        // In the second page, "e" is added between "c" and "d", and "c" is removed
+        apply(2, added(doc("e", 5), 1), removed(doc("c", 5), 0));
+
+        assertEquals(Arrays.asList("a", "b", "e", "d"), ids());
+        assertEquals(Arrays.asList("inserted(3, 1)", "removed(2, 1)"), mEvents);
+    }
+
+    @Test
+    public void changesOfLaterPage_leaveEarlierPagesInOrder() {
+        apply(0, added(doc("a", 9), 0), added(doc("b", 8), 1));
+        apply(2, added(doc("c", 5), 0), added(doc("d", 4), 1), added(doc("e", 3), 2));
+        mEvents.clear();
+
+        // In the second page, "e" moves first
+        apply(2, modified(doc("e", 6), 2, 0));
+
+        assertEquals(Arrays.asList("a", "b", "e", "c", "d"), ids());
+        assertEquals(Arrays.asList("moved(4, 2)", "changed(2, 1, score)"), mEvents);
+    }
+
+    @Test
+    public void removalsFromTop_mergeIntoOneRange() {
+        apply(0, added(doc("a", 5), 0), added(doc("b", 4), 1), added(doc("c", 3), 2),
+                added(doc("d", 2), 3));
+        mEvents.clear();
+
+        apply(0, removed(doc("a", 5), 0), removed(doc("b", 4), 0), removed(doc("c", 3), 0));
+
+        assertEquals(Collections.singletonList("d"), ids());
+        assertEquals(Collections.singletonList("removed(0, 3)"), mEvents);
+    }
+
+    @Test
+    public void contentChangesOfAdjacentRows_mergeIntoOneRange() {
+        apply(0, added(doc("a", 5), 0), added(doc("b", 4), 1), added(doc("c", 3), 2));
+        mEvents.clear();
+
+        // New versions of the same scores, such as renamed
+        apply(0, modified(doc("a", 5).next(), 0, 0), modified(doc("b", 4).next(), 1, 1),
+                modified(doc("c", 3).next(), 2, 2));
+
+        assertEquals(Collections.singletonList("changed(0, 3, null)"), mEvents);
+    }
+
+    /**
+     * Applies random re-scorings, additions and removals to a list sorted by score, one
+     * snapshot at a time as a query listener would report them, and checks that the snapshots
+     * held follow the query, and the events dispatched lead to the same rows.
+     */
+    @Test
+    public void randomSnapshots_followTheSortedQuery() {
+        for (long seed = 0; seed < 100; seed++) {
+            setUp();
+            Random random = new Random(seed);
+            List<Doc> query = new ArrayList<>();
+            int nextId = 0;
+            for (int snapshot = 0; snapshot < 20; snapshot++) {
+                // Rows before the snapshot, to replay its events on
+                List<String> rows = ids();
+                mEvents.clear();
+
+                List<SnapshotChange<Doc>> changes = new ArrayList<>();
+                int changeCount = 1 + random.nextInt(8);
+                for (int i = 0; i < changeCount; i++) {
+                    int kind = query.isEmpty() ? 0 : random.nextInt(3);
+                    if (kind == 0) {
+                        Doc doc = doc("doc" + nextId++, random.nextInt(50));
+                        changes.add(added(doc, insertSorted(query, doc)));
+                    } else if (kind == 1) {
+                        int oldIndex = random.nextInt(query.size());
+                        Doc doc = query.remove(oldIndex).withScore(random.nextInt(50));
+                        changes.add(modified(doc, oldIndex, insertSorted(query, doc)));
+                    } else {
+                        int oldIndex = random.nextInt(query.size());
+                        changes.add(removed(query.remove(oldIndex), oldIndex));
+                    }
+                }
+                apply(0, changes);
+
+                assertEquals("seed " + seed, idsOf(query), ids());
+                replay(mEvents, rows);
+                assertEquals("seed " + seed, ids().size(), rows.size());
+                for (int i = 0; i < rows.size(); i++) {
+                    if (!rows.get(i).equals("new")) {
+                        assertEquals("seed " + seed + " at " + i, ids().get(i), rows.get(i));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies the changes of a snapshot of the page at the {@code offset}, and dispatches
+     * the events merged.
+     */
+    @SafeVarargs
+    private final void apply(int offset, SnapshotChange<Doc>... changes) {
+        for (SnapshotChange<Doc> change : changes) {
+            mEngine.apply(change, offset);
+        }
+        mBatcher.dispatch();
+    }
+
+    /**
+     * Applies the {@code changes} of a snapshot of the page at the {@code offset}, and dispatches
+     * the events merged.
+     */
+    private void apply(int offset, List<SnapshotChange<Doc>> changes) {
+        for (SnapshotChange<Doc> change : changes) {
+            mEngine.apply(change, offset);
+        }
+        mBatcher.dispatch();
+    }
+
+    /**
+     * Inserts the {@code doc} into the {@code query} sorted by descending score, after the
+     * other Documents of the same score, and returns its index.
+     */
+    private static int insertSorted(List<Doc> query, Doc doc) {
+        int index = 0;
+        while (index < query.size() && query.get(index).mScore >= doc.mScore) {
+            index++;
+        }
+        query.add(index, doc);
+        return index;
+    }
+
+    private List<String> ids() {
+        return idsOf(mSnapshots);
+    }
+
+    private static List<String> idsOf(List<Doc> docs) {
+        List<String> ids = new ArrayList<>();
+        for (Doc doc : docs) {
+            ids.add(doc.mId);
+        }
+        return ids;
+    }
+
+    /**
+     * Applies the recorded {@code events} to the {@code rows}, where inserted rows are all alike.
+     */
+    private static void replay(List<String> events, List<String> rows) {
+        for (String event : events) {
+            String[] args = event.substring(event.indexOf('(') + 1, event.length() - 1)
+                    .split(", ");
+            int first = Integer.parseInt(args[0]);
+            int second = Integer.parseInt(args[1]);
+            if (event.startsWith("inserted")) {
+                for (int i = 0; i < second; i++) {
+                    rows.add(first, "new");
+                }
+            } else if (event.startsWith("removed")) {
+                rows.subList(first, first + second).clear();
+            } else if (event.startsWith("moved")) {
+                rows.add(second, rows.remove(first));
+            }
+        }
+    }
+
+    private static Doc doc(String id, int score) {
+        return new Doc(id, score, 0);
+    }
+
+    private static SnapshotChange<Doc> added(Doc doc, int newIndex) {
+        return new Change(SnapshotChange.Type.ADDED, doc, -1, newIndex);
+    }
+
+    private static SnapshotChange<Doc> modified(Doc doc, int oldIndex, int newIndex) {
+        return new Change(SnapshotChange.Type.MODIFIED, doc, oldIndex, newIndex);
+    }
+
+    private static SnapshotChange<Doc> removed(Doc doc, int oldIndex) {
+        return new Change(SnapshotChange.Type.REMOVED, doc, oldIndex, -1);
+    }
+
+    /**
+     * Immutable Document of a query sorted by score.
+     */
+    private static final class Doc {
+        private final String mId;
+        private final int mScore;
+        private final int mVersion;
+
+        Doc(String id, int score, int version) {
+            mId = id;
+            mScore = score;
+            mVersion = version;
+        }
+
+        /**
+         * Returns the next version of this Document, with the same score.
+         */
+        Doc next() {
+            return new Doc(mId, mScore, mVersion + 1);
+        }
+
+        Doc withScore(int score) {
+            return new Doc(mId, score, mVersion + 1);
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return mId + "@" + mScore;
+        }
+    }
+
+    private static final class Change implements SnapshotChange<Doc> {
+        private final Type mType;
+        private final Doc mDocument;
+        private final int mOldIndex;
+        private final int mNewIndex;
+
+        Change(Type type, Doc document, int oldIndex, int newIndex) {
+            mType = type;
+            mDocument = document;
+            mOldIndex = oldIndex;
+            mNewIndex = newIndex;
+        }
+
+        @Override
+        public Type getType() {
+            return mType;
+        }
+
+        @Override
+        public Doc getDocument() {
+            return mDocument;
+        }
+
+        @Override
+        public int getOldIndex() {
+            return mOldIndex;
+        }
+
+        @Override
+        public int getNewIndex() {
+            return mNewIndex;
+        }
+    }
+
+    /**
+     * {@link ListUpdateSink} recording the notifications it receives.
+     */
+    private static final class RecordingSink implements ListUpdateSink {
+        private final List<String> mEvents;
+
+        RecordingSink(List<String> events) {
+            mEvents = events;
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            mEvents.add("inserted(" + position + ", " + count + ")");
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            mEvents.add("removed(" + position + ", " + count + ")");
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            mEvents.add("moved(" + fromPosition + ", " + toPosition + ")");
+        }
+
+        @Override
+        public void onChanged(int position, int count, @Nullable Object payload) {
+            mEvents.add("changed(" + position + ", " + count + ", " + payload + ")");
+        }
+    }
+}
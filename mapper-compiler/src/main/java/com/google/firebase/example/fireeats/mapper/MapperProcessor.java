@@ -0,0 +1,621 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.firebase.example.fireeats.mapper;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Annotation processor that generates a mapper class for every Firestore model annotated with
+ * {@code @IgnoreExtraProperties}, named after the model with the suffix {@value #MAPPER_SUFFIX},
+ * in the package of the model.
+ * <p>
+ * The mapper reads and writes the bean properties of the model directly, in place of the
+ * reflection of {@code DocumentSnapshot#toObject(Class)} and of the writes of a POJO:
+ * <ul>
+ * <li>{@code fromSnapshot(DocumentSnapshot)} creates the model from a Document, setting only the
+ * properties present in the Document, or returns {@code null} when the Document does not exist.</li>
+ * <li>{@code toMap(model)} returns the field values of the model, to be written to a Document.</li>
+ * </ul>
+ * Like the reflective mapper of Firestore, the properties are the public getters and the public
+ * instance fields of the model, named by {@code @PropertyName} if present, and skipping those
+ * annotated with {@code @Exclude}. A {@code Date} or {@code Timestamp} property annotated with
+ * {@code @ServerTimestamp}, on its getter or field, is written as the server timestamp when
+ * {@code null}. Properties without a public setter nor a public non-final field are only written.
+ * <p>
+ * Numbers are read into the numeric properties with the checks of the reflective mapper: an
+ * {@code IllegalArgumentException} is thrown for a value out of the range of the property, or a
+ * {@code long} that a {@code double} cannot represent exactly. Unlike the reflective mapper,
+ * a fractional value read into an integer property is an error too, rather than truncated.
+ */
+public class MapperProcessor extends AbstractProcessor {
+
+    // Suffix of the generated mapper classes
+    static final String MAPPER_SUFFIX = "Mapper";
+
+    // Annotations of Firestore, referenced by name as the processor does not depend on Android
+    private static final String FIRESTORE = "com.google.firebase.firestore.";
+    private static final String IGNORE_EXTRA_PROPERTIES = FIRESTORE + "IgnoreExtraProperties";
+    private static final String EXCLUDE = FIRESTORE + "Exclude";
+    private static final String PROPERTY_NAME = FIRESTORE + "PropertyName";
+    private static final String SERVER_TIMESTAMP = FIRESTORE + "ServerTimestamp";
+
+    private static final String DATE = "java.util.Date";
+    private static final String TIMESTAMP = "com.google.firebase.Timestamp";
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(IGNORE_EXTRA_PROPERTIES);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement annotation = processingEnv.getElementUtils()
+                .getTypeElement(IGNORE_EXTRA_PROPERTIES);
+        if (annotation == null) {
+            // Firestore is not on the classpath
+            return false;
+        }
+
+        for (TypeElement model : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(annotation))) {
+            if (isMappable(model)) {
+                try {
+                    writeMapper(model, getProperties(model));
+                } catch (IOException e) {
+                    error(model, "Unable to write the mapper of " + model + ": " + e.getMessage());
+                }
+            }
+        }
+
+        // Leave the annotation to other processors
+        return false;
+    }
+
+    /**
+     * Checks if the {@code model} is a public top-level class with a public no-arg constructor,
+     * reporting an error otherwise.
+     */
+    private boolean isMappable(TypeElement model) {
+        if (!model.getModifiers().contains(Modifier.PUBLIC)
+                || model.getModifiers().contains(Modifier.ABSTRACT)
+                || !(model.getEnclosingElement() instanceof PackageElement)) {
+            error(model, "Firestore model must be a public, concrete, top-level class");
+            return false;
+        }
+
+        for (ExecutableElement constructor
+                : ElementFilter.constructorsIn(model.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty()
+                    && constructor.getModifiers().contains(Modifier.PUBLIC)) {
+                return true;
+            }
+        }
+
+        error(model, "Firestore model must have a public no-arg constructor");
+        return false;
+    }
+
+    /**
+     * Collects the properties of the {@code model} from its public getters and public fields,
+     * and those of its superclasses, in the order declared.
+     */
+    private List<Property> getProperties(TypeElement model) {
+        // Properties by their bean names, where the subclass overrides the superclass
+        Map<String, Property> properties = new LinkedHashMap<>();
+        List<TypeElement> hierarchy = new ArrayList<>();
+        for (TypeElement type = model; type != null; type = getSuperclass(type)) {
+            hierarchy.add(0, type);
+        }
+
+        for (TypeElement type : hierarchy) {
+            for (ExecutableElement getter : ElementFilter.methodsIn(type.getEnclosedElements())) {
+                String beanName = getBeanName(getter);
+                if (beanName == null || hasAnnotation(getter, EXCLUDE)) {
+                    continue;
+                }
+
+                VariableElement field = findField(type, beanName);
+                if (field != null && hasAnnotation(field, EXCLUDE)) {
+                    continue;
+                }
+
+                String name = getPropertyName(getter);
+                if (name == null && field != null) {
+                    name = getPropertyName(field);
+                }
+
+                Property property = new Property();
+                property.mName = name != null ? name : beanName;
+                property.mType = getter.getReturnType();
+                property.mGetter = getter.getSimpleName().toString();
+                property.mSetter = findSetter(model, beanName, property.mType);
+                property.mServerTimestamp = hasAnnotation(getter, SERVER_TIMESTAMP)
+                        || (field != null && hasAnnotation(field, SERVER_TIMESTAMP));
+                checkServerTimestamp(getter, property);
+                Property overridden = properties.put(beanName, property);
+                if (overridden != null) {
+                    // Keep the public field of the superclass, to be set with no setter
+                    property.mField = overridden.mField;
+                    property.mFieldFinal = overridden.mFieldFinal;
+                }
+            }
+
+            for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+                if (!isPublicField(field) || hasAnnotation(field, EXCLUDE)) {
+                    continue;
+                }
+
+                String beanName = field.getSimpleName().toString();
+                Property property = properties.get(beanName);
+                if (property == null) {
+                    // Read and written through the field, with no getter
+                    String name = getPropertyName(field);
+                    property = new Property();
+                    property.mName = name != null ? name : beanName;
+                    property.mType = field.asType();
+                    property.mServerTimestamp = hasAnnotation(field, SERVER_TIMESTAMP);
+                    checkServerTimestamp(field, property);
+                    properties.put(beanName, property);
+                } else if (!processingEnv.getTypeUtils().isSameType(field.asType(), property.mType)) {
+                    // Not to be set in place of the setter of another type
+                    continue;
+                }
+
+                property.mField = beanName;
+                property.mFieldFinal = field.getModifiers().contains(Modifier.FINAL);
+            }
+        }
+
+        return new ArrayList<>(properties.values());
+    }
+
+    /**
+     * Reports an error when the {@code property} is annotated with {@code @ServerTimestamp}
+     * on the {@code element}, or its field, and is neither a {@code Date} nor a {@code Timestamp}.
+     */
+    private void checkServerTimestamp(Element element, Property property) {
+        if (property.mServerTimestamp && !isType(property.mType, DATE)
+                && !isType(property.mType, TIMESTAMP)) {
+            error(element, "@ServerTimestamp applies only to Date and Timestamp properties");
+        }
+    }
+
+    /**
+     * Returns whether the {@code field} is a public instance field, which Firestore maps
+     * unless it is transient.
+     */
+    private static boolean isPublicField(VariableElement field) {
+        Set<Modifier> modifiers = field.getModifiers();
+        return modifiers.contains(Modifier.PUBLIC) && !modifiers.contains(Modifier.STATIC)
+                && !modifiers.contains(Modifier.TRANSIENT);
+    }
+
+    /**
+     * Returns the bean name of the {@code method} if it is a public instance getter,
+     * or {@code null} otherwise.
+     */
+    private static String getBeanName(ExecutableElement method) {
+        if (!method.getModifiers().contains(Modifier.PUBLIC)
+                || method.getModifiers().contains(Modifier.STATIC)
+                || !method.getParameters().isEmpty()
+                || method.getReturnType().getKind() == TypeKind.VOID) {
+            return null;
+        }
+
+        String name = method.getSimpleName().toString();
+        String prefix;
+        if (name.startsWith("get") && name.length() > 3) {
+            prefix = "get";
+        } else if (name.startsWith("is") && name.length() > 2
+                && method.getReturnType().getKind() == TypeKind.BOOLEAN) {
+            prefix = "is";
+        } else {
+            return null;
+        }
+
+        if (name.equals("getClass")) {
+            return null;
+        }
+
+        String beanName = name.substring(prefix.length());
+        return beanName.substring(0, 1).toLowerCase(Locale.US) + beanName.substring(1);
+    }
+
+    /**
+     * Returns the name of the public setter of the bean property in the {@code model} or its
+     * superclasses, taking a value of the {@code type}, or {@code null} when there is none.
+     */
+    private String findSetter(TypeElement model, String beanName, TypeMirror type) {
+        String setterName = "set" + beanName.substring(0, 1).toUpperCase(Locale.US)
+                + beanName.substring(1);
+        for (TypeElement owner = model; owner != null; owner = getSuperclass(owner)) {
+            for (ExecutableElement method : ElementFilter.methodsIn(owner.getEnclosedElements())) {
+                if (method.getSimpleName().contentEquals(setterName)
+                        && method.getModifiers().contains(Modifier.PUBLIC)
+                        && !method.getModifiers().contains(Modifier.STATIC)
+                        && method.getParameters().size() == 1
+                        && processingEnv.getTypeUtils().isSameType(
+                        method.getParameters().get(0).asType(), type)) {
+                    return setterName;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the field of the bean property declared in the {@code type}, or {@code null}.
+     */
+    private static VariableElement findField(TypeElement type, String beanName) {
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            if (field.getSimpleName().contentEquals(beanName)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the superclass of the {@code type}, or {@code null} when it is {@link Object}.
+     */
+    private static TypeElement getSuperclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+
+        TypeElement element = (TypeElement) ((DeclaredType) superclass).asElement();
+        return element.getQualifiedName().contentEquals(Object.class.getName()) ? null : element;
+    }
+
+    /**
+     * Returns the value of the {@code @PropertyName} of the {@code element}, or {@code null}.
+     */
+    private static String getPropertyName(Element element) {
+        AnnotationMirror mirror = getAnnotation(element, PROPERTY_NAME);
+        if (mirror == null) {
+            return null;
+        }
+
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                : mirror.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals("value")) {
+                return String.valueOf(entry.getValue().getValue());
+            }
+        }
+        return null;
+    }
+
+    private static boolean hasAnnotation(Element element, String annotation) {
+        return getAnnotation(element, annotation) != null;
+    }
+
+    private static AnnotationMirror getAnnotation(Element element, String annotation) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            TypeElement type = (TypeElement) mirror.getAnnotationType().asElement();
+            if (type.getQualifiedName().contentEquals(annotation)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isType(TypeMirror type, String qualifiedName) {
+        return type.getKind() == TypeKind.DECLARED
+                && ((TypeElement) ((DeclaredType) type).asElement())
+                .getQualifiedName().contentEquals(qualifiedName);
+    }
+
+    /**
+     * Writes the mapper class of the {@code model}.
+     */
+    private void writeMapper(TypeElement model, List<Property> properties) throws IOException {
+        String packageName = ((PackageElement) model.getEnclosingElement())
+                .getQualifiedName().toString();
+        String modelName = model.getSimpleName().toString();
+        String mapperName = modelName + MAPPER_SUFFIX;
+
+        JavaFileObject file = processingEnv.getFiler()
+                .createSourceFile(packageName + "." + mapperName, model);
+        try (PrintWriter out = new PrintWriter(file.openWriter())) {
+            out.println("// Generated by " + MapperProcessor.class.getName() + ". Do not edit.");
+            out.println("package " + packageName + ";");
+            out.println();
+            out.println("import com.google.firebase.firestore.DocumentSnapshot;");
+            out.println("import com.google.firebase.firestore.FieldPath;");
+            out.println("import com.google.firebase.firestore.FieldValue;");
+            out.println();
+            out.println("import java.util.HashMap;");
+            out.println("import java.util.Map;");
+            out.println();
+            out.println("/**");
+            out.println(" * Maps {@link " + modelName + "} to and from Firestore Documents,"
+                    + " without reflection.");
+            out.println(" */");
+            out.println("public final class " + mapperName + " {");
+            out.println();
+            for (int i = 0; i < properties.size(); i++) {
+                out.println("    private static final FieldPath FIELD_" + i + " = FieldPath.of(\""
+                        + escape(properties.get(i).mName) + "\");");
+            }
+            out.println();
+            out.println("    private " + mapperName + "() {");
+            out.println("    }");
+            out.println();
+            Set<String> conversions = new TreeSet<>();
+            writeFromSnapshot(out, modelName, properties, conversions);
+            out.println();
+            writeToMap(out, modelName, properties);
+            writeConversions(out, conversions);
+            out.println("}");
+        }
+    }
+
+    /**
+     * Writes {@code fromSnapshot}, which sets the properties present in the Document.
+     *
+     * @param conversions Collects the names of the numeric conversions called.
+     */
+    private void writeFromSnapshot(PrintWriter out, String modelName, List<Property> properties,
+                                   Set<String> conversions) {
+        out.println("    /**");
+        out.println("     * Creates the {@link " + modelName + "} from the {@code snapshot}, like"
+                + " {@link DocumentSnapshot#toObject(Class)}.");
+        out.println("     *");
+        out.println("     * @return The model, or {@code null} when the Document does not exist.");
+        out.println("     */");
+        out.println("    public static " + modelName + " fromSnapshot(DocumentSnapshot snapshot) {");
+        out.println("        if (!snapshot.exists()) {");
+        out.println("            return null;");
+        out.println("        }");
+        out.println();
+        out.println("        " + modelName + " model = new " + modelName + "();");
+        out.println("        Object value;");
+        for (int i = 0; i < properties.size(); i++) {
+            Property property = properties.get(i);
+            if (property.mSetter == null && (property.mField == null || property.mFieldFinal)) {
+                continue;
+            }
+
+            String conversion = getConversion(property, "FIELD_" + i, conversions);
+            out.println("        value = snapshot.get(FIELD_" + i + ");");
+            out.println("        if (value != null) {");
+            if (property.mSetter != null) {
+                out.println("            model." + property.mSetter + "(" + conversion + ");");
+            } else {
+                out.println("            model." + property.mField + " = " + conversion + ";");
+            }
+            out.println("        }");
+        }
+        out.println("        return model;");
+        out.println("    }");
+    }
+
+    /**
+     * Returns the expression converting the {@code value} read from the Document
+     * to the type of the {@code property}.
+     *
+     * @param conversions Collects the names of the numeric conversions called.
+     */
+    private String getConversion(Property property, String fieldPath, Set<String> conversions) {
+        TypeMirror type = property.mType;
+        switch (type.getKind()) {
+            case INT:
+                return getNumberConversion("toInt", fieldPath, conversions);
+            case LONG:
+                return getNumberConversion("toLong", fieldPath, conversions);
+            case DOUBLE:
+                return getNumberConversion("toDouble", fieldPath, conversions);
+            case FLOAT:
+                return "(float) " + getNumberConversion("toDouble", fieldPath, conversions);
+            case SHORT:
+                return getNumberConversion("toShort", fieldPath, conversions);
+            case BYTE:
+                return getNumberConversion("toByte", fieldPath, conversions);
+            case BOOLEAN:
+                return "(Boolean) value";
+            default:
+                break;
+        }
+
+        if (isType(type, String.class.getName())) {
+            return "(String) value";
+        } else if (isType(type, Integer.class.getName())) {
+            return getNumberConversion("toInt", fieldPath, conversions);
+        } else if (isType(type, Long.class.getName())) {
+            return getNumberConversion("toLong", fieldPath, conversions);
+        } else if (isType(type, Double.class.getName())) {
+            return getNumberConversion("toDouble", fieldPath, conversions);
+        } else if (isType(type, Float.class.getName())) {
+            return "(float) " + getNumberConversion("toDouble", fieldPath, conversions);
+        } else if (isType(type, Boolean.class.getName())) {
+            return "(Boolean) value";
+        } else if (isType(type, DATE)) {
+            return "value instanceof " + TIMESTAMP + " ? ((" + TIMESTAMP + ") value).toDate()"
+                    + " : (" + DATE + ") value";
+        } else if (isType(type, TIMESTAMP)) {
+            return "(" + TIMESTAMP + ") value";
+        }
+
+        // Any other type, converted by Firestore
+        String rawType = processingEnv.getTypeUtils().erasure(type).toString();
+        return (rawType.equals(type.toString()) ? "" : "(" + type + ") (Object) ")
+                + "snapshot.get(" + fieldPath + ", " + rawType + ".class)";
+    }
+
+    /**
+     * Returns the call of the numeric {@code conversion} of the {@code value} read from the
+     * {@code fieldPath}, collecting the {@code conversion} and those it calls into
+     * {@code conversions}.
+     */
+    private static String getNumberConversion(String conversion, String fieldPath,
+                                              Set<String> conversions) {
+        conversions.add(conversion);
+        if (!conversion.equals("toLong") && !conversion.equals("toDouble")) {
+            // The narrower integers are checked against the range of a long
+            conversions.add("toLong");
+        }
+        return conversion + "(value, " + fieldPath + ")";
+    }
+
+    /**
+     * Writes the numeric {@code conversions} called by {@code fromSnapshot}, which throw an
+     * {@code IllegalArgumentException} in place of truncating or rounding the value.
+     */
+    private static void writeConversions(PrintWriter out, Set<String> conversions) {
+        if (conversions.contains("toByte")) {
+            writeIntegerConversion(out, "byte", "Byte", "8-bit");
+        }
+        if (conversions.contains("toDouble")) {
+            out.println();
+            out.println("    private static double toDouble(Object value, FieldPath field) {");
+            out.println("        if (value instanceof Long");
+            out.println("                && ((Long) value > 1L << 53 || (Long) value < -(1L << 53))) {");
+            out.println("            throw new IllegalArgumentException(\"Loss of precision while"
+                    + " converting \" + value + \" to double in \" + field);");
+            out.println("        }");
+            out.println("        return ((Number) value).doubleValue();");
+            out.println("    }");
+        }
+        if (conversions.contains("toInt")) {
+            writeIntegerConversion(out, "int", "Integer", "32-bit");
+        }
+        if (conversions.contains("toLong")) {
+            out.println();
+            out.println("    private static long toLong(Object value, FieldPath field) {");
+            out.println("        if (value instanceof Long || value instanceof Integer) {");
+            out.println("            return ((Number) value).longValue();");
+            out.println("        }");
+            out.println();
+            out.println("        double number = ((Number) value).doubleValue();");
+            out.println("        if (number != Math.rint(number) || number < Long.MIN_VALUE"
+                    + " || number >= 0x1p63) {");
+            out.println("            throw new IllegalArgumentException(\"Numeric value not a"
+                    + " 64-bit integer: \" + value + \" in \" + field);");
+            out.println("        }");
+            out.println("        return (long) number;");
+            out.println("    }");
+        }
+        if (conversions.contains("toShort")) {
+            writeIntegerConversion(out, "short", "Short", "16-bit");
+        }
+    }
+
+    /**
+     * Writes the conversion to the integer {@code type}, checking the value read
+     * against its range.
+     */
+    private static void writeIntegerConversion(PrintWriter out, String type, String boxedType,
+                                               String bits) {
+        String name = "to" + boxedType.substring(0, 1) + type.substring(1);
+        out.println();
+        out.println("    private static " + type + " " + name + "(Object value, FieldPath field) {");
+        out.println("        long number = toLong(value, field);");
+        out.println("        if (number < " + boxedType + ".MIN_VALUE || number > " + boxedType
+                + ".MAX_VALUE) {");
+        out.println("            throw new IllegalArgumentException(\"Numeric value out of " + bits
+                + " integer range: \" + value + \" in \" + field);");
+        out.println("        }");
+        out.println("        return (" + type + ") number;");
+        out.println("    }");
+    }
+
+    /**
+     * Writes {@code toMap}, which returns all the properties, with the server timestamps
+     * in place of the {@code null} ones annotated with {@code @ServerTimestamp}.
+     */
+    private static void writeToMap(PrintWriter out, String modelName, List<Property> properties) {
+        out.println("    /**");
+        out.println("     * Returns the field values of the {@code model}, to be written to"
+                + " a Document.");
+        out.println("     */");
+        out.println("    public static Map<String, Object> toMap(" + modelName + " model) {");
+        out.println("        Map<String, Object> map = new HashMap<>("
+                + (properties.size() * 4 / 3 + 1) + ");");
+        for (Property property : properties) {
+            String key = "\"" + escape(property.mName) + "\"";
+            String getter = property.mGetter != null
+                    ? "model." + property.mGetter + "()" : "model." + property.mField;
+            if (property.mServerTimestamp) {
+                out.println("        map.put(" + key + ", " + getter + " != null ? " + getter
+                        + " : FieldValue.serverTimestamp());");
+            } else {
+                out.println("        map.put(" + key + ", " + getter + ");");
+            }
+        }
+        out.println("        return map;");
+        out.println("    }");
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    /**
+     * A bean property of a model.
+     */
+    private static final class Property {
+        // Name of the field in the Document
+        private String mName;
+        // Type of the property
+        private TypeMirror mType;
+        // Name of the getter, or null when read from the public field
+        private String mGetter;
+        // Name of the setter, or null when set through the public field or only written
+        private String mSetter;
+        // Name of the public field, or null when there is none
+        private String mField;
+        // Whether the public field is final, hence not set
+        private boolean mFieldFinal;
+        // Whether a null value is written as the server timestamp
+        private boolean mServerTimestamp;
+    }
+}
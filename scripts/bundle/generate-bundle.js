@@ -0,0 +1,74 @@
+/*
+ * Copyright 2021 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+// Generates the Firestore data bundle of the top restaurants, with the named query of
+// the default home list, i.e., "Filters.getDefault()" of the App: all restaurants
+// sorted by "avgRating" descending.
+//
+// Usage:
+//   node generate-bundle.js [outputFile]
+//
+// Reads from the local Firestore emulator when FIRESTORE_EMULATOR_HOST is set
+// (e.g. "localhost:8080"), or else from the project of the Application Default
+// Credentials (GOOGLE_APPLICATION_CREDENTIALS), or of GCLOUD_PROJECT.
+
+const admin = require('firebase-admin');
+const fs = require('fs');
+const path = require('path');
+
+// Identifies the bundle to the Firestore SDK, which skips loading it again when it
+// already loaded the bundle of this ID and creation time. Not referenced by the App.
+const BUNDLE_ID = 'top-restaurants';
+// Must match BundleLoader.QUERY_TOP_RESTAURANTS and the fields of the Restaurant model
+// of the App
+const QUERY_TOP_RESTAURANTS = 'top-restaurants';
+const COLLECTION = 'restaurants';
+const FIELD_AVG_RATING = 'avgRating';
+const LIMIT = 50;
+
+const DEFAULT_OUTPUT = path.join(__dirname, '..', '..',
+    'app', 'src', 'main', 'assets', 'bundles', 'top_restaurants.bundle');
+
+async function main() {
+  const output = process.argv[2] || DEFAULT_OUTPUT;
+
+  admin.initializeApp({
+    projectId: process.env.GCLOUD_PROJECT || process.env.FIREBASE_PROJECT || undefined,
+  });
+  const db = admin.firestore();
+
+  const snapshot = await db.collection(COLLECTION)
+      .orderBy(FIELD_AVG_RATING, 'desc')
+      .limit(LIMIT)
+      .get();
+
+  const buffer = db.bundle(BUNDLE_ID)
+      .add(QUERY_TOP_RESTAURANTS, snapshot)
+      .build();
+
+  fs.mkdirSync(path.dirname(output), {recursive: true});
+  fs.writeFileSync(output, buffer);
+
+  const source = process.env.FIRESTORE_EMULATOR_HOST
+      ? `emulator at ${process.env.FIRESTORE_EMULATOR_HOST}` : 'project';
+  console.log(`Wrote ${snapshot.size} restaurants from the ${source} `
+      + `to ${output} (${buffer.length} bytes)`);
+}
+
+main().catch((error) => {
+  console.error(error);
+  process.exit(1);
+});
@@ -0,0 +1,67 @@
+#!/usr/bin/env bash
+#
+# Copyright 2021 Google Inc. All Rights Reserved.
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+# http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+#
+# Measures the cold start of the App on the connected device, from the creation of MainActivity
+# to the first row of the restaurants drawn, as logged by StartupTimer.
+#
+# Usage: ./measure-cold-start.sh [runs]
+#
+# The App must be installed and signed in already. Each run kills the process, launches
+# MainActivity and waits for the timing to be logged.
+
+set -euo pipefail
+
+RUNS="${1:-10}"
+PACKAGE="com.google.firebase.example.fireeats"
+ACTIVITY="$PACKAGE/.MainActivity"
+TAG="StartupTimer"
+TIMEOUT_SECONDS=30
+
+results=()
+for ((run = 1; run <= RUNS; run++)); do
+  adb shell am force-stop "$PACKAGE"
+  adb logcat -c
+  adb shell am start -n "$ACTIVITY" > /dev/null
+
+  line=""
+  for ((wait = 0; wait < TIMEOUT_SECONDS; wait++)); do
+    line="$(adb logcat -d -s "$TAG:I" | grep -m 1 'cold_start' || true)"
+    [[ -n "$line" ]] && break
+    sleep 1
+  done
+
+  if [[ -z "$line" ]]; then
+    echo "Run $run: no first row within ${TIMEOUT_SECONDS}s" >&2
+    continue
+  fi
+
+  millis="$(sed -E 's/.*activity_to_first_row_ms=([0-9]+).*/\1/' <<< "$line")"
+  echo "Run $run: ${line#*cold_start }"
+  results+=("$millis")
+done
+
+if [[ ${#results[@]} -eq 0 ]]; then
+  echo "No runs measured" >&2
+  exit 1
+fi
+
+# Summary of MainActivity.onCreate to the first row drawn
+printf '%s\n' "${results[@]}" | sort -n | awk '
+  { values[NR] = $1; sum += $1 }
+  END {
+    printf "activity_to_first_row_ms: runs=%d min=%d median=%d max=%d mean=%.1f\n",
+        NR, values[1], values[int((NR + 1) / 2)], values[NR], sum / NR
+  }'